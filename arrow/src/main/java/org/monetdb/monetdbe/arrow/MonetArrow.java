@@ -0,0 +1,280 @@
+package org.monetdb.monetdbe.arrow;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.monetdb.monetdbe.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts MonetDBe query results into Apache Arrow vectors.
+ *
+ * The columns are read through {@link MonetColumnarResult}, so no per-cell JDBC getters are involved.
+ * The fixed width columns but BOOLEAN and DECIMAL and the validity bitmaps (which have the same layout
+ * as Arrow's) are bulk copied, VARCHAR columns copy their UTF-8 bytes in one go. Record batches only
+ * fetch the rows of one batch at a time.
+ *
+ * Type mapping: BOOLEAN to Bool, TINYINT to BIGINT to Int, DECIMAL and HUGEINT to Decimal(38, scale),
+ * REAL and DOUBLE to FloatingPoint, VARCHAR to Utf8, BLOB to Binary, DATE to Date(DAY),
+ * TIME to Time(MICROSECOND) and TIMESTAMP to Timestamp(MICROSECOND) without time zone.
+ */
+public final class MonetArrow {
+    //Decimals are stored as 128 bit values, which hold up to 38 digits
+    private static final int DECIMAL_PRECISION = 38;
+
+    private MonetArrow() {
+    }
+
+    //The vectors of an empty window describe the columns without converting any rows
+    public static Schema getSchema(ResultSet resultSet) throws SQLException {
+        return getSchema(resultSet.unwrap(MonetColumnarResult.class).getVectors(0, 0));
+    }
+
+    /**
+     * Converts all rows of the result set into a single VectorSchemaRoot, which the caller must close.
+     */
+    public static VectorSchemaRoot toVectorSchemaRoot(ResultSet resultSet, BufferAllocator allocator) throws SQLException {
+        MonetColumnarResult result = resultSet.unwrap(MonetColumnarResult.class);
+        MonetVector[] vectors = result.getVectors();
+        VectorSchemaRoot root = VectorSchemaRoot.create(getSchema(vectors), allocator);
+        try {
+            fill(root, vectors, 0, result.getRowCount());
+        } catch (SQLException | RuntimeException e) {
+            root.close();
+            throw e;
+        }
+        return root;
+    }
+
+    /**
+     * Converts the result set into record batches of at most batchSize rows, which are loaded one at a time
+     * into the same VectorSchemaRoot. Only the rows of the batch being loaded are fetched from the result.
+     */
+    public static MonetArrowBatchReader toBatches(ResultSet resultSet, BufferAllocator allocator, int batchSize) throws SQLException {
+        if (batchSize <= 0) {
+            throw new SQLException("Batch size must be positive", "M1M05");
+        }
+        MonetColumnarResult result = resultSet.unwrap(MonetColumnarResult.class);
+        return new MonetArrowBatchReader(VectorSchemaRoot.create(getSchema(result.getVectors(0, 0)), allocator), result, batchSize);
+    }
+
+    static Schema getSchema(MonetVector[] vectors) throws SQLException {
+        List<Field> fields = new ArrayList<>(vectors.length);
+        for (MonetVector vector : vectors) {
+            fields.add(new Field(vector.getName(), FieldType.nullable(getArrowType(vector)), null));
+        }
+        return new Schema(fields);
+    }
+
+    private static boolean isDecimal(MonetVector vector) {
+        int type = vector.getMonetdbeType();
+        return type == 5 || (type >= 1 && type <= 4 && vector.getScale() > 0);
+    }
+
+    private static ArrowType getArrowType(MonetVector vector) throws SQLException {
+        if (isDecimal(vector)) {
+            return new ArrowType.Decimal(DECIMAL_PRECISION, vector.getScale(), 128);
+        }
+        switch (vector.getMonetdbeType()) {
+            case 0:
+                return ArrowType.Bool.INSTANCE;
+            case 1:
+                return new ArrowType.Int(8, true);
+            case 2:
+                return new ArrowType.Int(16, true);
+            case 3:
+                return new ArrowType.Int(32, true);
+            case 4:
+                return new ArrowType.Int(64, true);
+            case 7:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+            case 8:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+            case 9:
+                return ArrowType.Utf8.INSTANCE;
+            case 10:
+                return ArrowType.Binary.INSTANCE;
+            case 11:
+                return new ArrowType.Date(DateUnit.DAY);
+            case 12:
+                return new ArrowType.Time(TimeUnit.MICROSECOND, 64);
+            case 13:
+                return new ArrowType.Timestamp(TimeUnit.MICROSECOND, null);
+            default:
+                throw new SQLException("Column " + vector.getName() + " can't be converted to Arrow", "M1M05");
+        }
+    }
+
+    //Copies rows [from, from + length) of the vectors into the root, replacing its previous contents
+    static void fill(VectorSchemaRoot root, MonetVector[] vectors, int from, int length) throws SQLException {
+        for (int i = 0; i < vectors.length; i++) {
+            copyColumn(root.getVector(i), vectors[i], from, length);
+        }
+        root.setRowCount(length);
+    }
+
+    private static void copyColumn(FieldVector target, MonetVector source, int from, int length) throws SQLException {
+        if (isDecimal(source)) {
+            DecimalVector decimals = (DecimalVector) target;
+            decimals.allocateNew(length);
+            if (source instanceof MonetHugeIntVector) {
+                //Arrow decimals are 128 bit little-endian two's complement, as HUGEINT
+                MonetHugeIntVector hugeints = (MonetHugeIntVector) source;
+                ByteBuffer data = dataBuffer(target, (long) length * 16);
+                for (int i = 0; i < length; i++) {
+                    data.putLong(i * 16, hugeints.getLow(from + i));
+                    data.putLong(i * 16 + 8, hugeints.getHigh(from + i));
+                }
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    decimals.set(i, getUnscaled(source, from + i));
+                }
+            }
+            copyValidity(target, source, from, length);
+            return;
+        }
+        switch (source.getMonetdbeType()) {
+            case 0: {
+                BitVector bits = (BitVector) target;
+                bits.allocateNew(length);
+                for (int i = 0; i < length; i++) {
+                    bits.set(i, ((MonetIntVector) source).getInt(from + i) != 0 ? 1 : 0);
+                }
+                break;
+            }
+            case 1:
+                ((TinyIntVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 1);
+                break;
+            case 2:
+                ((SmallIntVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 2);
+                break;
+            case 3:
+                ((IntVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 4);
+                break;
+            case 4:
+                ((BigIntVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 8);
+                break;
+            case 7:
+                ((Float4Vector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 4);
+                break;
+            case 8:
+                ((Float8Vector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 8);
+                break;
+            case 9:
+                copyStrings((VarCharVector) target, (MonetStringVector) source, from, length);
+                break;
+            case 10:
+                copyBlobs((VarBinaryVector) target, source, from, length);
+                break;
+            case 11:
+                ((DateDayVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 4);
+                break;
+            case 12:
+                ((TimeMicroVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 8);
+                break;
+            case 13:
+                ((TimeStampMicroVector) target).allocateNew(length);
+                copyFixed(target, source, from, length, 8);
+                break;
+            default:
+                throw new SQLException("Column " + source.getName() + " can't be converted to Arrow", "M1M05");
+        }
+        copyValidity(target, source, from, length);
+    }
+
+    private static long getUnscaled(MonetVector source, int row) {
+        if (source instanceof MonetLongVector) {
+            return ((MonetLongVector) source).getLong(row);
+        }
+        return ((MonetIntVector) source).getInt(row);
+    }
+
+    //Arrow buffers are little-endian
+    private static ByteBuffer dataBuffer(FieldVector target, long bytes) {
+        return target.getDataBuffer().nioBuffer(0, (int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    //Both store the values little-endian with the same width, so the rows are copied as is
+    private static void copyFixed(FieldVector target, MonetVector source, int from, int length, int width) {
+        ByteBuffer data = source.getFixedData();
+        data.limit((from + length) * width);
+        data.position(from * width);
+        target.getDataBuffer().setBytes(0, data);
+    }
+
+    //The UTF-8 bytes of the rows are contiguous, so they are copied at once and only the offsets are rebased
+    private static void copyStrings(VarCharVector target, MonetStringVector source, int from, int length) {
+        IntBuffer offsets = source.getUTF8Offsets();
+        int start = offsets.get(from);
+        int end = offsets.get(from + length);
+        target.allocateNew(end - start, length);
+
+        ArrowBuf targetOffsets = target.getOffsetBuffer();
+        for (int i = 0; i <= length; i++) {
+            targetOffsets.setInt((long) i * BaseVariableWidthVector.OFFSET_WIDTH, offsets.get(from + i) - start);
+        }
+        ByteBuffer data = source.getUTF8Data();
+        data.limit(end);
+        data.position(start);
+        target.getDataBuffer().setBytes(0, data);
+        target.setLastSet(length - 1);
+    }
+
+    //Blobs of a native result are copied to the heap by asByteBuffer(), as a view of the result can outlive it
+    private static void copyBlobs(VarBinaryVector target, MonetVector source, int from, int length) throws SQLException {
+        target.allocateNew(length);
+        for (int i = 0; i < length; i++) {
+            MonetBlob blob = (MonetBlob) source.getObject(from + i);
+            if (blob != null) {
+                ByteBuffer bytes = blob.asByteBuffer();
+                target.setSafe(i, bytes, 0, bytes.limit());
+            }
+        }
+    }
+
+    //Both use one bit per row with the least significant bit first and 1 for valid rows, so byte-aligned ranges are copied as is
+    private static void copyValidity(FieldVector target, MonetVector source, int from, int length) {
+        ArrowBuf validity = target.getValidityBuffer();
+        int bytes = BitVectorHelper.getValidityBufferSize(length);
+        ByteBuffer sourceValidity = source.getValidity();
+        if (sourceValidity == null) {
+            validity.setOne(0L, (long) bytes);
+        }
+        else if (from % 8 == 0) {
+            sourceValidity.limit((from >>> 3) + bytes);
+            sourceValidity.position(from >>> 3);
+            validity.setBytes(0, sourceValidity);
+        }
+        else {
+            validity.setOne(0L, (long) bytes);
+            for (int i = 0; i < length; i++) {
+                if (source.isNull(from + i)) {
+                    BitVectorHelper.unsetBit(validity, i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.monetdb.monetdbe.arrow;
+
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.monetdb.monetdbe.MonetColumnarResult;
+
+import java.sql.SQLException;
+
+/**
+ * Record batches of a query result, created by {@link MonetArrow#toBatches}.
+ *
+ * Every call to {@link #loadNextBatch()} replaces the contents of the VectorSchemaRoot with the next rows:
+ * <pre>
+ * try (MonetArrowBatchReader reader = MonetArrow.toBatches(rs, allocator, 65536)) {
+ *     while (reader.loadNextBatch()) {
+ *         consume(reader.getVectorSchemaRoot());
+ *     }
+ * }
+ * </pre>
+ */
+public final class MonetArrowBatchReader implements AutoCloseable {
+    private final VectorSchemaRoot root;
+    private final MonetColumnarResult result;
+    private final int rowCount;
+    private final int batchSize;
+    private int nextRow = 0;
+
+    MonetArrowBatchReader(VectorSchemaRoot root, MonetColumnarResult result, int batchSize) {
+        this.root = root;
+        this.result = result;
+        this.rowCount = result.getRowCount();
+        this.batchSize = batchSize;
+    }
+
+    public VectorSchemaRoot getVectorSchemaRoot() {
+        return root;
+    }
+
+    /**
+     * @return false if all rows were already loaded
+     */
+    public boolean loadNextBatch() throws SQLException {
+        if (nextRow >= rowCount) {
+            return false;
+        }
+        int length = Math.min(batchSize, rowCount - nextRow);
+        //Only the rows of this batch are fetched, so the memory used doesn't grow with the result
+        MonetArrow.fill(root, result.getVectors(nextRow, length), 0, length);
+        nextRow += length;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        root.close();
+    }
+}
@@ -0,0 +1,516 @@
+package org.monetdb.monetdbe.arrow;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.monetdb.monetdbe.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Appends Arrow record batches to a table through {@link MonetConnection#append(String, String, MonetAppendColumn...)},
+ * one native call per batch.
+ *
+ * The vectors are matched to the table's columns by position. Fixed width vectors with the layout of their column
+ * (Int to the integer column of the same width, Decimal(p, s) to a HUGEINT based DECIMAL column with scale s,
+ * FloatingPoint, Date(DAY), Time(MICROSECOND) and Timestamp(MICROSECOND)) and Binary vectors are passed to monetdbe
+ * as they are, Utf8 vectors are copied once to add the NUL terminators monetdbe needs. Other vectors which fit their
+ * column, such as narrower integers, other time units or decimals with fewer digits, are converted value by value.
+ * Dictionary encoded vectors are decoded first.
+ * <pre>
+ * MonetArrowLoader loader = new MonetArrowLoader(connection, null, "events");
+ * loader.setCreateTable(true);
+ * long rows = loader.load(Paths.get("events.arrow"), allocator);
+ * </pre>
+ *
+ * In auto-commit mode a load is one transaction, which is rolled back when the load fails.
+ */
+public final class MonetArrowLoader {
+    //Arrow buffers are little-endian, monetdbe takes the values in native byte order
+    private static final boolean PASS_THROUGH = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    //java.sql.Types of the monetdbe types of fixed width, for MonetAppendColumn.ofBuffer
+    private static final int[] SQL_TYPES = {Types.BOOLEAN, Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+            Types.NUMERIC, Types.NULL, Types.REAL, Types.DOUBLE, Types.NULL, Types.NULL, Types.DATE, Types.TIME, Types.TIMESTAMP};
+    private static final int[] WIDTHS = {1, 1, 2, 4, 8, 16, 0, 4, 8, 0, 0, 4, 8, 8};
+    private static final int DECIMAL_PRECISION = 38;
+
+    private final MonetConnection conn;
+    private final String schema;
+    private final String table;
+    private boolean createTable;
+    //Columns of the table, fetched once per load
+    private MonetVector[] columns;
+
+    /**
+     * @param schema the schema of the table, null for the current schema
+     */
+    public MonetArrowLoader(MonetConnection conn, String schema, String table) {
+        this.conn = conn;
+        this.schema = schema;
+        this.table = table;
+    }
+
+    /** Creates the table from the Arrow schema of the first batch if it doesn't exist, see {@link #createTable(Schema, DictionaryProvider)} */
+    public void setCreateTable(boolean createTable) {
+        this.createTable = createTable;
+    }
+
+    /** Loads the record batches of an Arrow IPC file */
+    public long load(Path file, BufferAllocator allocator) throws SQLException {
+        try (FileChannel channel = FileChannel.open(file);
+             ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+            return load(reader);
+        } catch (IOException e) {
+            throw new SQLException("Could not read " + file + ": " + e.getMessage(), "M1M25", e);
+        }
+    }
+
+    /** Loads the record batches of an Arrow IPC stream up to its end, the input is not closed */
+    public long load(InputStream input, BufferAllocator allocator) throws SQLException {
+        ArrowStreamReader reader = new ArrowStreamReader(input, allocator);
+        try {
+            return load(reader);
+        } finally {
+            try {
+                reader.close(false);
+            } catch (IOException e) {
+                //Only releases the buffers of the reader
+            }
+        }
+    }
+
+    /**
+     * Loads the remaining record batches of the reader, which is not closed.
+     *
+     * @return the number of rows appended
+     */
+    public long load(ArrowReader reader) throws SQLException {
+        if (conn.isClosed())
+            throw new SQLException("Connection is closed", "M1M20");
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            long rows;
+            try {
+                rows = loadBatches(reader);
+            } catch (SQLException | RuntimeException e) {
+                if (autoCommit) {
+                    try {
+                        conn.rollback();
+                    } catch (SQLException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                }
+                throw e;
+            }
+            if (autoCommit) {
+                conn.commit();
+            }
+            return rows;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private long loadBatches(ArrowReader reader) throws SQLException {
+        columns = null;
+        try {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            long rows = 0;
+            boolean first = true;
+            while (reader.loadNextBatch()) {
+                //Dictionaries are only known once the first batch is read
+                if (first && createTable) {
+                    createTable(root.getSchema(), reader);
+                }
+                first = false;
+                rows += append(root, reader);
+            }
+            if (first && createTable) {
+                createTable(root.getSchema(), reader);
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new SQLException("Could not read the Arrow input: " + e.getMessage(), "M1M25", e);
+        }
+    }
+
+    /** Appends the rows of the root, which must not have dictionary encoded vectors */
+    public long append(VectorSchemaRoot root) throws SQLException {
+        return append(root, null);
+    }
+
+    /**
+     * Appends the rows of the root in one native call.
+     *
+     * @param dictionaries the dictionaries of dictionary encoded vectors, such as the ArrowReader of the root
+     * @return the number of rows appended
+     */
+    public long append(VectorSchemaRoot root, DictionaryProvider dictionaries) throws SQLException {
+        if (columns == null) {
+            columns = tableColumns();
+        }
+        List<FieldVector> vectors = root.getFieldVectors();
+        if (vectors.size() != columns.length) {
+            throw new SQLException("The Arrow schema has " + vectors.size() + " fields, table " + table + " has " + columns.length + " columns", "M1M05");
+        }
+        int rows = root.getRowCount();
+        if (rows == 0) {
+            return 0;
+        }
+
+        MonetAppendColumn[] appendColumns = new MonetAppendColumn[columns.length];
+        FieldVector[] decoded = new FieldVector[columns.length];
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                FieldVector vector = vectors.get(i);
+                DictionaryEncoding encoding = vector.getField().getDictionary();
+                if (encoding != null) {
+                    decoded[i] = (FieldVector) DictionaryEncoder.decode(vector, dictionary(dictionaries, encoding, vector.getField()));
+                    vector = decoded[i];
+                }
+                appendColumns[i] = toAppendColumn(vector, columns[i], rows);
+            }
+            //The buffers of the vectors are only read during the append
+            conn.append(schema, table, appendColumns);
+        } finally {
+            for (FieldVector vector : decoded) {
+                if (vector != null) {
+                    vector.close();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the table if it doesn't exist, with a nullable column for every nullable field. Bool is BOOLEAN,
+     * Int TINYINT to BIGINT (unsigned integers the next larger type), FloatingPoint REAL or DOUBLE, Decimal DECIMAL,
+     * Utf8 CLOB, Binary BLOB, Date DATE, Time TIME(6) and Timestamp TIMESTAMP(6).
+     *
+     * @param dictionaries the dictionaries of dictionary encoded fields, null if there are none
+     */
+    public void createTable(Schema arrowSchema, DictionaryProvider dictionaries) throws SQLException {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(qualifiedName()).append(" (");
+        List<Field> fields = arrowSchema.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            ArrowType type = field.getType();
+            if (field.getDictionary() != null) {
+                type = dictionary(dictionaries, field.getDictionary(), field).getVector().getField().getType();
+            }
+            sql.append(i > 0 ? ", " : "").append(quoteIdentifier(field.getName())).append(' ').append(getSQLType(field, type));
+            if (!field.isNullable()) {
+                sql.append(" NOT NULL");
+            }
+        }
+        sql.append(')');
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(sql.toString());
+        }
+        columns = null;
+    }
+
+    private static String getSQLType(Field field, ArrowType type) throws SQLException {
+        switch (type.getTypeID()) {
+            case Bool:
+                return "BOOLEAN";
+            case Int: {
+                ArrowType.Int integer = (ArrowType.Int) type;
+                int bits = integer.getIsSigned() ? integer.getBitWidth() : 2 * integer.getBitWidth();
+                return bits == 8 ? "TINYINT" : bits == 16 ? "SMALLINT" : bits == 32 ? "INTEGER" : bits == 64 ? "BIGINT" : "HUGEINT";
+            }
+            case FloatingPoint:
+                return ((ArrowType.FloatingPoint) type).getPrecision() == org.apache.arrow.vector.types.FloatingPointPrecision.DOUBLE ? "DOUBLE" : "REAL";
+            case Decimal: {
+                ArrowType.Decimal decimal = (ArrowType.Decimal) type;
+                if (decimal.getPrecision() > DECIMAL_PRECISION) {
+                    break;
+                }
+                return "DECIMAL(" + decimal.getPrecision() + ", " + decimal.getScale() + ")";
+            }
+            case Utf8:
+            case LargeUtf8:
+                return "CLOB";
+            case Binary:
+            case LargeBinary:
+            case FixedSizeBinary:
+                return "BLOB";
+            case Date:
+                return "DATE";
+            case Time:
+                return "TIME(6)";
+            case Timestamp:
+                return "TIMESTAMP(6)";
+            default:
+        }
+        throw new SQLException("Arrow field " + field.getName() + " of type " + type + " has no MonetDB type", "M1M05");
+    }
+
+    private static Dictionary dictionary(DictionaryProvider dictionaries, DictionaryEncoding encoding, Field field) throws SQLException {
+        Dictionary dictionary = dictionaries != null ? dictionaries.lookup(encoding.getId()) : null;
+        if (dictionary == null) {
+            throw new SQLException("The dictionary of Arrow field " + field.getName() + " is missing", "M1M05");
+        }
+        return dictionary;
+    }
+
+    //Types and scales of the table's columns, from an empty result
+    private MonetVector[] tableColumns() throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + qualifiedName() + " LIMIT 0")) {
+            return rs.unwrap(MonetColumnarResult.class).getVectors();
+        }
+    }
+
+    private String qualifiedName() {
+        return (schema != null ? quoteIdentifier(schema) + "." : "") + quoteIdentifier(table);
+    }
+
+    private static String quoteIdentifier(String name) {
+        return '"' + name.replace("\"", "\"\"") + '"';
+    }
+
+    private static MonetAppendColumn toAppendColumn(FieldVector vector, MonetVector column, int rows) throws SQLException {
+        int type = column.getMonetdbeType();
+        ByteBuffer validity = vector.getNullCount() > 0 ? littleEndian(vector.getValidityBuffer(), 0, (rows + 7) / 8) : null;
+        switch (type) {
+            case 0:
+                if (vector instanceof BitVector) {
+                    //Bits are widened to a byte per row
+                    ByteBuffer data = allocate(rows);
+                    for (int i = 0; i < rows; i++) {
+                        data.put(i, (byte) BitVectorHelper.get(vector.getDataBuffer(), i));
+                    }
+                    return MonetAppendColumn.ofBuffer(Types.BOOLEAN, data, validity, rows);
+                }
+                break;
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 5: {
+                int scale = Math.max(0, column.getScale());
+                if (PASS_THROUGH && scale == 0 && vector instanceof BaseIntVector && type != 5
+                        && ((ArrowType.Int) vector.getField().getType()).getIsSigned()
+                        && ((BaseFixedWidthVector) vector).getTypeWidth() == WIDTHS[type]) {
+                    return passThrough(vector, type, validity, rows);
+                }
+                if (PASS_THROUGH && type == 5 && vector instanceof DecimalVector && ((DecimalVector) vector).getScale() == scale) {
+                    return passThrough(vector, type, validity, rows);
+                }
+                if (vector instanceof BaseIntVector || vector instanceof DecimalVector || vector instanceof Decimal256Vector) {
+                    return convertIntegers(vector, column, type, scale, validity, rows);
+                }
+                break;
+            }
+            case 7:
+            case 8:
+                if (PASS_THROUGH && (type == 7 ? vector instanceof Float4Vector : vector instanceof Float8Vector)) {
+                    return passThrough(vector, type, validity, rows);
+                }
+                if (vector instanceof FloatingPointVector || vector instanceof BaseIntVector || vector instanceof DecimalVector) {
+                    ByteBuffer data = allocate(WIDTHS[type] * rows);
+                    for (int i = 0; i < rows; i++) {
+                        if (!vector.isNull(i)) {
+                            double value = vector instanceof FloatingPointVector ? ((FloatingPointVector) vector).getValueAsDouble(i)
+                                    : vector instanceof BaseIntVector ? ((BaseIntVector) vector).getValueAsLong(i)
+                                    : ((DecimalVector) vector).getObject(i).doubleValue();
+                            if (type == 7) {
+                                data.putFloat(4 * i, (float) value);
+                            }
+                            else {
+                                data.putDouble(8 * i, value);
+                            }
+                        }
+                    }
+                    return MonetAppendColumn.ofBuffer(SQL_TYPES[type], data, validity, rows);
+                }
+                break;
+            case 9:
+                if (vector instanceof VarCharVector) {
+                    VarCharVector strings = (VarCharVector) vector;
+                    return MonetAppendColumn.ofUTF8(littleEndian(strings.getDataBuffer(), 0, (int) strings.getDataBuffer().capacity()),
+                            littleEndian(strings.getOffsetBuffer(), 0, 4 * (rows + 1)), validity, rows);
+                }
+                if (vector instanceof LargeVarCharVector) {
+                    String[] values = new String[rows];
+                    for (int i = 0; i < rows; i++) {
+                        values[i] = vector.isNull(i) ? null : ((LargeVarCharVector) vector).getObject(i).toString();
+                    }
+                    return MonetAppendColumn.ofStrings(values);
+                }
+                break;
+            case 10:
+                if (vector instanceof VarBinaryVector) {
+                    VarBinaryVector blobs = (VarBinaryVector) vector;
+                    return MonetAppendColumn.ofBinary(littleEndian(blobs.getDataBuffer(), 0, (int) blobs.getDataBuffer().capacity()),
+                            littleEndian(blobs.getOffsetBuffer(), 0, 4 * (rows + 1)), validity, rows);
+                }
+                if (vector instanceof LargeVarBinaryVector || vector instanceof FixedSizeBinaryVector) {
+                    byte[][] values = new byte[rows][];
+                    for (int i = 0; i < rows; i++) {
+                        values[i] = (byte[]) vector.getObject(i);
+                    }
+                    return MonetAppendColumn.ofBlobs(values);
+                }
+                break;
+            case 11:
+                if (PASS_THROUGH && vector instanceof DateDayVector) {
+                    return passThrough(vector, type, validity, rows);
+                }
+                if (vector instanceof DateMilliVector) {
+                    ByteBuffer data = allocate(4 * rows);
+                    for (int i = 0; i < rows; i++) {
+                        if (!vector.isNull(i)) {
+                            data.putInt(4 * i, (int) Math.floorDiv(((DateMilliVector) vector).get(i), 86400000L));
+                        }
+                    }
+                    return MonetAppendColumn.ofBuffer(Types.DATE, data, validity, rows);
+                }
+                break;
+            case 12:
+                if (PASS_THROUGH && vector instanceof TimeMicroVector) {
+                    return passThrough(vector, type, validity, rows);
+                }
+                if (vector instanceof TimeSecVector || vector instanceof TimeMilliVector || vector instanceof TimeMicroVector || vector instanceof TimeNanoVector) {
+                    ArrowType.Time time = (ArrowType.Time) vector.getField().getType();
+                    return convertMicros(vector, Types.TIME, time.getUnit(), validity, rows);
+                }
+                break;
+            case 13:
+                if (vector instanceof TimeStampVector) {
+                    ArrowType.Timestamp timestamp = (ArrowType.Timestamp) vector.getField().getType();
+                    if (PASS_THROUGH && timestamp.getUnit() == org.apache.arrow.vector.types.TimeUnit.MICROSECOND) {
+                        return passThrough(vector, type, validity, rows);
+                    }
+                    return convertMicros(vector, Types.TIMESTAMP, timestamp.getUnit(), validity, rows);
+                }
+                break;
+            default:
+        }
+        throw new SQLException("Arrow field " + vector.getField().getName() + " of type " + vector.getField().getType()
+                + " can't be appended to column " + column.getName(), "M1M05");
+    }
+
+    //The data buffer of the vector is handed to monetdbe as it is
+    private static MonetAppendColumn passThrough(FieldVector vector, int type, ByteBuffer validity, int rows) {
+        return MonetAppendColumn.ofBuffer(SQL_TYPES[type], littleEndian(vector.getDataBuffer(), 0, WIDTHS[type] * rows), validity, rows);
+    }
+
+    //Integers and decimals into an integer or DECIMAL column with the given scale
+    private static MonetAppendColumn convertIntegers(FieldVector vector, MonetVector column, int type, int scale, ByteBuffer validity, int rows) throws SQLException {
+        int width = WIDTHS[type];
+        ByteBuffer data = allocate(width * rows);
+        boolean little = data.order() == ByteOrder.LITTLE_ENDIAN;
+        boolean unsigned64 = vector instanceof UInt8Vector;
+        for (int i = 0; i < rows; i++) {
+            if (vector.isNull(i)) {
+                continue;
+            }
+            BigInteger value;
+            if (vector instanceof BaseIntVector) {
+                long integer = ((BaseIntVector) vector).getValueAsLong(i);
+                value = unsigned64 && integer < 0 ? new BigInteger(Long.toUnsignedString(integer)) : BigInteger.valueOf(integer);
+                if (scale > 0) {
+                    value = value.multiply(BigInteger.TEN.pow(scale));
+                }
+            }
+            else {
+                try {
+                    value = ((BigDecimal) vector.getObject(i)).setScale(scale, RoundingMode.UNNECESSARY).unscaledValue();
+                } catch (ArithmeticException e) {
+                    throw new SQLException("Value " + vector.getObject(i) + " of Arrow field " + vector.getField().getName()
+                            + " has more than the " + scale + " decimals of column " + column.getName(), "22003");
+                }
+            }
+            if (value.bitLength() >= 8 * width) {
+                throw new SQLException("Value " + vector.getObject(i) + " of Arrow field " + vector.getField().getName()
+                        + " is out of range for column " + column.getName(), "22003");
+            }
+            switch (width) {
+                case 1:
+                    data.put(i, value.byteValue());
+                    break;
+                case 2:
+                    data.putShort(2 * i, value.shortValue());
+                    break;
+                case 4:
+                    data.putInt(4 * i, value.intValue());
+                    break;
+                case 8:
+                    data.putLong(8 * i, value.longValue());
+                    break;
+                default:
+                    data.putLong(16 * i + (little ? 0 : 8), value.longValue());
+                    data.putLong(16 * i + (little ? 8 : 0), value.shiftRight(64).longValue());
+            }
+        }
+        return MonetAppendColumn.ofBuffer(SQL_TYPES[type], data, validity, rows);
+    }
+
+    //TIME and TIMESTAMP values in other units than microseconds, or on big-endian platforms
+    private static MonetAppendColumn convertMicros(FieldVector vector, int sqlType, org.apache.arrow.vector.types.TimeUnit unit, ByteBuffer validity, int rows) throws SQLException {
+        ByteBuffer data = allocate(8 * rows);
+        for (int i = 0; i < rows; i++) {
+            if (vector.isNull(i)) {
+                continue;
+            }
+            long value = ((BaseFixedWidthVector) vector).getTypeWidth() == 4 ? ((BaseFixedWidthVector) vector).getDataBuffer().getInt(4L * i)
+                    : ((BaseFixedWidthVector) vector).getDataBuffer().getLong(8L * i);
+            try {
+                switch (unit) {
+                    case SECOND:
+                        value = Math.multiplyExact(value, 1000000L);
+                        break;
+                    case MILLISECOND:
+                        value = Math.multiplyExact(value, 1000L);
+                        break;
+                    case NANOSECOND:
+                        value = Math.floorDiv(value, 1000L);
+                        break;
+                    default:
+                }
+            } catch (ArithmeticException e) {
+                throw new SQLException("Value " + vector.getObject(i) + " of Arrow field " + vector.getField().getName() + " is out of range", "22003");
+            }
+            data.putLong(8 * i, value);
+        }
+        return MonetAppendColumn.ofBuffer(sqlType, data, validity, rows);
+    }
+
+    //A view of the Arrow buffer, which stays valid as long as the vector isn't cleared
+    private static ByteBuffer littleEndian(org.apache.arrow.memory.ArrowBuf buffer, long index, int length) {
+        return buffer.nioBuffer(index, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+}
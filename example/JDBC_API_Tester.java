@@ -7,18 +7,39 @@
  * Copyright 1997 - July 2008 CWI, August 2008 - 2021 MonetDB B.V.
  */
 
+import org.monetdb.monetdbe.MonetAppendColumn;
+import org.monetdb.monetdbe.MonetColumnarResult;
+import org.monetdb.monetdbe.MonetConnection;
+import org.monetdb.monetdbe.MonetCsvLoader;
+import org.monetdb.monetdbe.MonetDictionaryVector;
+import org.monetdb.monetdbe.MonetResultCache;
+import org.monetdb.monetdbe.MonetResultMaterialization;
+import org.monetdb.monetdbe.MonetStatement;
+import org.monetdb.monetdbe.MonetStringVector;
+import org.monetdb.monetdbe.MonetVector;
+
 import java.math.BigInteger;
 import java.sql.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
 import java.util.TimeZone;
+import java.util.stream.Stream;
 
 /**
  * class to test JDBC Driver API methods and behavior of MonetDB server.
@@ -110,8 +131,7 @@ final public class JDBC_API_Tester {
 		//jt.Test_PStimezone();
 		//TODO Decimal in bind
 		//jt.BugDecimalRound_Bug_3561();
-		//TODO: GetMoreResults
-		//jt.Bug_LargeQueries_6571_6693(con_URL);
+		jt.Bug_LargeQueries_6571_6693(con_URL);
 		//TODO: ResultSetMetadata in PreparedStatement
 		//jt.Bug_PrepStmtSetObject_CLOB_6349();
 		//TODO: ResultSetMetadata in PreparedStatement
@@ -128,8 +148,18 @@ final public class JDBC_API_Tester {
 		//jt.Test_PSgeneratedkeys();
 		//TODO: INET/URL
 		//jt.Test_PSsqldata();
-		//TODO: GetMoreResults
-		//jt.Test_Smoreresults();
+		jt.Test_Smoreresults();
+		jt.Test_RwindowedFetch();
+		jt.Test_RnullsFixedWidth();
+		jt.Test_CresultCache(con_URL);
+		jt.Test_Cappend();
+		jt.Test_PSbatchFailure();
+		jt.Test_CcopyIn();
+		jt.Test_CcsvLoad();
+		jt.Test_RblobAfterClose();
+		jt.Test_RspillToDisk(con_URL);
+		jt.Test_RdictionaryStrings();
+		jt.Test_RcopyAndRelease();
 		//TODO: INET/URL
 		//jt.Test_Rsqldata();
 		//TODO: INET/URL
@@ -4428,6 +4458,614 @@ final public class JDBC_API_Tester {
 		}
 	}
 
+	private void Test_RwindowedFetch() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_RwindowedFetch (id INT, v INT, s VARCHAR(10))");
+			stmt.executeUpdate("INSERT INTO Test_RwindowedFetch SELECT value, CASE WHEN value % 3 = 0 THEN NULL ELSE value * 10 END, CASE WHEN value % 3 = 0 THEN NULL ELSE 'r' || value END FROM sys.generate_series(0, 11)");
+			stmt.close();
+
+			// only forward only results are read in windows of the fetch size, here 11 rows in windows of 4.
+			// A value must read the same every time, also for nulls at the window boundaries (rows 3 and 9),
+			// and a column first read in a later window (s, read once in every window) must be fetched for that window
+			stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(4);
+			rs = stmt.executeQuery("SELECT id, v, s FROM Test_RwindowedFetch ORDER BY id");
+			sb.append("forward only: ").append(rs.getType() == ResultSet.TYPE_FORWARD_ONLY).append("\n");
+			while (rs.next()) {
+				int id = rs.getInt(1);
+				sb.append(id).append(":").append(rs.getObject(2));
+				int v = rs.getInt(2);
+				sb.append("/").append(rs.wasNull() ? "null" : String.valueOf(v));
+				if (id % 4 == 2)
+					sb.append(" ").append(rs.getString(3)).append("/").append(rs.getObject(3));
+				sb.append("\n");
+			}
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_RwindowedFetch");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_RwindowedFetch",
+			"forward only: true\n" +
+			"0:null/null\n" +
+			"1:10/10\n" +
+			"2:20/20 r2/r2\n" +
+			"3:null/null\n" +
+			"4:40/40\n" +
+			"5:50/50\n" +
+			"6:null/null null/null\n" +
+			"7:70/70\n" +
+			"8:80/80\n" +
+			"9:null/null\n" +
+			"10:100/100 r10/r10\n");
+	}
+
+	private void Test_RnullsFixedWidth() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_RnullsFixedWidth (id INT, b BOOLEAN, ti TINYINT, si SMALLINT, i INT, bi BIGINT, r REAL, d DOUBLE, dt DATE, tm TIME, ts TIMESTAMP)");
+			stmt.executeUpdate("INSERT INTO Test_RnullsFixedWidth VALUES (1, true, 1, 2, 3, 4, 5.5, 6.5, DATE '2020-01-02', TIME '03:04:05', TIMESTAMP '2020-01-02 03:04:05')");
+			stmt.executeUpdate("INSERT INTO Test_RnullsFixedWidth VALUES (2, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL)");
+			stmt.executeUpdate("INSERT INTO Test_RnullsFixedWidth VALUES (3, false, 0, 0, 0, 0, 0, 0, DATE '1970-01-01', TIME '00:00:00', TIMESTAMP '1970-01-01 00:00:00')");
+
+			// the engine's null values must come back as null, and zeros as zeros
+			rs = stmt.executeQuery("SELECT * FROM Test_RnullsFixedWidth ORDER BY id");
+			int columns = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				sb.append(rs.getInt(1)).append(".");
+				for (int i = 2; i <= columns; i++) {
+					Object value = rs.getObject(i);
+					sb.append(" ").append(value == null ? (rs.wasNull() ? "null" : "null without wasNull") : value.toString());
+				}
+				sb.append("\n");
+			}
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_RnullsFixedWidth");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_RnullsFixedWidth",
+			"1. true 1 2 3 4 5.5 6.5 2020-01-02 03:04:05 2020-01-02 03:04:05.0\n" +
+			"2. null null null null null null null null null null\n" +
+			"3. false 0 0 0 0 0.0 0.0 1970-01-01 00:00:00 1970-01-01 00:00:00.0\n");
+	}
+
+	private void Test_CresultCache(String conURL) {
+		sb.setLength(0);	// clear the output log buffer
+
+		Connection con1 = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			Properties props = new Properties();
+			props.setProperty("result_cache_size", "1048576");
+			con1 = DriverManager.getConnection(conURL, props);
+			MonetResultCache cache = con1.unwrap(MonetConnection.class).getResultCache();
+			stmt = con1.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_CresultCache (i INT)");
+			stmt.executeUpdate("INSERT INTO Test_CresultCache VALUES (1), (2)");
+
+			for (int run = 1; run <= 2; run++) {
+				rs = stmt.executeQuery("SELECT SUM(i) FROM Test_CresultCache");
+				rs.next();
+				sb.append(run).append(". sum ").append(rs.getInt(1)).append(" hits ").append(cache.getHitCount()).append("\n");
+				rs.close();
+			}
+			// any change drops the cached results
+			stmt.executeUpdate("INSERT INTO Test_CresultCache VALUES (3)");
+			rs = stmt.executeQuery("SELECT SUM(i) FROM Test_CresultCache");
+			rs.next();
+			sb.append("3. sum ").append(rs.getInt(1)).append(" hits ").append(cache.getHitCount()).append("\n");
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_CresultCache");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+		closeConx(con1);
+
+		compareExpectedOutput("Test_CresultCache",
+			"1. sum 3 hits 0\n" +
+			"2. sum 3 hits 1\n" +
+			"3. sum 6 hits 1\n");
+	}
+
+	private void Test_Cappend() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_Cappend (i INT, d DOUBLE, s VARCHAR(10))");
+
+			// columns are appended as a whole, nulls given by a mask or as null elements
+			con.unwrap(MonetConnection.class).append(null, "Test_Cappend",
+				MonetAppendColumn.ofInts(new int[] {10, 11, 12}, new boolean[] {false, true, false}),
+				MonetAppendColumn.ofDoubles(new double[] {1.5, 2.5, 3.5}, null),
+				MonetAppendColumn.ofStrings(new String[] {"d", null, "f"}));
+
+			rs = stmt.executeQuery("SELECT i, d, s FROM Test_Cappend ORDER BY d");
+			while (rs.next()) {
+				sb.append(rs.getObject(1)).append(" ").append(rs.getObject(2)).append(" ").append(rs.getString(3)).append("\n");
+			}
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_Cappend");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_Cappend",
+			"10 1.5 d\n" +
+			"null 2.5 null\n" +
+			"12 3.5 f\n");
+	}
+
+	private void Test_PSbatchFailure() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		PreparedStatement pstmt = null;
+		ResultSet rs = null;
+		try {
+			con.setAutoCommit(true);
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_PSbatchFailure (id INT PRIMARY KEY)");
+
+			// in auto commit mode a failing batch is rolled back as a whole, so no row counts as executed
+			pstmt = con.prepareStatement("INSERT INTO Test_PSbatchFailure VALUES (?)");
+			for (int i : new int[] {1, 2, 1, 3}) {
+				pstmt.setInt(1, i);
+				pstmt.addBatch();
+			}
+			try {
+				pstmt.executeBatch();
+				sb.append("1. batch succeeded, expected a BatchUpdateException\n");
+			} catch (BatchUpdateException e) {
+				sb.append("1. update counts: ").append(e.getUpdateCounts().length).append("\n");
+			}
+			rs = stmt.executeQuery("SELECT COUNT(*) FROM Test_PSbatchFailure");
+			rs.next();
+			sb.append("2. rows: ").append(rs.getInt(1)).append("\n");
+			rs.close();
+			rs = null;
+
+			// integer parameters only take values they hold exactly
+			pstmt.setDouble(1, 2.5);
+			sb.append("3. 2.5: ").append(executeState(pstmt)).append("\n");
+			pstmt.setLong(1, 1L << 40);
+			sb.append("4. 2^40: ").append(executeState(pstmt)).append("\n");
+			pstmt.setBigDecimal(1, new BigDecimal("12"));
+			sb.append("5. BigDecimal: ").append(executeState(pstmt)).append("\n");
+			pstmt.setDouble(1, 4.0);
+			sb.append("6. 4.0: ").append(executeState(pstmt)).append("\n");
+
+			stmt.executeUpdate("DROP TABLE Test_PSbatchFailure");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(pstmt, null);
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_PSbatchFailure",
+			"1. update counts: 0\n" +
+			"2. rows: 0\n" +
+			"3. 2.5: 22003\n" +
+			"4. 2^40: 22003\n" +
+			"5. BigDecimal: 0A000\n" +
+			"6. 4.0: 1\n");
+	}
+
+	private String executeState(PreparedStatement pstmt) {
+		try {
+			return String.valueOf(pstmt.executeUpdate());
+		} catch (SQLException e) {
+			return e.getSQLState();
+		}
+	}
+
+	private void Test_CcopyIn() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			MonetConnection mcon = con.unwrap(MonetConnection.class);
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_CcopyIn (i INT, s VARCHAR(10))");
+
+			// the input is streamed to the engine through a named pipe
+			long copied = mcon.copyIn("COPY INTO Test_CcopyIn FROM STDIN", new ByteArrayInputStream("1|a\n2|b\n3|c\n".getBytes(StandardCharsets.UTF_8)));
+			sb.append("1. copied ").append(copied).append("\n");
+			copied = mcon.copyIn("COPY 1 RECORDS INTO Test_CcopyIn FROM STDIN", new StringReader("4|d\n5|e\n"));
+			sb.append("2. copied ").append(copied).append("\n");
+			// a statement which fails before the engine opens the pipe must not leave the caller waiting
+			try {
+				mcon.copyIn("COPY INTO Test_CcopyIn_missing FROM STDIN", new ByteArrayInputStream("1|a\n".getBytes(StandardCharsets.UTF_8)));
+				sb.append("3. copy into a missing table succeeded\n");
+			} catch (SQLException e) {
+				sb.append("3. copy into a missing table failed\n");
+			}
+
+			rs = stmt.executeQuery("SELECT i, s FROM Test_CcopyIn ORDER BY i");
+			while (rs.next()) {
+				sb.append(rs.getInt(1)).append(" ").append(rs.getString(2)).append("\n");
+			}
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_CcopyIn");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_CcopyIn",
+			"1. copied 3\n" +
+			"2. copied 1\n" +
+			"3. copy into a missing table failed\n" +
+			"1 a\n" +
+			"2 b\n" +
+			"3 c\n" +
+			"4 d\n");
+	}
+
+	private void Test_CcsvLoad() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			MonetConnection mcon = con.unwrap(MonetConnection.class);
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_CcsvLoad (d DECIMAL(18,8), i INT, s VARCHAR(10))");
+
+			// numeric fields are trimmed, "15" is scaled to the column, the empty unquoted field is null
+			// and a value with more decimals than the column is rejected
+			MonetCsvLoader loader = new MonetCsvLoader(mcon, null, "Test_CcsvLoad");
+			loader.setMaxRejectedRows(1);
+			MonetCsvLoader.Progress progress = loader.load(new ByteArrayInputStream("15,7,a\n 1.5 , 8 ,\"b,c\"\n,9,\n1.123456789,10,x\n".getBytes(StandardCharsets.UTF_8)));
+			sb.append("1. loaded ").append(progress.getRows()).append(" rejected ").append(progress.getRejectedRows()).append("\n");
+
+			// without a quote character quotes are plain characters
+			loader = new MonetCsvLoader(mcon, null, "Test_CcsvLoad");
+			loader.setQuote('\0');
+			progress = loader.load(new ByteArrayInputStream("2.25,11,\"e\n".getBytes(StandardCharsets.UTF_8)));
+			sb.append("2. loaded ").append(progress.getRows()).append(" rejected ").append(progress.getRejectedRows()).append("\n");
+
+			rs = stmt.executeQuery("SELECT d, i, s FROM Test_CcsvLoad ORDER BY i");
+			while (rs.next()) {
+				BigDecimal d = rs.getBigDecimal(1);
+				sb.append(rs.wasNull() ? "null" : d.toString()).append(" ").append(rs.getInt(2)).append(" ").append(rs.getString(3)).append("\n");
+			}
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_CcsvLoad");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_CcsvLoad",
+			"1. loaded 3 rejected 1\n" +
+			"2. loaded 1 rejected 0\n" +
+			"15.00000000 7 a\n" +
+			"1.50000000 8 b,c\n" +
+			"null 9 null\n" +
+			"2.25000000 11 \"e\n");
+	}
+
+	private void Test_RblobAfterClose() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_RblobAfterClose (b BLOB)");
+			stmt.executeUpdate("INSERT INTO Test_RblobAfterClose VALUES (BLOB '0102FF7F80')");
+
+			// blobs and their streams stay valid after their result set is closed
+			rs = stmt.executeQuery("SELECT b FROM Test_RblobAfterClose");
+			rs.next();
+			Blob blob = rs.getBlob(1);
+			InputStream started = blob.getBinaryStream();
+			InputStream part = blob.getBinaryStream(2, 3);
+			sb.append("1. before close: ").append(started.read()).append("\n");
+			rs.close();
+			rs = null;
+
+			sb.append("2. after close:");
+			for (int b = started.read(); b >= 0; b = started.read())
+				sb.append(" ").append(b);
+			sb.append("\n3. part:");
+			for (int b = part.read(); b >= 0; b = part.read())
+				sb.append(" ").append(b);
+			sb.append("\n4. length ").append(blob.length()).append(", last byte ").append(blob.getBytes(5, 1)[0] & 0xFF).append("\n");
+
+			stmt.executeUpdate("DROP TABLE Test_RblobAfterClose");
+		} catch (SQLException | IOException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_RblobAfterClose",
+			"1. before close: 1\n" +
+			"2. after close: 2 255 127 128\n" +
+			"3. part: 2 255 127\n" +
+			"4. length 5, last byte 128\n");
+	}
+
+	private void Test_RspillToDisk(String conURL) {
+		sb.setLength(0);	// clear the output log buffer
+
+		Connection con1 = null;
+		Statement stmt = null;
+		ResultSet rs = null;
+		Path spillDirectory = null;
+		try {
+			spillDirectory = Files.createTempDirectory("Test_RspillToDisk");
+			Properties props = new Properties();
+			props.setProperty("result_materialization", "spill_to_disk");
+			props.setProperty("spill_directory", spillDirectory.toString());
+			con1 = DriverManager.getConnection(conURL, props);
+			stmt = con1.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_RspillToDisk (id INT, v BIGINT, s VARCHAR(10))");
+			// more rows than one spill chunk (1 << 20 rows), so the values and the string heap span two chunks
+			stmt.executeUpdate("INSERT INTO Test_RspillToDisk SELECT value, CASE WHEN value % 7 = 0 THEN NULL ELSE value * 3 END, CASE WHEN value % 5 = 0 THEN NULL ELSE 'r' || value END FROM sys.generate_series(0, 1100000)");
+
+			rs = stmt.executeQuery("SELECT id, v, s FROM Test_RspillToDisk ORDER BY id");
+			// the spill file is deleted once it is mapped
+			sb.append("1. spill files while open: ").append(countFiles(spillDirectory)).append("\n");
+			int rows = 0, mismatches = 0, nullsV = 0, nullsS = 0;
+			while (rs.next()) {
+				int id = rs.getInt(1);
+				long v = rs.getLong(2);
+				boolean vNull = rs.wasNull();
+				String s = rs.getString(3);
+				if (id != rows
+						|| vNull != (id % 7 == 0) || (!vNull && v != id * 3L)
+						|| (s == null) != (id % 5 == 0) || (s != null && !s.equals("r" + id)))
+					mismatches++;
+				if (vNull)
+					nullsV++;
+				if (s == null)
+					nullsS++;
+				rows++;
+			}
+			sb.append("2. rows ").append(rows).append(", mismatches ").append(mismatches)
+				.append(", null v ").append(nullsV).append(", null s ").append(nullsS).append("\n");
+			// the first row of the second chunk
+			rs.absolute(1048577);
+			sb.append("3. row 1048577: ").append(rs.getInt(1)).append(" ").append(rs.getLong(2)).append(" ").append(rs.getString(3)).append("\n");
+			rs.close();
+			rs = null;
+			sb.append("4. spill files after close: ").append(countFiles(spillDirectory)).append("\n");
+
+			stmt.executeUpdate("DROP TABLE Test_RspillToDisk");
+		} catch (SQLException | IOException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+		closeConx(con1);
+		try {
+			if (spillDirectory != null)
+				Files.deleteIfExists(spillDirectory);
+		} catch (IOException e) { /* ignore */ }
+
+		compareExpectedOutput("Test_RspillToDisk",
+			"1. spill files while open: 0\n" +
+			"2. rows 1100000, mismatches 0, null v 157143, null s 220000\n" +
+			"3. row 1048577: 1048576 3145728 r1048576\n" +
+			"4. spill files after close: 0\n");
+	}
+
+	private long countFiles(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	private void Test_RdictionaryStrings() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_RdictionaryStrings (id INT, few VARCHAR(10), many VARCHAR(10))");
+			// 3000 rows with 10 and 300 distinct values, so both are dictionary encoded, with 1 and 2 byte codes
+			stmt.executeUpdate("INSERT INTO Test_RdictionaryStrings SELECT value, CASE WHEN value % 13 = 0 THEN NULL ELSE 'k' || (value % 10) END, CASE WHEN value % 11 = 0 THEN NULL ELSE 'c' || (value % 300) END FROM sys.generate_series(0, 3000)");
+
+			rs = stmt.executeQuery("SELECT id, few, many FROM Test_RdictionaryStrings ORDER BY id");
+			int mismatches = 0;
+			while (rs.next()) {
+				int id = rs.getInt(1);
+				String few = rs.getString(2);
+				boolean fewNull = rs.wasNull();
+				String many = rs.getString(3);
+				if (!equalsOrNull(few, dictionaryValue(id, false)) || fewNull != (few == null)
+						|| !equalsOrNull(many, dictionaryValue(id, true)) || !equalsOrNull((String) rs.getObject(3), many))
+					mismatches++;
+			}
+			sb.append("1. getString mismatches ").append(mismatches).append("\n");
+
+			MonetColumnarResult columnar = rs.unwrap(MonetColumnarResult.class);
+			for (int column = 2; column <= 3; column++) {
+				MonetStringVector vector = columnar.getStringVector(column);
+				sb.append(column).append(". dictionary ").append(vector instanceof MonetDictionaryVector);
+				if (vector instanceof MonetDictionaryVector)
+					sb.append(" of ").append(((MonetDictionaryVector) vector).getDictionarySize());
+				sb.append(", mismatches ").append(stringVectorMismatches(vector, 0, column == 3)).append("\n");
+			}
+			// a window of rows, which is converted on its own
+			MonetVector[] window = columnar.getVectors(1000, 500);
+			sb.append("4. window of ").append(window[2].size()).append(" rows, mismatches ")
+				.append(stringVectorMismatches((MonetStringVector) window[1], 1000, false) + stringVectorMismatches((MonetStringVector) window[2], 1000, true)).append("\n");
+			rs.close();
+			rs = null;
+
+			// a window of a released result is cut from the dictionary encoded columns
+			stmt.unwrap(MonetStatement.class).setResultMaterialization(MonetResultMaterialization.COPY_AND_RELEASE);
+			rs = stmt.executeQuery("SELECT id, few, many FROM Test_RdictionaryStrings ORDER BY id");
+			window = rs.unwrap(MonetColumnarResult.class).getVectors(1000, 500);
+			sb.append("5. released window dictionary ").append(window[2] instanceof MonetDictionaryVector).append(", mismatches ")
+				.append(stringVectorMismatches((MonetStringVector) window[1], 1000, false) + stringVectorMismatches((MonetStringVector) window[2], 1000, true)).append("\n");
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_RdictionaryStrings");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_RdictionaryStrings",
+			"1. getString mismatches 0\n" +
+			"2. dictionary true of 10, mismatches 0\n" +
+			"3. dictionary true of 300, mismatches 0\n" +
+			"4. window of 500 rows, mismatches 0\n" +
+			"5. released window dictionary true, mismatches 0\n");
+	}
+
+	private static String dictionaryValue(int id, boolean many) {
+		if (many)
+			return id % 11 == 0 ? null : "c" + (id % 300);
+		return id % 13 == 0 ? null : "k" + (id % 10);
+	}
+
+	private static boolean equalsOrNull(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	// compares the values through getString, the codes and the expanded UTF-8 buffers
+	private static int stringVectorMismatches(MonetStringVector vector, int fromRow, boolean many) {
+		int mismatches = 0;
+		ByteBuffer data = vector.getUTF8Data();
+		IntBuffer offsets = vector.getUTF8Offsets();
+		for (int row = 0; row < vector.size(); row++) {
+			String expected = dictionaryValue(fromRow + row, many);
+			byte[] utf8 = new byte[offsets.get(row + 1) - offsets.get(row)];
+			ByteBuffer bytes = data.duplicate();
+			bytes.position(offsets.get(row));
+			bytes.get(utf8);
+			if (vector.isNull(row) != (expected == null)
+					|| !equalsOrNull(vector.getString(row), expected)
+					|| !new String(utf8, StandardCharsets.UTF_8).equals(expected == null ? "" : expected))
+				mismatches++;
+			if (vector instanceof MonetDictionaryVector && expected != null) {
+				MonetDictionaryVector dictionary = (MonetDictionaryVector) vector;
+				if (!dictionary.getDictionaryValue(dictionary.getCode(row)).equals(expected))
+					mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	private void Test_RcopyAndRelease() {
+		sb.setLength(0);	// clear the output log buffer
+
+		Statement stmt = null;
+		Statement fstmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.createStatement();
+			stmt.executeUpdate("CREATE TABLE Test_RcopyAndRelease (id INT, v DOUBLE, s VARCHAR(10), b BLOB, d DATE)");
+			stmt.executeUpdate("INSERT INTO Test_RcopyAndRelease VALUES (1, 1.5, 'a', BLOB '0102', DATE '2020-01-01'), (2, NULL, NULL, NULL, NULL), (3, 3.5, 'c', BLOB 'FF', DATE '2021-12-31')");
+
+			// the whole result is copied when the query returns and the native result is cleaned up,
+			// so the rows, blobs included, are read from Java memory
+			stmt.unwrap(MonetStatement.class).setResultMaterialization(MonetResultMaterialization.COPY_AND_RELEASE);
+			rs = stmt.executeQuery("SELECT id, v, s, b, d FROM Test_RcopyAndRelease ORDER BY id");
+			while (rs.next())
+				appendReleasedRow(rs, "1. ");
+			rs.absolute(1);
+			Blob blob = rs.getBlob(4);
+			sb.append("2. row 1 again: ").append(rs.getInt(1)).append(" ").append(blobHex(blob)).append("\n");
+			MonetVector[] window = rs.unwrap(MonetColumnarResult.class).getVectors(1, 2);
+			sb.append("3. window: ").append(window[0].getObject(0)).append(" ").append(window[3].getObject(0))
+				.append(", ").append(window[0].getObject(1)).append(" ").append(blobHex((Blob) window[3].getObject(1))).append("\n");
+			rs.close();
+			rs = null;
+			sb.append("4. blob after close: ").append(blobHex(blob)).append("\n");
+
+			// a forward only result with a fetch size is copied as a whole as well, not a window at a time
+			fstmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			fstmt.unwrap(MonetStatement.class).setResultMaterialization(MonetResultMaterialization.COPY_AND_RELEASE);
+			fstmt.setFetchSize(2);
+			rs = fstmt.executeQuery("SELECT id, v, s, b, d FROM Test_RcopyAndRelease ORDER BY id");
+			while (rs.next())
+				appendReleasedRow(rs, "5. ");
+			rs.close();
+			rs = null;
+
+			stmt.executeUpdate("DROP TABLE Test_RcopyAndRelease");
+		} catch (SQLException e) {
+			sb.append("FAILED: ").append(e.getMessage()).append("\n");
+		}
+
+		closeStmtResSet(fstmt, null);
+		closeStmtResSet(stmt, rs);
+
+		compareExpectedOutput("Test_RcopyAndRelease",
+			"1. 1 1.5 a 0102 2020-01-01\n" +
+			"1. 2 null null null null\n" +
+			"1. 3 3.5 c ff 2021-12-31\n" +
+			"2. row 1 again: 1 0102\n" +
+			"3. window: 2 null, 3 ff\n" +
+			"4. blob after close: 0102\n" +
+			"5. 1 1.5 a 0102 2020-01-01\n" +
+			"5. 2 null null null null\n" +
+			"5. 3 3.5 c ff 2021-12-31\n");
+	}
+
+	private void appendReleasedRow(ResultSet rs, String prefix) throws SQLException {
+		sb.append(prefix).append(rs.getInt(1)).append(" ").append(rs.getObject(2)).append(" ").append(rs.getString(3))
+			.append(" ").append(blobHex(rs.getBlob(4))).append(" ").append(rs.getObject(5)).append("\n");
+	}
+
+	private static String blobHex(Blob blob) throws SQLException {
+		if (blob == null)
+			return "null";
+		StringBuilder hex = new StringBuilder();
+		for (byte b : blob.getBytes(1, (int) blob.length()))
+			hex.append(String.format("%02x", b & 0xFF));
+		return hex.toString();
+	}
+
 	private void readExceptions(SQLException e) {
 		while (e != null) {
 			sb.append("Exception: ").append(e.toString()).append("\n");
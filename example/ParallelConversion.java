@@ -0,0 +1,79 @@
+import org.monetdb.monetdbe.MonetColumnarResult;
+
+import java.sql.*;
+import java.util.Properties;
+
+//Compares serial and parallel conversion of result columns for a growing number of columns
+//The parallel pool is used once the result has at least parallel_conversion_rows rows and parallel_conversion_columns columns
+public class ParallelConversion {
+    private static final int ROWS = 2000000;
+    private static final int MAX_COLUMNS = 32;
+    private static final int RUNS = 5;
+
+    private static Connection connect(int conversionThreads) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("conversion_threads", String.valueOf(conversionThreads));
+        Connection c = DriverManager.getConnection("jdbc:monetdb://:memory:", props);
+
+        StringBuilder create = new StringBuilder("CREATE TABLE wide (");
+        StringBuilder select = new StringBuilder("INSERT INTO wide SELECT ");
+        for (int i = 1; i <= MAX_COLUMNS; i++) {
+            String sep = i < MAX_COLUMNS ? ", " : "";
+            //Alternate string, timestamp and integer columns, which all need conversion work
+            if (i % 3 == 0) {
+                create.append("c").append(i).append(" VARCHAR(32)").append(sep);
+                select.append("'row' || CAST(value + ").append(i).append(" AS VARCHAR(20))").append(sep);
+            }
+            else if (i % 3 == 1) {
+                create.append("c").append(i).append(" TIMESTAMP").append(sep);
+                select.append("TIMESTAMP '2020-01-01 00:00:00' + CAST(value AS INTERVAL SECOND)").append(sep);
+            }
+            else {
+                create.append("c").append(i).append(" INT").append(sep);
+                select.append("CASE WHEN value % 10 = 0 THEN NULL ELSE value END").append(sep);
+            }
+        }
+        Statement s = c.createStatement();
+        s.execute(create.append(");").toString());
+        s.execute(select.append(" FROM sys.generate_series(0, ").append(ROWS).append(");").toString());
+        s.close();
+        return c;
+    }
+
+    //Best of RUNS, in milliseconds
+    private static double fetchColumns(Connection c, int columns) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 1; i <= columns; i++) {
+            query.append("c").append(i).append(i < columns ? ", " : " FROM wide;");
+        }
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            Statement s = c.createStatement();
+            ResultSet rs = s.executeQuery(query.toString());
+            long start = System.nanoTime();
+            rs.unwrap(MonetColumnarResult.class).getVectors();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            rs.close();
+            s.close();
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        try {
+            Connection serial = connect(1);
+            Connection parallel = connect(Runtime.getRuntime().availableProcessors());
+            System.out.println(ROWS + " rows, " + Runtime.getRuntime().availableProcessors() + " threads");
+            System.out.println("columns\tserial (ms)\tparallel (ms)\tspeedup");
+            for (int columns = 1; columns <= MAX_COLUMNS; columns *= 2) {
+                double serialTime = fetchColumns(serial, columns);
+                double parallelTime = fetchColumns(parallel, columns);
+                System.out.printf("%d\t%.1f\t%.1f\t%.2fx%n", columns, serialTime, parallelTime, serialTime / parallelTime);
+            }
+            serial.close();
+            parallel.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package org.monetdb.monetdbe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+/**
+ * Values of one column for {@link MonetConnection#append(String, String, MonetAppendColumn...)}, which
+ * hands all columns to monetdbe_append in a single native call.
+ *
+ * The values are laid out in direct buffers once, when the column is created: fixed width values as a
+ * flat array in native byte order, strings as NUL terminated UTF-8 bytes and temporal values as epoch days
+ * (DATE), microseconds of the day (TIME) or epoch microseconds (TIMESTAMP), as in {@link MonetTemporalVector}.
+ * A null mask marks the null rows (true for null), a null mask of null means no row is null. The null
+ * elements of object arrays are null rows as well.
+ *
+ * The type of a column must be the type of the table column it is appended to, as monetdbe_append doesn't
+ * convert values. Columns are matched to the table's columns by position.
+ */
+public final class MonetAppendColumn {
+    final int monetdbeType;
+    final int rows;
+    //Values of the rows, offsets of the strings and BLOBs and a byte per row which is 1 for null rows (null without null rows)
+    final ByteBuffer data;
+    final ByteBuffer offsets;
+    final ByteBuffer nulls;
+
+    //Buffers in the layout described above, as built by MonetCsvLoader
+    MonetAppendColumn(int monetdbeType, int rows, ByteBuffer data, ByteBuffer offsets, ByteBuffer nulls) {
+        this.monetdbeType = monetdbeType;
+        this.rows = rows;
+        this.data = data;
+        this.offsets = offsets;
+        this.nulls = nulls;
+    }
+
+    public static MonetAppendColumn ofBooleans(boolean[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(values.length);
+        for (int i = 0; i < values.length; i++) {
+            data.put(i, values[i] ? (byte) 1 : 0);
+        }
+        return new MonetAppendColumn(0, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /** TINYINT values */
+    public static MonetAppendColumn ofBytes(byte[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(values.length);
+        data.put(values).clear();
+        return new MonetAppendColumn(1, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /** SMALLINT values */
+    public static MonetAppendColumn ofShorts(short[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(2 * values.length);
+        data.asShortBuffer().put(values);
+        return new MonetAppendColumn(2, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /** INTEGER values */
+    public static MonetAppendColumn ofInts(int[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(4 * values.length);
+        data.asIntBuffer().put(values);
+        return new MonetAppendColumn(3, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /** BIGINT values */
+    public static MonetAppendColumn ofLongs(long[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(8 * values.length);
+        data.asLongBuffer().put(values);
+        return new MonetAppendColumn(4, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /** REAL values */
+    public static MonetAppendColumn ofFloats(float[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(4 * values.length);
+        data.asFloatBuffer().put(values);
+        return new MonetAppendColumn(7, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /** DOUBLE values */
+    public static MonetAppendColumn ofDoubles(double[] values, boolean[] nulls) {
+        ByteBuffer data = allocate(8 * values.length);
+        data.asDoubleBuffer().put(values);
+        return new MonetAppendColumn(8, values.length, data, null, nullMask(nulls, values.length));
+    }
+
+    /**
+     * Values which are already laid out in a direct buffer, read from its position up to its limit without copying them.
+     *
+     * @param sqlType the java.sql.Types type of the values: BOOLEAN (1 byte), TINYINT, SMALLINT, INTEGER, BIGINT,
+     *                NUMERIC (16 byte HUGEINT), REAL or DOUBLE
+     * @param data the values in native byte order
+     */
+    public static MonetAppendColumn ofBuffer(int sqlType, ByteBuffer data, boolean[] nulls) {
+        int monetdbeType = MonetTypes.getMonetTypeFromSQL(sqlType);
+        int width = MonetTypes.getMonetSize(monetdbeType);
+        if (!data.isDirect() || width == 0) {
+            throw new IllegalArgumentException("A direct buffer of fixed width values is required");
+        }
+        if (data.remaining() % width != 0) {
+            throw new IllegalArgumentException("The buffer holds " + data.remaining() + " bytes, which is not a multiple of " + width);
+        }
+        int rows = data.remaining() / width;
+        return new MonetAppendColumn(monetdbeType, rows, data.slice(), null, nullMask(nulls, rows));
+    }
+
+    /**
+     * Values which are already laid out in a direct buffer, as {@link #ofBuffer(int, ByteBuffer, boolean[])}, with the
+     * nulls given by a validity bitmap as in {@link MonetVector#getValidity()}. The buffers may be larger than the rows.
+     *
+     * @param sqlType the java.sql.Types type of the values, a type of {@link #ofBuffer(int, ByteBuffer, boolean[])} or
+     *                DATE (4 byte epoch days), TIME (8 byte microseconds of the day) or TIMESTAMP (8 byte epoch microseconds)
+     * @param validity bit (row &amp; 7) of byte (row &gt;&gt; 3) is set for rows which are not null, null if no row is null
+     */
+    public static MonetAppendColumn ofBuffer(int sqlType, ByteBuffer data, ByteBuffer validity, int rows) {
+        int monetdbeType = MonetTypes.getMonetTypeFromSQL(sqlType);
+        int width = fixedWidth(monetdbeType);
+        if (!data.isDirect() || width == 0) {
+            throw new IllegalArgumentException("A direct buffer of fixed width values is required");
+        }
+        checkSize(data, (long) width * rows, "values");
+        return new MonetAppendColumn(monetdbeType, rows, data.slice(), null, validityMask(validity, rows));
+    }
+
+    /**
+     * Character values as UTF-8 bytes, row i runs from offset i up to offset i + 1 from the position of the data.
+     * The offsets are rows + 1 ints in the byte order of their buffer. The bytes are copied once, as monetdbe needs
+     * NUL terminated strings.
+     *
+     * @param validity as in {@link #ofBuffer(int, ByteBuffer, ByteBuffer, int)}
+     */
+    public static MonetAppendColumn ofUTF8(ByteBuffer data, ByteBuffer offsets, ByteBuffer validity, int rows) {
+        checkSize(offsets, 4L * (rows + 1), "offsets");
+        ByteBuffer nulls = validityMask(validity, rows);
+        int base = offsets.position();
+        int start = offsets.getInt(base);
+        if ((long) offsets.getInt(base + 4 * rows) - start + rows > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The strings are larger than 2 GB");
+        }
+
+        //As ofStrings, each string is followed by a NUL and null rows have no bytes
+        ByteBuffer heap = allocate(offsets.getInt(base + 4 * rows) - start + rows);
+        ByteBuffer rowOffsets = allocate(4 * rows);
+        ByteBuffer values = data.duplicate();
+        int from = data.position();
+        for (int i = 0; i < rows; i++) {
+            rowOffsets.putInt(4 * i, heap.position());
+            if (nulls == null || nulls.get(i) == 0) {
+                values.limit(from + offsets.getInt(base + 4 * (i + 1))).position(from + offsets.getInt(base + 4 * i));
+                heap.put(values).put((byte) 0);
+            }
+        }
+        heap.clear();
+        return new MonetAppendColumn(9, rows, heap, rowOffsets, nulls);
+    }
+
+    /**
+     * BLOB values, row i runs from offset i up to offset i + 1 from the position of the data. The offsets are
+     * rows + 1 ints in the byte order of their buffer. Direct buffers in native byte order are passed to monetdbe
+     * without copying them.
+     *
+     * @param validity as in {@link #ofBuffer(int, ByteBuffer, ByteBuffer, int)}
+     */
+    public static MonetAppendColumn ofBinary(ByteBuffer data, ByteBuffer offsets, ByteBuffer validity, int rows) {
+        checkSize(offsets, 4L * (rows + 1), "offsets");
+        ByteBuffer values = data.isDirect() ? data.slice() : allocate(data.remaining()).put(data.duplicate());
+        values.clear();
+        ByteBuffer rowOffsets;
+        if (offsets.isDirect() && offsets.order() == ByteOrder.nativeOrder()) {
+            rowOffsets = offsets.slice();
+        }
+        else {
+            rowOffsets = allocate(4 * (rows + 1));
+            for (int i = 0; i <= rows; i++) {
+                rowOffsets.putInt(4 * i, offsets.getInt(offsets.position() + 4 * i));
+            }
+        }
+        return new MonetAppendColumn(10, rows, values, rowOffsets, validityMask(validity, rows));
+    }
+
+    /** Character values, null elements are null rows */
+    public static MonetAppendColumn ofStrings(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        boolean[] nulls = null;
+        long size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                if (nulls == null) {
+                    nulls = new boolean[values.length];
+                }
+                nulls[i] = true;
+                continue;
+            }
+            encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            size += encoded[i].length + 1;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The strings are larger than 2 GB");
+        }
+
+        //Each string is followed by a NUL, null rows have no bytes
+        ByteBuffer data = allocate((int) size);
+        ByteBuffer offsets = allocate(4 * values.length);
+        for (int i = 0; i < values.length; i++) {
+            offsets.putInt(4 * i, data.position());
+            if (encoded[i] != null) {
+                data.put(encoded[i]).put((byte) 0);
+            }
+        }
+        data.clear();
+        return new MonetAppendColumn(9, values.length, data, offsets, nullMask(nulls, values.length));
+    }
+
+    /** BLOB values, null elements are null rows */
+    public static MonetAppendColumn ofBlobs(byte[][] values) {
+        boolean[] nulls = null;
+        long size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                if (nulls == null) {
+                    nulls = new boolean[values.length];
+                }
+                nulls[i] = true;
+            }
+            else {
+                size += values[i].length;
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The blobs are larger than 2 GB");
+        }
+
+        //Row i runs from offset i up to offset i + 1
+        ByteBuffer data = allocate((int) size);
+        ByteBuffer offsets = allocate(4 * (values.length + 1));
+        for (int i = 0; i < values.length; i++) {
+            offsets.putInt(4 * i, data.position());
+            if (values[i] != null) {
+                data.put(values[i]);
+            }
+        }
+        offsets.putInt(4 * values.length, data.position());
+        data.clear();
+        return new MonetAppendColumn(10, values.length, data, offsets, nullMask(nulls, values.length));
+    }
+
+    /** DATE values as days since 1970-01-01 */
+    public static MonetAppendColumn ofEpochDays(int[] days, boolean[] nulls) {
+        ByteBuffer data = allocate(4 * days.length);
+        data.asIntBuffer().put(days);
+        return new MonetAppendColumn(11, days.length, data, null, nullMask(nulls, days.length));
+    }
+
+    /** TIME values as microseconds since midnight */
+    public static MonetAppendColumn ofMicrosOfDay(long[] micros, boolean[] nulls) {
+        ByteBuffer data = allocate(8 * micros.length);
+        data.asLongBuffer().put(micros);
+        return new MonetAppendColumn(12, micros.length, data, null, nullMask(nulls, micros.length));
+    }
+
+    /** TIMESTAMP values as microseconds since 1970-01-01T00:00 */
+    public static MonetAppendColumn ofEpochMicros(long[] micros, boolean[] nulls) {
+        ByteBuffer data = allocate(8 * micros.length);
+        data.asLongBuffer().put(micros);
+        return new MonetAppendColumn(13, micros.length, data, null, nullMask(nulls, micros.length));
+    }
+
+    /** DATE values, null elements are null rows */
+    public static MonetAppendColumn ofDates(LocalDate[] values) {
+        int[] days = new int[values.length];
+        boolean[] nulls = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                nulls[i] = true;
+            }
+            else {
+                days[i] = Math.toIntExact(values[i].toEpochDay());
+            }
+        }
+        return ofEpochDays(days, nulls);
+    }
+
+    /** TIME values, null elements are null rows */
+    public static MonetAppendColumn ofTimes(LocalTime[] values) {
+        long[] micros = new long[values.length];
+        boolean[] nulls = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                nulls[i] = true;
+            }
+            else {
+                micros[i] = values[i].toNanoOfDay() / 1000;
+            }
+        }
+        return ofMicrosOfDay(micros, nulls);
+    }
+
+    /** TIMESTAMP values, null elements are null rows */
+    public static MonetAppendColumn ofTimestamps(LocalDateTime[] values) {
+        long[] micros = new long[values.length];
+        boolean[] nulls = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                nulls[i] = true;
+            }
+            else {
+                micros[i] = Math.addExact(Math.multiplyExact(values[i].toEpochSecond(ZoneOffset.UTC), 1000000L), values[i].getNano() / 1000);
+            }
+        }
+        return ofEpochMicros(micros, nulls);
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    //Bytes per value in the layout of the type, 0 for strings and BLOBs
+    private static int fixedWidth(int monetdbeType) {
+        switch (monetdbeType) {
+            case 11:
+                return 4;
+            case 12:
+            case 13:
+                return 8;
+            default:
+                return MonetTypes.getMonetSize(monetdbeType);
+        }
+    }
+
+    private static void checkSize(ByteBuffer buffer, long size, String what) {
+        if (buffer.remaining() < size) {
+            throw new IllegalArgumentException("The " + what + " buffer holds " + buffer.remaining() + " bytes, " + size + " are needed");
+        }
+    }
+
+    //As nullMask, from a validity bitmap
+    private static ByteBuffer validityMask(ByteBuffer validity, int rows) {
+        if (validity == null) {
+            return null;
+        }
+        checkSize(validity, (rows + 7) / 8, "validity");
+        ByteBuffer mask = null;
+        int base = validity.position();
+        for (int i = 0; i < rows; i++) {
+            if ((validity.get(base + (i >>> 3)) & (1 << (i & 7))) == 0) {
+                if (mask == null) {
+                    mask = allocate(rows);
+                }
+                mask.put(i, (byte) 1);
+            }
+        }
+        return mask;
+    }
+
+    //Null when no row is null, so the native side can hand the values over without copying them
+    private static ByteBuffer nullMask(boolean[] nulls, int rows) {
+        if (nulls == null) {
+            return null;
+        }
+        if (nulls.length != rows) {
+            throw new IllegalArgumentException("The null mask has " + nulls.length + " rows, the values " + rows);
+        }
+        ByteBuffer mask = null;
+        for (int i = 0; i < rows; i++) {
+            if (nulls[i]) {
+                if (mask == null) {
+                    mask = allocate(rows);
+                }
+                mask.put(i, (byte) 1);
+            }
+        }
+        return mask;
+    }
+}
@@ -8,9 +8,10 @@
 
 package org.monetdb.monetdbe;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
@@ -18,25 +19,34 @@ import java.sql.SQLFeatureNotSupportedException;
 /**
  * The MonetBlob class implements the {@link java.sql.Blob} interface.
  *
- * Because MonetDB/SQL currently has no support for streams, this class is a
- * shallow wrapper of a byte[].  It is more or less supplied to
- * enable an application that depends on it to run.  It may be obvious
- * that it is a real resource expensive workaround that contradicts the
- * benefits for a Blob: avoidance of huge resource consumption.
- * <b>Use of this class is highly discouraged.</b>
+ * The bytes are held in a ByteBuffer.  Blobs of query results are slices of
+ * the native result's memory, so reading them or streaming them with
+ * {@link #getBinaryStream()} doesn't copy the value into a byte[]; only
+ * {@link #getBytes(long, int)} does.  Such blobs are copied to the Java heap
+ * when their result set is closed, so they and their streams stay readable,
+ * and also by {@link #asByteBuffer()} and the first write.
  *
  * @author Fabian Groffen
  */
 public final class MonetBlob implements Blob {
-	private byte[] buf;
+	private ByteBuffer buf;
+	// fetcher of the result which owns the native memory of buf, null if buf is on the Java heap
+	private MonetResultFetcher source;
 
 	/* constructors */
 	public MonetBlob(final byte[] data) {
-		buf = data;
+		buf = data != null ? ByteBuffer.wrap(data) : null;
 	}
 
 	public MonetBlob(final String hexString) {
-		buf = hexStrToByteArray(hexString);
+		buf = ByteBuffer.wrap(hexStrToByteArray(hexString));
+	}
+
+	// slice of the native memory of a query result, which the result copies to the heap before it is closed
+	MonetBlob(final ByteBuffer data, final MonetResultFetcher source) {
+		buf = data;
+		this.source = source;
+		source.register(this);
 	}
 
 
@@ -57,6 +67,47 @@ public final class MonetBlob implements Blob {
 	private final void checkBufIsNotNull() throws SQLException {
 		if (buf == null)
 			throw new SQLException("This MonetBlob has been freed", "M1M20");
+		if (source != null && source.isClosed())
+			throw new SQLException("The result set of this MonetBlob has been closed", "M1M20");
+	}
+
+	/* copies a blob of a query result to the Java heap, called by the result before its native memory is freed */
+	synchronized void detach() {
+		if (buf != null && source != null)
+			makeWritable();
+	}
+
+	/* the current bytes for the streams over this blob, which lock the blob while they read them */
+	ByteBuffer getStreamBuffer() throws IOException {
+		if (buf == null)
+			throw new IOException("This MonetBlob has been freed");
+		if (source != null && source.isClosed())
+			throw new IOException("The result set of this MonetBlob has been closed");
+		return buf;
+	}
+
+	/* copies a blob of a query result to the Java heap, so it can be written without changing the result */
+	private final void makeWritable() {
+		if (source != null || buf.isReadOnly()) {
+			final byte[] copy = new byte[buf.limit()];
+			buf.duplicate().get(copy);
+			buf = ByteBuffer.wrap(copy);
+			source = null;
+		}
+	}
+
+	/**
+	 * Returns a read-only view of the BLOB value.  Blobs of query results
+	 * are copied to the Java heap first, as a view of the result's memory
+	 * can't be taken back when the result set is closed.
+	 *
+	 * @return a read-only ByteBuffer with the bytes of the BLOB value
+	 * @throws SQLException if there is an error accessing the BLOB value
+	 */
+	public synchronized ByteBuffer asByteBuffer() throws SQLException {
+		checkBufIsNotNull();
+		detach();
+		return buf.asReadOnlyBuffer();
 	}
 
 	//== begin interface Blob
@@ -73,8 +124,9 @@ public final class MonetBlob implements Blob {
 	 * @throws SQLException if an error occurs releasing the Blob's resources
 	 */
 	@Override
-	public void free() throws SQLException {
+	public synchronized void free() throws SQLException {
 		buf = null;
+		source = null;
 	}
 
 	/**
@@ -84,9 +136,9 @@ public final class MonetBlob implements Blob {
 	 * @throws SQLException if there is an error accessing the BLOB value
 	 */
 	@Override
-	public InputStream getBinaryStream() throws SQLException {
+	public synchronized InputStream getBinaryStream() throws SQLException {
 		checkBufIsNotNull();
-		return new ByteArrayInputStream(buf);
+		return new MonetByteBufferInputStream(buf, this);
 	}
 
 	/**
@@ -103,17 +155,20 @@ public final class MonetBlob implements Blob {
 	 *         length is greater than the number of bytes in the Blob
 	 */
 	@Override
-	public InputStream getBinaryStream(final long pos, final long length)
+	public synchronized InputStream getBinaryStream(final long pos, final long length)
 		throws SQLException
 	{
 		checkBufIsNotNull();
-		if (pos < 1 || pos > buf.length) {
+		if (pos < 1 || pos > buf.limit()) {
 			throw new SQLException("Invalid pos value: " + pos, "M1M05");
 		}
-		if (length < 0 || pos - 1 + length > buf.length) {
+		if (length < 0 || pos - 1 + length > buf.limit()) {
 			throw new SQLException("Invalid length value: " + length, "M1M05");
 		}
-		return new ByteArrayInputStream(buf, (int) pos - 1, (int) length);
+		final ByteBuffer part = buf.duplicate();
+		part.limit((int) (pos - 1 + length));
+		part.position((int) pos - 1);
+		return new MonetByteBufferInputStream(part, this);
 	}
 
 	/**
@@ -130,17 +185,21 @@ public final class MonetBlob implements Blob {
 	 * @throws SQLException if there is an error accessing the BLOB value
 	 */
 	@Override
-	public byte[] getBytes(final long pos, final int length) throws SQLException {
+	public synchronized byte[] getBytes(final long pos, final int length) throws SQLException {
 		checkBufIsNotNull();
-		if (pos < 1 || pos > buf.length) {
+		if (pos < 1 || pos > buf.limit()) {
 			throw new SQLException("Invalid pos value: " + pos, "M1M05");
 		}
-		if (length < 0 || pos - 1 + length > buf.length) {
+		if (length < 0 || pos - 1 + length > buf.limit()) {
 			throw new SQLException("Invalid length value: " + length, "M1M05");
 		}
 
 		try {
-			return java.util.Arrays.copyOfRange(buf, (int) pos - 1, (int) pos - 1 + length);
+			final byte[] bytes = new byte[length];
+			final ByteBuffer src = buf.duplicate();
+			src.position((int) pos - 1);
+			src.get(bytes);
+			return bytes;
 		} catch (IndexOutOfBoundsException e) {
 			throw new SQLException(e.getMessage(), "M0M10");
 		}
@@ -155,9 +214,9 @@ public final class MonetBlob implements Blob {
 	 *         of the BLOB value
 	 */
 	@Override
-	public long length() throws SQLException {
+	public synchronized long length() throws SQLException {
 		checkBufIsNotNull();
-		return (long)buf.length;
+		return (long)buf.limit();
 	}
 
 	/**
@@ -192,21 +251,21 @@ public final class MonetBlob implements Blob {
 	 * @throws SQLException if there is an error accessing the BLOB value
 	 */
 	@Override
-	public long position(final byte[] pattern, final long start) throws SQLException {
+	public synchronized long position(final byte[] pattern, final long start) throws SQLException {
 		checkBufIsNotNull();
 		if (pattern == null) {
 			throw new SQLException("Missing pattern object", "M1M05");
 		}
-		if (start < 1 || start > buf.length) {
+		if (start < 1 || start > buf.limit()) {
 			throw new SQLException("Invalid start value: " + start, "M1M05");
 		}
 		try {
 			final int patternLength = pattern.length;
-			final int maxPos = buf.length - patternLength;
+			final int maxPos = buf.limit() - patternLength;
 			for (int i = (int)(start - 1); i < maxPos; i++) {
 				int j;
 				for (j = 0; j < patternLength; j++) {
-					if (buf[i + j] != pattern[j])
+					if (buf.get(i + j) != pattern[j])
 						break;
 				}
 				if (j == patternLength)
@@ -277,28 +336,29 @@ public final class MonetBlob implements Blob {
 	 *         BLOB value or if pos is less than 1
 	 */
 	@Override
-	public int setBytes(final long pos, final byte[] bytes, int offset, final int len)
+	public synchronized int setBytes(final long pos, final byte[] bytes, int offset, final int len)
 		throws SQLException
 	{
 		checkBufIsNotNull();
 		if (bytes == null) {
 			throw new SQLException("Missing bytes[] object", "M1M05");
 		}
-		if (pos < 1 || pos > buf.length) {
+		if (pos < 1 || pos > buf.limit()) {
 			throw new SQLException("Invalid pos value: " + pos, "M1M05");
 		}
-		if (len < 0 || pos + len > buf.length) {
+		if (len < 0 || pos + len > buf.limit()) {
 			throw new SQLException("Invalid len value: " + len, "M1M05");
 		}
 		if (offset < 0 || offset > bytes.length) {
 			throw new SQLException("Invalid offset value: " + offset, "M1M05");
 		}
 
+		makeWritable();
 		try {
 			offset--;
 			/* transactions? what are you talking about? */
 			for (int i = (int)pos; i < len; i++)
-				buf[i] = bytes[offset + i];
+				buf.put(i, bytes[offset + i]);
 		} catch (IndexOutOfBoundsException e) {
 			throw new SQLException(e.getMessage(), "M0M10");
 		}
@@ -314,13 +374,15 @@ public final class MonetBlob implements Blob {
 	 * @throws SQLException if there is an error accessing the BLOB value
 	 */
 	@Override
-	public void truncate(final long len) throws SQLException {
+	public synchronized void truncate(final long len) throws SQLException {
 		checkBufIsNotNull();
-		if (len < 0 || len > buf.length) {
+		if (len < 0 || len > buf.limit()) {
 			throw new SQLException("Invalid len value: " + len, "M1M05");
 		}
-		if (buf.length > len) {
-			buf = java.util.Arrays.copyOf(buf, (int)len);
+		if (buf.limit() > len) {
+			final ByteBuffer truncated = buf.duplicate();
+			truncated.limit((int)len);
+			buf = truncated.slice();
 		}
 	}
 }
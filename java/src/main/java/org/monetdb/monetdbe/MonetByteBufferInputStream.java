@@ -0,0 +1,115 @@
+package org.monetdb.monetdbe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * InputStream over the remaining bytes of a ByteBuffer, used to stream BLOB and CLOB values
+ * straight from the result buffers without copying them into a byte[] first.
+ * The stream reads from its own duplicate, so the position of the given buffer isn't changed.
+ *
+ * A stream over a blob reads through the blob's current buffer on every read, as a blob of a query
+ * result replaces its view of the native result by a heap copy when the result is closed.
+ */
+final class MonetByteBufferInputStream extends InputStream {
+    private final MonetBlob blob;
+    //Buffer of the blob the stream's duplicate was last taken from, null until the first read
+    private ByteBuffer base;
+    private ByteBuffer buffer;
+    private int mark;
+
+    MonetByteBufferInputStream(ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    //buffer is the blob's current buffer or a part of it
+    MonetByteBufferInputStream(ByteBuffer buffer, MonetBlob blob) {
+        this.blob = blob;
+        this.buffer = buffer.duplicate();
+        this.mark = this.buffer.position();
+    }
+
+    //Takes the same position and limit in the blob's heap copy, the caller holds the blob's lock
+    private ByteBuffer buffer() throws IOException {
+        if (blob != null) {
+            ByteBuffer current = blob.getStreamBuffer();
+            if (current != base) {
+                ByteBuffer rebased = current.duplicate();
+                rebased.limit(Math.min(buffer.limit(), current.limit()));
+                rebased.position(Math.min(buffer.position(), rebased.limit()));
+                base = current;
+                buffer = rebased;
+            }
+        }
+        return buffer;
+    }
+
+    private Object lock() {
+        return blob != null ? blob : this;
+    }
+
+    @Override
+    public int read() throws IOException {
+        synchronized (lock()) {
+            ByteBuffer b = buffer();
+            return b.hasRemaining() ? b.get() & 0xFF : -1;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (lock()) {
+            ByteBuffer source = buffer();
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, source.remaining());
+            source.get(b, off, read);
+            return read;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        synchronized (lock()) {
+            ByteBuffer source = buffer();
+            int skipped = (int) Math.max(0, Math.min(n, source.remaining()));
+            source.position(source.position() + skipped);
+            return skipped;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        synchronized (lock()) {
+            return buffer().remaining();
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        synchronized (lock()) {
+            mark = buffer.position();
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        synchronized (lock()) {
+            ByteBuffer source = buffer();
+            source.position(Math.min(mark, source.limit()));
+        }
+    }
+}
@@ -9,8 +9,11 @@
 package org.monetdb.monetdbe;
 
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Clob;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
@@ -18,28 +21,41 @@ import java.sql.SQLFeatureNotSupportedException;
 /**
  * The MonetClob class implements the {@link java.sql.Clob} interface.
  *
- * Because MonetDB/SQL currently has no support for streams, this class is a
- * shallow wrapper of a {@link StringBuilder}.  It is more or less supplied to
- * enable an application that depends on it to run.  It may be obvious
- * that it is a real resource expensive workaround that contradicts the
- * sole reason for a Clob: avoidance of huge resource consumption.
- * <b>Use of this class is highly discouraged.</b>
+ * Clobs of query results hold the UTF-8 bytes of the value in the result's
+ * string buffer.  {@link #getCharacterStream()}, {@link #getAsciiStream()}
+ * and {@link #length()} read those bytes directly; only the methods which
+ * need random access to the characters decode them into a {@link StringBuilder}.
  *
  * @author Fabian Groffen
  */
 public final class MonetClob implements Clob {
 	private StringBuilder buf;
+	// UTF-8 bytes of a query result value, until the characters are needed
+	private ByteBuffer utf8;
 
 	protected MonetClob(final String in) {
 		buf = new StringBuilder(in);
 	}
 
+	MonetClob(final ByteBuffer utf8) {
+		this.utf8 = utf8;
+	}
+
 	/* internal utility method */
 	private final void checkBufIsNotNull() throws SQLException {
-		if (buf == null)
+		if (buf == null && utf8 == null)
 			throw new SQLException("This MonetClob has been freed", "M1M20");
 	}
 
+	/* decodes the UTF-8 bytes on the first access to the characters */
+	private final StringBuilder chars() {
+		if (buf == null) {
+			buf = new StringBuilder(StandardCharsets.UTF_8.decode(utf8.duplicate()));
+			utf8 = null;
+		}
+		return buf;
+	}
+
 	//== begin interface Clob
 
 	/**
@@ -55,6 +71,7 @@ public final class MonetClob implements Clob {
 	@Override
 	public void free() {
 		buf = null;
+		utf8 = null;
 	}
 
 	/**
@@ -67,6 +84,8 @@ public final class MonetClob implements Clob {
 	@Override
 	public InputStream getAsciiStream() throws SQLException {
 		checkBufIsNotNull();
+		if (utf8 != null)
+			return new MonetByteBufferInputStream(utf8);
 		return new java.io.ByteArrayInputStream(buf.toString().getBytes());
 	}
 
@@ -80,6 +99,8 @@ public final class MonetClob implements Clob {
 	@Override
 	public Reader getCharacterStream() throws SQLException {
 		checkBufIsNotNull();
+		if (utf8 != null)
+			return new InputStreamReader(new MonetByteBufferInputStream(utf8), StandardCharsets.UTF_8);
 		return new StringReader(buf.toString());
 	}
 
@@ -124,6 +145,7 @@ public final class MonetClob implements Clob {
 	@Override
 	public String getSubString(final long pos, final int length) throws SQLException {
 		checkBufIsNotNull();
+		final StringBuilder buf = chars();
 		if (pos == 1L && length == buf.length()) {
 			// the whole string is requested
 			return buf.toString();
@@ -152,6 +174,16 @@ public final class MonetClob implements Clob {
 	@Override
 	public long length() throws SQLException {
 		checkBufIsNotNull();
+		if (utf8 != null) {
+			// every byte which doesn't continue a sequence starts a character, 4 byte sequences need 2 chars
+			long length = 0;
+			for (int i = 0; i < utf8.limit(); i++) {
+				final int b = utf8.get(i) & 0xFF;
+				if ((b & 0xC0) != 0x80)
+					length += b >= 0xF0 ? 2 : 1;
+			}
+			return length;
+		}
 		return (long)buf.length();
 	}
 
@@ -191,6 +223,7 @@ public final class MonetClob implements Clob {
 	@Override
 	public long position(final String searchstr, final long start) throws SQLException {
 		checkBufIsNotNull();
+		final StringBuilder buf = chars();
 		if (searchstr == null) {
 			throw new SQLException("Missing searchstr object", "M1M05");
 		}
@@ -278,6 +311,7 @@ public final class MonetClob implements Clob {
 		throws SQLException
 	{
 		checkBufIsNotNull();
+		final StringBuilder buf = chars();
 		if (str == null) {
 			throw new SQLException("Missing str object", "M1M05");
 		}
@@ -309,6 +343,7 @@ public final class MonetClob implements Clob {
 	@Override
 	public void truncate(final long len) throws SQLException {
 		checkBufIsNotNull();
+		final StringBuilder buf = chars();
 		if (len < 0 || len > buf.length()) {
 			throw new SQLException("Invalid len value: " + len, "M1M05");
 		}
@@ -324,8 +359,8 @@ public final class MonetClob implements Clob {
 	 * @return the String this MonetClob wraps or empty string when this MonetClob was freed.
 	 */
 	public String toString() {
-		if (buf == null)
+		if (buf == null && utf8 == null)
 			return "";
-		return buf.toString();
+		return chars().toString();
 	}
 }
@@ -2,8 +2,8 @@ package org.monetdb.monetdbe;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.MathContext;
 import java.nio.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -11,31 +11,101 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
-import java.util.BitSet;
-
-public class MonetColumn {
-    private ByteBuffer constData;
-    private double scale;
-    private Object[] varData;
-    private String name;
-    private int monetdbeType;
-    private String typeName;
-
-    //Constant lenght data types (called from monetdbe_result_fetch_all)
-    public MonetColumn(String name, int monetdbeType, ByteBuffer constData, double scale) {
+
+/**
+ * Fetched column of a result, created through the static factories from monetdbe_result_fetch.
+ * Every monetdbe type has its own final subclass which reads the rows with absolute gets on its buffer,
+ * so the primitive getters neither box nor allocate. Conversions a type doesn't support throw an
+ * UnsupportedOperationException, which MonetResultSet reports as an SQLException.
+ */
+public abstract class MonetColumn {
+    static final long MICROS_PER_DAY = 86400000000L;
+
+    private final String name;
+    private final int monetdbeType;
+    private final String typeName;
+    private final double scale;
+    private final int scaleJDBC;
+    //Bit i is set if row i is not null, a null buffer means there are no null rows
+    final ByteBuffer validity;
+
+    MonetColumn(String name, int monetdbeType, double scale, ByteBuffer validity) {
         this.name = name;
         this.monetdbeType = monetdbeType;
         this.typeName = MonetTypes.getMonetTypeString(monetdbeType);
-        this.constData = constData.order(ByteOrder.LITTLE_ENDIAN);
         this.scale = scale;
+        this.scaleJDBC = scaleDigits(scale);
+        this.validity = validity;
     }
 
-    //Variable lenght data types (called from monetdbe_result_fetch_all)
-    public MonetColumn(String name, int monetdbeType, Object[] varData) {
-        this.name = name;
-        this.monetdbeType = monetdbeType;
-        this.typeName = MonetTypes.getMonetTypeString(monetdbeType);
-        this.varData = varData;
+    //Translates monetdbe's internal scale format into java's MathContext scale format (1000.0 to 3), -1 for columns
+    //without a scale. The scale is a power of ten, for which log10 is exact
+    static int scaleDigits(double scale) {
+        return scale < 1 ? -1 : (int) Math.round(Math.log10(scale));
+    }
+
+    //Column without data, used for the metadata until the column is fetched (called from monetdbe_result_fetch_meta)
+    static MonetColumn unfetched(String name, int monetdbeType, double scale) {
+        return new UnfetchedColumn(name, monetdbeType, scale);
+    }
+
+    //Column without data which isn't described yet, the description is fetched from the native result on first use
+    static MonetColumn undescribed(MonetResultFetcher fetcher, int index) {
+        return new UndescribedColumn(fetcher, index);
+    }
+
+    //Constant length data types with their validity bitmap, which is null if there are no null rows (called from monetdbe_result_fetch)
+    //DATE columns hold epoch days (int), TIME columns microseconds of the day and TIMESTAMP columns epoch microseconds (long)
+    static MonetColumn ofFixed(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        switch (monetdbeType) {
+            case 0:
+                return new BooleanColumn(name, monetdbeType, data, scale, validity);
+            case 1:
+                return new TinyIntColumn(name, monetdbeType, data, scale, validity);
+            case 2:
+                return new SmallIntColumn(name, monetdbeType, data, scale, validity);
+            case 3:
+                return new IntColumn(name, monetdbeType, data, scale, validity);
+            case 4:
+                return new BigIntColumn(name, monetdbeType, data, scale, validity);
+            case 5:
+                return new HugeIntColumn(name, monetdbeType, data, scale, validity);
+            case 7:
+                return new RealColumn(name, monetdbeType, data, scale, validity);
+            case 8:
+                return new DoubleColumn(name, monetdbeType, data, scale, validity);
+            case 11:
+                return new DateColumn(name, monetdbeType, data, scale, validity);
+            case 12:
+                return new TimeColumn(name, monetdbeType, data, scale, validity);
+            case 13:
+                return new TimestampColumn(name, monetdbeType, data, scale, validity);
+            default:
+                throw new IllegalArgumentException("Type " + monetdbeType + " has no fixed width column");
+        }
+    }
+
+    //String data types, the UTF-8 bytes of all rows with the start of row i at offset i and its end at offset i+1 (called from monetdbe_result_fetch)
+    static MonetColumn ofStrings(String name, int monetdbeType, ByteBuffer data, ByteBuffer offsets, ByteBuffer validity) {
+        return new StringColumn(name, monetdbeType, data, offsets.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(), validity);
+    }
+
+    //String columns with few distinct values, the distinct values laid out as in ofStrings and a code per row into them (called from monetdbe_result_fetch)
+    //Codes are unsigned bytes for up to 256 distinct values and unsigned shorts otherwise, null rows have code 0
+    static MonetColumn ofDictionary(String name, int monetdbeType, ByteBuffer data, ByteBuffer offsets, ByteBuffer codes, ByteBuffer validity) {
+        StringColumn dictionary = new StringColumn(name, monetdbeType, data, offsets.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(), null);
+        return new DictionaryStringColumn(name, monetdbeType, dictionary, codes.order(ByteOrder.LITTLE_ENDIAN), validity);
+    }
+
+    //BLOB columns, a buffer over the native memory of each row and null for null rows (called from monetdbe_result_fetch)
+    static MonetColumn ofBlobs(String name, int monetdbeType, ByteBuffer[] data, ByteBuffer validity) {
+        return new BlobColumn(name, monetdbeType, data, validity);
+    }
+
+    //False for the metadata-only columns, which still need to be fetched from the native result
+    boolean isFetched() {
+        return true;
     }
 
     String getName() {
@@ -54,249 +124,1233 @@ public class MonetColumn {
         return typeName;
     }
 
-    //Translates monetdbe's internal scale format into java's MathContext scale format (1000.0 to 3)
     public int getScaleJDBC() {
-        return ((BigDecimal.valueOf(this.scale).precision()) - 2);
+        return scaleJDBC;
+    }
+
+    double getScale() {
+        return scale;
+    }
+
+    //Scale of the stored unscaled values, 0 for columns without a scale (such as BOOLEAN, for which it is -1)
+    int decimalScale() {
+        return Math.max(0, getScaleJDBC());
+    }
+
+    //Buffers of the fetched data, used by the vectors (MonetColumnVector)
+    ByteBuffer getConstData() {
+        return null;
+    }
+
+    ByteBuffer getValidity() {
+        return validity;
+    }
+
+    //Column which doesn't read the native result's memory, so the result can be cleaned up (copy_and_release)
+    //Strings, temporal columns and the validity bitmaps are already allocated by the JVM
+    MonetColumn copyToJava() {
+        return this;
+    }
+
+    //Rows [from, from + count) of a column which holds all rows of its result, as a column of their own over the same
+    //buffers (used for windows of results which are already in Java memory)
+    MonetColumn window(int from, int count) {
+        throw new UnsupportedOperationException("Column " + name + " holds no rows");
+    }
+
+    //Validity bitmap of rows [from, from + count), which is only copied if from is not at a byte boundary
+    ByteBuffer windowValidity(int from, int count) {
+        if (validity == null) {
+            return null;
+        }
+        if ((from & 7) == 0) {
+            return slice(validity, from >>> 3, (count + 7) >>> 3);
+        }
+        ByteBuffer window = ByteBuffer.allocateDirect((count + 7) >>> 3);
+        for (int i = 0; i < count; i++) {
+            if (!isNull(from + i)) {
+                window.put(i >>> 3, (byte) (window.get(i >>> 3) | 1 << (i & 7)));
+            }
+        }
+        return window;
+    }
+
+    //View of length bytes of the buffer starting at position, little-endian as the fetched buffers
+    static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + length).position(position);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
     }
 
-    Object getObject (int row) {
+    //Bytes per row of a fetched column of the type, DATE columns hold int epoch days and TIME and TIMESTAMP columns
+    //long microseconds. For strings and blobs this is only their offset or buffer reference, without the values
+    static int rowBytes(int monetdbeType) {
         switch (monetdbeType) {
             case 0:
-                return constData.get(row)!=0;
             case 1:
-                return constData.get(row);
+                return 1;
             case 2:
-                return constData.asShortBuffer().get(row);
+                return 2;
             case 3:
-                return constData.asIntBuffer().get(row);
-            case 4:
-                return constData.asLongBuffer().get(row);
-            case 5:
-                return getBigInteger(row);
             case 7:
-                return constData.asFloatBuffer().get(row);
-            case 8:
-                return constData.asDoubleBuffer().get(row);
             case 9:
-                return getString(row);
-            case 10:
-                return getBlob(row);
             case 11:
-                return getLocalDate(row);
-            case 12:
-                return getLocalTime(row);
-            case 13:
-                return getLocalDateTime(row);
+                return 4;
+            case 5:
+                return 16;
             default:
-                return null;
+                return 8;
+        }
+    }
+
+    //Bytes held by the column's buffers, used by the result cache to bound its size
+    long getMemorySize() {
+        return validity != null ? validity.capacity() : 0;
+    }
+
+    //Bit test on the validity bitmap, null values in constant length columns are stored as 0
+    final boolean isNull(int row) {
+        return validity != null && (validity.get(row >>> 3) & (1 << (row & 7))) == 0;
+    }
+
+    UnsupportedOperationException notConvertible(String javaType) {
+        return new UnsupportedOperationException("Column " + name + " of type " + typeName + " can't be read as " + javaType);
+    }
+
+    //Boxed value of the column's own type, or null for null rows
+    abstract Object getObject(int row);
+
+    boolean getBoolean(int row) {
+        throw notConvertible("boolean");
+    }
+
+    byte getByte(int row) {
+        throw notConvertible("byte");
+    }
+
+    short getShort(int row) {
+        throw notConvertible("short");
+    }
+
+    int getInt(int row) {
+        throw notConvertible("int");
+    }
+
+    long getLong(int row) {
+        throw notConvertible("long");
+    }
+
+    float getFloat(int row) {
+        throw notConvertible("float");
+    }
+
+    double getDouble(int row) {
+        throw notConvertible("double");
+    }
+
+    BigInteger getBigInteger(int row) {
+        throw notConvertible("BigInteger");
+    }
+
+    //Unscaled value of integer columns, DECIMAL columns are stored unscaled with getScaleJDBC() digits
+    long getUnscaledLong(int row) {
+        throw notConvertible("unscaled long");
+    }
+
+    //High and low 64 bits of the 128 bit two's complement value, for HUGEINT and the narrower integer columns
+    long getHugeIntHigh(int row) {
+        throw notConvertible("HUGEINT");
+    }
+
+    long getHugeIntLow(int row) {
+        throw notConvertible("HUGEINT");
+    }
+
+    BigDecimal getBigDecimal(int row) {
+        throw notConvertible("BigDecimal");
+    }
+
+    String getString(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        return String.valueOf(getObject(row));
+    }
+
+    //Days since 1970-01-01, without creating a LocalDate
+    long getEpochDay(int row) {
+        throw notConvertible("epoch day");
+    }
+
+    //Microseconds since 1970-01-01T00:00 (UTC), or since midnight for TIME columns, without creating a java.time object
+    long getEpochMicros(int row) {
+        throw notConvertible("epoch micros");
+    }
+
+    LocalDate getLocalDate(int row) throws DateTimeParseException {
+        return LocalDate.ofEpochDay(0);
+    }
+
+    LocalTime getLocalTime(int row) throws DateTimeParseException {
+        return LocalTime.ofSecondOfDay(0);
+    }
+
+    LocalDateTime getLocalDateTime(int row) throws DateTimeParseException {
+        return LocalDateTime.ofEpochSecond(0,0,ZoneOffset.UTC);
+    }
+
+    //Byte-level access to string columns, none of these decode the UTF-8 bytes into a String
+    ByteBuffer getStringData() {
+        throw notConvertible("UTF-8");
+    }
+
+    IntBuffer getStringOffsets() {
+        throw notConvertible("UTF-8");
+    }
+
+    int getUTF8Length(int row) {
+        throw notConvertible("UTF-8");
+    }
+
+    ByteBuffer getUTF8(int row) {
+        throw notConvertible("UTF-8");
+    }
+
+    int copyUTF8(int row, byte[] dst, int dstOffset) {
+        throw notConvertible("UTF-8");
+    }
+
+    int compareUTF8(int row, byte[] utf8) {
+        throw notConvertible("UTF-8");
+    }
+
+    int hashUTF8(int row) {
+        throw notConvertible("UTF-8");
+    }
+
+    byte[] getBytes(int row) {
+        throw notConvertible("byte[]");
+    }
+
+    MonetBlob getBlob(int row) {
+        throw notConvertible("Blob");
+    }
+
+    static final class UnfetchedColumn extends MonetColumn {
+        UnfetchedColumn(String name, int monetdbeType, double scale) {
+            super(name, monetdbeType, scale, null);
+        }
+
+        @Override
+        boolean isFetched() {
+            return false;
+        }
+
+        @Override
+        Object getObject(int row) {
+            return null;
         }
     }
 
-    Boolean getBoolean(int row) {
-        if (monetdbeType == 0) {
-            return constData.get(row)!=0;
+    //monetdbe only describes a column by fetching it, so the description of a column which is never read is never fetched
+    static final class UndescribedColumn extends MonetColumn {
+        private final MonetResultFetcher fetcher;
+        private final int index;
+
+        UndescribedColumn(MonetResultFetcher fetcher, int index) {
+            super(null, 14, 0, null);
+            this.fetcher = fetcher;
+            this.index = index;
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).byteValue() != 0;
+
+        private MonetColumn described() {
+            try {
+                return fetcher.describe(index);
+            } catch (java.sql.SQLException e) {
+                throw new UnsupportedOperationException(e.getMessage(), e);
+            }
         }
-        else if (monetdbeType == 9) {
-            return Boolean.parseBoolean(getString(row));
+
+        @Override
+        boolean isFetched() {
+            return false;
+        }
+
+        @Override
+        String getName() {
+            return described().getName();
+        }
+
+        @Override
+        int getMonetdbeType() {
+            return described().getMonetdbeType();
+        }
+
+        @Override
+        int getSQLType() {
+            return described().getSQLType();
+        }
+
+        @Override
+        String getTypeName() {
+            return described().getTypeName();
+        }
+
+        @Override
+        public int getScaleJDBC() {
+            return described().getScaleJDBC();
+        }
+
+        @Override
+        double getScale() {
+            return described().getScale();
+        }
+
+        @Override
+        Object getObject(int row) {
+            return null;
         }
-        return null;
     }
 
-    Byte getByte(int row) {
-        if (monetdbeType == 1) {
-            return constData.get(row);
+    //Constant length columns, row i starts at byte i * width of the little-endian data buffer
+    abstract static class FixedColumn extends MonetColumn {
+        final ByteBuffer data;
+
+        FixedColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, scale, validity);
+            this.data = data;
         }
-        else if (monetdbeType == 0) {
-            return getBoolean(row) ? (byte) 1 : 0;
+
+        @Override
+        ByteBuffer getConstData() {
+            return data;
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).byteValue();
+
+        //The numeric buffers point into the native result
+        @Override
+        MonetColumn copyToJava() {
+            ByteBuffer copy = ByteBuffer.allocateDirect(data.capacity());
+            copy.put((ByteBuffer) data.duplicate().clear());
+            copy.clear();
+            return ofFixed(getName(), getMonetdbeType(), copy, getScale(), validity);
         }
-        else if (monetdbeType == 9) {
-            return Byte.parseByte(getString(row));
+
+        @Override
+        MonetColumn window(int from, int count) {
+            int width = rowBytes(getMonetdbeType());
+            return ofFixed(getName(), getMonetdbeType(), slice(data, from * width, count * width), getScale(), windowValidity(from, count));
+        }
+
+        @Override
+        long getMemorySize() {
+            return super.getMemorySize() + data.capacity();
         }
-        return null;
     }
 
-    Short getShort(int row) {
-        if (monetdbeType == 2) {
-            return constData.asShortBuffer().get(row);
+    //BOOLEAN to BIGINT, all conversions go through the value as a long
+    abstract static class IntegerColumn extends FixedColumn {
+        IntegerColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        abstract long getLong(int row);
+
+        @Override
+        boolean getBoolean(int row) {
+            return getLong(row) != 0;
         }
-        else if (monetdbeType == 1) {
-            return (short) constData.get(row);
+
+        @Override
+        byte getByte(int row) {
+            return (byte) getLong(row);
         }
-        else if (monetdbeType == 0) {
-            return getBoolean(row) ? (short) 1 : 0;
+
+        @Override
+        short getShort(int row) {
+            return (short) getLong(row);
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).shortValue();
+
+        @Override
+        int getInt(int row) {
+            return (int) getLong(row);
         }
-        else if (monetdbeType == 9) {
-            return Short.parseShort(getString(row));
+
+        @Override
+        float getFloat(int row) {
+            return getLong(row);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return getLong(row);
+        }
+
+        @Override
+        BigInteger getBigInteger(int row) {
+            return BigInteger.valueOf(getLong(row));
+        }
+
+        @Override
+        long getUnscaledLong(int row) {
+            return getLong(row);
+        }
+
+        @Override
+        long getHugeIntHigh(int row) {
+            return getLong(row) >> 63;
+        }
+
+        @Override
+        long getHugeIntLow(int row) {
+            return getLong(row);
+        }
+
+        //The stored value is the unscaled value of DECIMAL columns
+        @Override
+        BigDecimal getBigDecimal(int row) {
+            return BigDecimal.valueOf(getLong(row), decimalScale());
         }
-        return null;
     }
 
-    Integer getInt(int row) {
-        if (monetdbeType == 3) {
-            return constData.asIntBuffer().get(row);
+    static final class BooleanColumn extends IntegerColumn {
+        BooleanColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        boolean getBoolean(int row) {
+            return data.get(row) != 0;
         }
-        else if (monetdbeType == 0) {
+
+        @Override
+        long getLong(int row) {
             return getBoolean(row) ? 1 : 0;
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).intValue();
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getBoolean(row);
         }
-        else if (monetdbeType == 9) {
-            return Integer.parseInt(getString(row));
+    }
+
+    static final class TinyIntColumn extends IntegerColumn {
+        TinyIntColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        byte getByte(int row) {
+            return data.get(row);
+        }
+
+        @Override
+        long getLong(int row) {
+            return data.get(row);
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getByte(row);
         }
-        return null;
     }
 
-    Long getLong(int row) {
-        if (monetdbeType == 4) {
-            return constData.asLongBuffer().get(row);
+    static final class SmallIntColumn extends IntegerColumn {
+        SmallIntColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
         }
-        else if (monetdbeType == 0) {
-            return getBoolean(row) ? (long) 1 : 0;
+
+        @Override
+        short getShort(int row) {
+            return data.getShort(row << 1);
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).longValue();
+
+        @Override
+        long getLong(int row) {
+            return data.getShort(row << 1);
         }
-        else if (monetdbeType == 9) {
-            return Long.parseLong(getString(row));
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getShort(row);
         }
-        return null;
     }
 
-    Float getFloat(int row) {
-        if (monetdbeType == 7) {
-            return constData.asFloatBuffer().get(row);
+    static final class IntColumn extends IntegerColumn {
+        IntColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
         }
-        else if (monetdbeType == 0) {
-            return getBoolean(row) ? (float) 1 : 0;
+
+        @Override
+        int getInt(int row) {
+            return data.getInt(row << 2);
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).floatValue();
+
+        @Override
+        long getLong(int row) {
+            return data.getInt(row << 2);
         }
-        else if (monetdbeType == 9) {
-            return Float.parseFloat(getString(row));
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getInt(row);
         }
-        return null;
     }
 
-    Double getDouble(int row) {
-        if (monetdbeType == 8) {
-            return constData.asDoubleBuffer().get(row);
+    static final class BigIntColumn extends IntegerColumn {
+        BigIntColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
         }
-        else if (monetdbeType == 0) {
-            return getBoolean(row) ? (double) 1 : 0;
+
+        @Override
+        long getLong(int row) {
+            return data.getLong(row << 3);
         }
-        else if (monetdbeType > 0 && monetdbeType < 9) {
-            return ((Number) getObject(row)).doubleValue();
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getLong(row);
         }
-        else if (monetdbeType == 9) {
-            return Double.parseDouble(getString(row));
+    }
+
+    //128 bit integers, read as two longs, only values which don't fit in a long need a BigInteger
+    static final class HugeIntColumn extends FixedColumn {
+        HugeIntColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        long getHugeIntLow(int row) {
+            return data.getLong(row << 4);
+        }
+
+        @Override
+        long getHugeIntHigh(int row) {
+            return data.getLong((row << 4) + 8);
+        }
+
+        //True if the high half is only the sign extension of the low half
+        private boolean fitsInLong(int row) {
+            return getHugeIntHigh(row) == getHugeIntLow(row) >> 63;
+        }
+
+        @Override
+        long getUnscaledLong(int row) {
+            if (!fitsInLong(row)) {
+                throw new ArithmeticException("HUGEINT value of column " + getName() + " doesn't fit in a long");
+            }
+            return getHugeIntLow(row);
+        }
+
+        @Override
+        BigInteger getBigInteger(int row) {
+            if (fitsInLong(row)) {
+                return BigInteger.valueOf(getHugeIntLow(row));
+            }
+            //Copy bytes in reverse order (BigInteger constructor takes Big-Endian byte[])
+            byte[] byteData = new byte[16];
+            int start = row << 4;
+            for (int i = 0; i < 16; i++) {
+                byteData[15-i] = data.get(start+i);
+            }
+            return new BigInteger(byteData);
+        }
+
+        @Override
+        BigDecimal getBigDecimal(int row) {
+            if (fitsInLong(row)) {
+                return BigDecimal.valueOf(getHugeIntLow(row), decimalScale());
+            }
+            return new BigDecimal(getBigInteger(row), decimalScale());
+        }
+
+        @Override
+        boolean getBoolean(int row) {
+            return (getHugeIntLow(row) | getHugeIntHigh(row)) != 0;
+        }
+
+        //The narrowing conversions keep the low bits, as BigInteger's do
+        @Override
+        byte getByte(int row) {
+            return (byte) getHugeIntLow(row);
+        }
+
+        @Override
+        short getShort(int row) {
+            return (short) getHugeIntLow(row);
+        }
+
+        @Override
+        int getInt(int row) {
+            return (int) getHugeIntLow(row);
+        }
+
+        @Override
+        long getLong(int row) {
+            return getHugeIntLow(row);
+        }
+
+        @Override
+        float getFloat(int row) {
+            return fitsInLong(row) ? (float) getHugeIntLow(row) : getBigInteger(row).floatValue();
+        }
+
+        @Override
+        double getDouble(int row) {
+            return fitsInLong(row) ? (double) getHugeIntLow(row) : getBigInteger(row).doubleValue();
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getBigInteger(row);
         }
-        return null;
     }
 
-    BigInteger getBigInteger(int row) {
-        int size = MonetTypes.getMonetSize(monetdbeType);
-        byte[] byteData = new byte[size];
+    //REAL and DOUBLE, conversions to integer types truncate
+    abstract static class FloatingColumn extends FixedColumn {
+        FloatingColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        abstract double getDouble(int row);
+
+        @Override
+        boolean getBoolean(int row) {
+            return getDouble(row) != 0;
+        }
+
+        @Override
+        byte getByte(int row) {
+            return (byte) getDouble(row);
+        }
+
+        @Override
+        short getShort(int row) {
+            return (short) getDouble(row);
+        }
+
+        @Override
+        int getInt(int row) {
+            return (int) getDouble(row);
+        }
+
+        @Override
+        long getLong(int row) {
+            return (long) getDouble(row);
+        }
 
-        //Copy bytes in reverse order (BigInteger constructor takes Big-Endian byte[])
-        //Using ByteBuffer's absolute get method
-        for (int i = 0; i < size ; i++) {
-            byteData[size-i-1] = constData.get((row*size)+i);
+        @Override
+        BigDecimal getBigDecimal(int row) {
+            return BigDecimal.valueOf(getDouble(row));
         }
-        return new BigInteger(byteData);
     }
 
-    BigDecimal getBigDecimal(int row) {
-        int scale = getScaleJDBC();
-        switch (monetdbeType) {
-            case 1:
-                Byte unscaledByte = constData.get(row);
-                return new BigDecimal(unscaledByte.intValue()).movePointRight(scale);
-            case 2:
-                Short unscaledShort = getShort(row);
-                return new BigDecimal(unscaledShort.intValue()).movePointRight(scale);
-            case 3:
-                Integer unscaledInt = getInt(row);
-                return new BigDecimal(unscaledInt).movePointLeft(scale);
-            case 4:
-                Long unscaledLong = getLong(row);
-                return new BigDecimal(unscaledLong).movePointLeft(scale);
-            case 5:
-                BigInteger unscaledBigInt = getBigInteger(row);
-                return new BigDecimal(unscaledBigInt).movePointLeft(scale);
-            default:
-                return new BigDecimal(0);
+    static final class RealColumn extends FloatingColumn {
+        RealColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        float getFloat(int row) {
+            return data.getFloat(row << 2);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return data.getFloat(row << 2);
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getFloat(row);
         }
     }
 
-    String getString(int row) {
-        if (monetdbeType == 9) {
-            return (String) varData[row];
+    static final class DoubleColumn extends FloatingColumn {
+        DoubleColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
         }
-        else {
-            return String.valueOf(getObject(row));
+
+        @Override
+        float getFloat(int row) {
+            return (float) data.getDouble(row << 3);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return data.getDouble(row << 3);
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : getDouble(row);
         }
     }
 
-    LocalDate getLocalDate(int row) throws DateTimeParseException {
-        switch (monetdbeType) {
-            case 9:
-                DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                return  LocalDate.parse((String) varData[row],dtf);
-            case 11:
-                return (LocalDate) varData[row];
-            case 13:
-                return ((LocalDateTime) varData[row]).toLocalDate();
-            default:
-                return LocalDate.ofEpochDay(0);
+    static final class DateColumn extends FixedColumn {
+        DateColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        MonetColumn copyToJava() {
+            return this;
+        }
+
+        @Override
+        long getEpochDay(int row) {
+            return data.getInt(row << 2);
+        }
+
+        @Override
+        long getEpochMicros(int row) {
+            return data.getInt(row << 2) * MICROS_PER_DAY;
+        }
+
+        @Override
+        LocalDate getLocalDate(int row) {
+            return isNull(row) ? null : LocalDate.ofEpochDay(getEpochDay(row));
+        }
+
+        @Override
+        LocalDateTime getLocalDateTime(int row) {
+            return isNull(row) ? null : LocalDate.ofEpochDay(getEpochDay(row)).atStartOfDay();
+        }
+
+        @Override
+        Object getObject(int row) {
+            return getLocalDate(row);
         }
     }
 
-    LocalTime getLocalTime(int row) throws DateTimeParseException {
-        switch (monetdbeType) {
-            case 9:
-                DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm:ss[.SSSSSS][.SSSS][.SS]");
-                return  LocalTime.parse((String) varData[row],dtf);
-            case 12:
-                return (LocalTime) varData[row];
-            case 13:
-                return ((LocalDateTime) varData[row]).toLocalTime();
-            default:
-                return LocalTime.ofSecondOfDay(0);
+    static final class TimeColumn extends FixedColumn {
+        TimeColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        MonetColumn copyToJava() {
+            return this;
+        }
+
+        //The date of a TIME is 1970-01-01, as for getDate()
+        @Override
+        long getEpochDay(int row) {
+            return 0;
+        }
+
+        @Override
+        long getEpochMicros(int row) {
+            return data.getLong(row << 3);
+        }
+
+        @Override
+        LocalTime getLocalTime(int row) {
+            return isNull(row) ? null : LocalTime.ofNanoOfDay(getEpochMicros(row) * 1000);
+        }
+
+        @Override
+        LocalDateTime getLocalDateTime(int row) {
+            return isNull(row) ? null : toLocalDateTime(getEpochMicros(row));
+        }
+
+        @Override
+        Object getObject(int row) {
+            return getLocalTime(row);
         }
     }
 
-    LocalDateTime getLocalDateTime(int row) throws DateTimeParseException {
-        switch (monetdbeType) {
-            case 9:
-                DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSSSSS][.SSSS][.SS]");
-                return  LocalDateTime.parse((String) varData[row],dtf);
-            case 11:
-                return LocalDateTime.ofEpochSecond(0,0,ZoneOffset.UTC).with((LocalDate) varData[row]);
-            case 12:
-                return LocalDateTime.ofEpochSecond(0,0,ZoneOffset.UTC).with((LocalTime) varData[row]);
-            case 13:
-                return (LocalDateTime) varData[row];
-            default:
-                return LocalDateTime.ofEpochSecond(0,0,ZoneOffset.UTC);
+    static final class TimestampColumn extends FixedColumn {
+        TimestampColumn(String name, int monetdbeType, ByteBuffer data, double scale, ByteBuffer validity) {
+            super(name, monetdbeType, data, scale, validity);
+        }
+
+        @Override
+        MonetColumn copyToJava() {
+            return this;
+        }
+
+        @Override
+        long getEpochDay(int row) {
+            return Math.floorDiv(data.getLong(row << 3), MICROS_PER_DAY);
+        }
+
+        @Override
+        long getEpochMicros(int row) {
+            return data.getLong(row << 3);
+        }
+
+        @Override
+        LocalDate getLocalDate(int row) {
+            return isNull(row) ? null : LocalDate.ofEpochDay(getEpochDay(row));
+        }
+
+        @Override
+        LocalTime getLocalTime(int row) {
+            return isNull(row) ? null : LocalTime.ofNanoOfDay(Math.floorMod(getEpochMicros(row), MICROS_PER_DAY) * 1000);
+        }
+
+        @Override
+        LocalDateTime getLocalDateTime(int row) {
+            return isNull(row) ? null : toLocalDateTime(getEpochMicros(row));
+        }
+
+        @Override
+        Object getObject(int row) {
+            return getLocalDateTime(row);
         }
     }
 
-    byte[] getBytes(int row) {
-        return (byte[]) varData[row];
+    static LocalDateTime toLocalDateTime(long epochMicros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1000000L), (int) Math.floorMod(epochMicros, 1000000L) * 1000, ZoneOffset.UTC);
     }
 
-    MonetBlob getBlob(int row) {
-        return new MonetBlob((byte[]) varData[row]);
+    //The String is only decoded from the UTF-8 buffer when it is requested, conversions parse it
+    static final class StringColumn extends MonetColumn {
+        private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss[.SSSSSS][.SSSS][.SS]");
+        private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSSSSS][.SSSS][.SS]");
+
+        private final ByteBuffer data;
+        private final IntBuffer offsets;
+
+        StringColumn(String name, int monetdbeType, ByteBuffer data, IntBuffer offsets, ByteBuffer validity) {
+            super(name, monetdbeType, 0, validity);
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        @Override
+        long getMemorySize() {
+            return super.getMemorySize() + data.capacity() + 4L * offsets.capacity();
+        }
+
+        //The offsets of the window still point into the same UTF-8 bytes
+        @Override
+        MonetColumn window(int from, int count) {
+            IntBuffer windowOffsets = offsets.duplicate();
+            windowOffsets.limit(from + count + 1).position(from);
+            return new StringColumn(getName(), getMonetdbeType(), data, windowOffsets.slice(), windowValidity(from, count));
+        }
+
+        @Override
+        Object getObject(int row) {
+            return getString(row);
+        }
+
+        @Override
+        String getString(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            byte[] bytes = new byte[getUTF8Length(row)];
+            copyUTF8(row, bytes, 0);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        boolean getBoolean(int row) {
+            return Boolean.parseBoolean(getString(row));
+        }
+
+        @Override
+        byte getByte(int row) {
+            return Byte.parseByte(getString(row));
+        }
+
+        @Override
+        short getShort(int row) {
+            return Short.parseShort(getString(row));
+        }
+
+        @Override
+        int getInt(int row) {
+            return Integer.parseInt(getString(row));
+        }
+
+        @Override
+        long getLong(int row) {
+            return Long.parseLong(getString(row));
+        }
+
+        @Override
+        float getFloat(int row) {
+            return Float.parseFloat(getString(row));
+        }
+
+        @Override
+        double getDouble(int row) {
+            return Double.parseDouble(getString(row));
+        }
+
+        @Override
+        BigInteger getBigInteger(int row) {
+            return new BigInteger(getString(row));
+        }
+
+        @Override
+        BigDecimal getBigDecimal(int row) {
+            return new BigDecimal(getString(row));
+        }
+
+        @Override
+        long getEpochDay(int row) {
+            return getLocalDate(row).toEpochDay();
+        }
+
+        @Override
+        long getEpochMicros(int row) {
+            LocalDateTime dateTime = getLocalDateTime(row);
+            return Math.addExact(Math.multiplyExact(dateTime.toEpochSecond(ZoneOffset.UTC), 1000000L), dateTime.getNano() / 1000);
+        }
+
+        @Override
+        LocalDate getLocalDate(int row) throws DateTimeParseException {
+            return isNull(row) ? null : LocalDate.parse(getString(row), DATE_FORMAT);
+        }
+
+        @Override
+        LocalTime getLocalTime(int row) throws DateTimeParseException {
+            return isNull(row) ? null : LocalTime.parse(getString(row), TIME_FORMAT);
+        }
+
+        @Override
+        LocalDateTime getLocalDateTime(int row) throws DateTimeParseException {
+            return isNull(row) ? null : LocalDateTime.parse(getString(row), TIMESTAMP_FORMAT);
+        }
+
+        @Override
+        ByteBuffer getStringData() {
+            return data;
+        }
+
+        @Override
+        IntBuffer getStringOffsets() {
+            return offsets;
+        }
+
+        @Override
+        int getUTF8Length(int row) {
+            return offsets.get(row + 1) - offsets.get(row);
+        }
+
+        //Read-only view of the UTF-8 bytes of the row, without copying them
+        @Override
+        ByteBuffer getUTF8(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            ByteBuffer view = data.asReadOnlyBuffer();
+            view.limit(offsets.get(row + 1)).position(offsets.get(row));
+            return view.slice();
+        }
+
+        //Copies the UTF-8 bytes of the row into dst, returning the number of bytes copied
+        @Override
+        int copyUTF8(int row, byte[] dst, int dstOffset) {
+            int start = offsets.get(row);
+            int length = offsets.get(row + 1) - start;
+            ByteBuffer src = data.duplicate();
+            src.position(start);
+            src.get(dst, dstOffset, length);
+            return length;
+        }
+
+        //Compares the UTF-8 bytes of the row with utf8 as unsigned bytes, which is the same as comparing the code points
+        @Override
+        int compareUTF8(int row, byte[] utf8) {
+            int start = offsets.get(row);
+            int length = offsets.get(row + 1) - start;
+            int common = Math.min(length, utf8.length);
+            for (int i = 0; i < common; i++) {
+                int cmp = (data.get(start + i) & 0xFF) - (utf8[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return length - utf8.length;
+        }
+
+        //Same value as java.util.Arrays.hashCode over the UTF-8 bytes of the row
+        @Override
+        int hashUTF8(int row) {
+            int start = offsets.get(row);
+            int end = offsets.get(row + 1);
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + data.get(i);
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * Dictionary encoded strings, every distinct value is decoded at most once and getString returns the same
+     * String instance for all rows holding it. Rows can be grouped or compared on their codes without looking
+     * at the strings: equal codes mean equal values.
+     */
+    static final class DictionaryStringColumn extends MonetColumn {
+        private final StringColumn dictionary;
+        private final ByteBuffer codes;
+        private final boolean shortCodes;
+        //Decoded values by code, filled as they are requested (racing threads decode the same value)
+        private final String[] values;
+        //Flat copy of the rows, only built for the byte-level consumers of a whole column
+        private StringColumn flat;
+
+        DictionaryStringColumn(String name, int monetdbeType, StringColumn dictionary, ByteBuffer codes, ByteBuffer validity) {
+            super(name, monetdbeType, 0, validity);
+            this.dictionary = dictionary;
+            this.codes = codes;
+            this.values = new String[dictionary.getStringOffsets().capacity() - 1];
+            this.shortCodes = values.length > 256;
+        }
+
+        @Override
+        long getMemorySize() {
+            return super.getMemorySize() + dictionary.getMemorySize() + codes.capacity();
+        }
+
+        @Override
+        MonetColumn window(int from, int count) {
+            int width = shortCodes ? 2 : 1;
+            return new DictionaryStringColumn(getName(), getMonetdbeType(), dictionary, slice(codes, from * width, count * width), windowValidity(from, count));
+        }
+
+        int getDictionarySize() {
+            return values.length;
+        }
+
+        //Code of the row's value, null rows have code 0
+        int getCode(int row) {
+            return shortCodes ? codes.getShort(row << 1) & 0xFFFF : codes.get(row) & 0xFF;
+        }
+
+        String getDictionaryValue(int code) {
+            String value = values[code];
+            if (value == null) {
+                value = dictionary.getString(code);
+                values[code] = value;
+            }
+            return value;
+        }
+
+        ByteBuffer getDictionaryUTF8(int code) {
+            return dictionary.getUTF8(code);
+        }
+
+        @Override
+        Object getObject(int row) {
+            return getString(row);
+        }
+
+        @Override
+        String getString(int row) {
+            return isNull(row) ? null : getDictionaryValue(getCode(row));
+        }
+
+        @Override
+        boolean getBoolean(int row) {
+            return Boolean.parseBoolean(getString(row));
+        }
+
+        @Override
+        byte getByte(int row) {
+            return Byte.parseByte(getString(row));
+        }
+
+        @Override
+        short getShort(int row) {
+            return Short.parseShort(getString(row));
+        }
+
+        @Override
+        int getInt(int row) {
+            return Integer.parseInt(getString(row));
+        }
+
+        @Override
+        long getLong(int row) {
+            return Long.parseLong(getString(row));
+        }
+
+        @Override
+        float getFloat(int row) {
+            return Float.parseFloat(getString(row));
+        }
+
+        @Override
+        double getDouble(int row) {
+            return Double.parseDouble(getString(row));
+        }
+
+        @Override
+        BigInteger getBigInteger(int row) {
+            return new BigInteger(getString(row));
+        }
+
+        @Override
+        BigDecimal getBigDecimal(int row) {
+            return new BigDecimal(getString(row));
+        }
+
+        @Override
+        long getEpochDay(int row) {
+            return isNull(row) ? 0 : dictionary.getEpochDay(getCode(row));
+        }
+
+        @Override
+        long getEpochMicros(int row) {
+            return isNull(row) ? 0 : dictionary.getEpochMicros(getCode(row));
+        }
+
+        @Override
+        LocalDate getLocalDate(int row) throws DateTimeParseException {
+            return isNull(row) ? null : dictionary.getLocalDate(getCode(row));
+        }
+
+        @Override
+        LocalTime getLocalTime(int row) throws DateTimeParseException {
+            return isNull(row) ? null : dictionary.getLocalTime(getCode(row));
+        }
+
+        @Override
+        LocalDateTime getLocalDateTime(int row) throws DateTimeParseException {
+            return isNull(row) ? null : dictionary.getLocalDateTime(getCode(row));
+        }
+
+        @Override
+        ByteBuffer getStringData() {
+            return expand().getStringData();
+        }
+
+        @Override
+        IntBuffer getStringOffsets() {
+            return expand().getStringOffsets();
+        }
+
+        //Null rows are empty, as in a flat string column
+        @Override
+        int getUTF8Length(int row) {
+            return isNull(row) ? 0 : dictionary.getUTF8Length(getCode(row));
+        }
+
+        @Override
+        ByteBuffer getUTF8(int row) {
+            return isNull(row) ? null : dictionary.getUTF8(getCode(row));
+        }
+
+        @Override
+        int copyUTF8(int row, byte[] dst, int dstOffset) {
+            return isNull(row) ? 0 : dictionary.copyUTF8(getCode(row), dst, dstOffset);
+        }
+
+        @Override
+        int compareUTF8(int row, byte[] utf8) {
+            return isNull(row) ? -utf8.length : dictionary.compareUTF8(getCode(row), utf8);
+        }
+
+        @Override
+        int hashUTF8(int row) {
+            return isNull(row) ? 1 : dictionary.hashUTF8(getCode(row));
+        }
+
+        private synchronized StringColumn expand() {
+            if (flat == null) {
+                int rows = codes.capacity() / (shortCodes ? 2 : 1);
+                IntBuffer offsets = ByteBuffer.allocateDirect(4 * (rows + 1)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                long size = 0;
+                offsets.put(0, 0);
+                for (int row = 0; row < rows; row++) {
+                    size += getUTF8Length(row);
+                    if (size > Integer.MAX_VALUE) {
+                        throw new UnsupportedOperationException("The strings of column " + getName() + " are larger than 2 GB");
+                    }
+                    offsets.put(row + 1, (int) size);
+                }
+                ByteBuffer data = ByteBuffer.allocateDirect((int) size);
+                ByteBuffer entries = dictionary.getStringData();
+                IntBuffer entryOffsets = dictionary.getStringOffsets();
+                for (int row = 0; row < rows; row++) {
+                    if (!isNull(row)) {
+                        int code = getCode(row);
+                        ByteBuffer entry = entries.duplicate();
+                        entry.limit(entryOffsets.get(code + 1)).position(entryOffsets.get(code));
+                        data.put(entry);
+                    }
+                }
+                data.clear();
+                flat = new StringColumn(getName(), getMonetdbeType(), data, offsets, validity);
+            }
+            return flat;
+        }
+    }
+
+    //BLOB columns, the buffers point into the native result, so the blobs are only copied by getBytes
+    static final class BlobColumn extends MonetColumn {
+        private final ByteBuffer[] data;
+        //Set by the fetcher, the blobs check it so they aren't read after the native result is cleaned up
+        MonetResultFetcher source;
+
+        BlobColumn(String name, int monetdbeType, ByteBuffer[] data, ByteBuffer validity) {
+            super(name, monetdbeType, 0, validity);
+            this.data = data;
+        }
+
+        @Override
+        Object getObject(int row) {
+            return getBlob(row);
+        }
+
+        @Override
+        byte[] getBytes(int row) {
+            if (isNull(row)) {
+                return null;
+            }
+            byte[] bytes = new byte[data[row].capacity()];
+            data[row].duplicate().get(bytes);
+            return bytes;
+        }
+
+        @Override
+        MonetBlob getBlob(int row) {
+            return isNull(row) ? null : new MonetBlob(data[row], source);
+        }
+
+        //Buffer of each row, null for null rows
+        ByteBuffer[] getBuffers() {
+            return data;
+        }
+
+        //Read-only heap copies, which the blobs copy again before they are written
+        @Override
+        MonetColumn copyToJava() {
+            ByteBuffer[] copies = new ByteBuffer[data.length];
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != null) {
+                    copies[i] = ByteBuffer.wrap(getBytes(i)).asReadOnlyBuffer();
+                }
+            }
+            return new BlobColumn(getName(), getMonetdbeType(), copies, validity);
+        }
+
+        @Override
+        MonetColumn window(int from, int count) {
+            BlobColumn window = new BlobColumn(getName(), getMonetdbeType(), Arrays.copyOfRange(data, from, from + count), windowValidity(from, count));
+            window.source = source;
+            return window;
+        }
+
+        @Override
+        long getMemorySize() {
+            long size = super.getMemorySize() + 8L * data.length;
+            for (ByteBuffer blob : data) {
+                if (blob != null) {
+                    size += blob.capacity();
+                }
+            }
+            return size;
+        }
     }
 }
@@ -0,0 +1,478 @@
+package org.monetdb.monetdbe;
+
+import java.nio.*;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Vector views over the buffers of a fetched MonetColumn, see {@link MonetColumnarResult}.
+ * The typed buffer views are created once, so reading a row doesn't allocate.
+ * Columns without a typed vector (BLOB) only get this base class.
+ */
+class MonetColumnVector implements MonetVector {
+    final MonetColumn column;
+    final int size;
+
+    MonetColumnVector(MonetColumn column, int size) {
+        this.column = column;
+        this.size = size;
+    }
+
+    //Vector of the column's own type
+    static MonetVector of(MonetColumn column, int size) {
+        switch (column.getMonetdbeType()) {
+            case 0:
+            case 1:
+            case 2:
+            case 3:
+                return new IntVector(column, size);
+            case 4:
+                return new LongVector(column, size);
+            case 5:
+                return new HugeIntVector(column, size);
+            case 7:
+            case 8:
+                return new DoubleVector(column, size);
+            case 9:
+                return column instanceof MonetColumn.DictionaryStringColumn ? new DictionaryVector((MonetColumn.DictionaryStringColumn) column, size) : new StringVector(column, size);
+            case 11:
+            case 12:
+            case 13:
+                return new TemporalVector(column, size);
+            default:
+                return new MonetColumnVector(column, size);
+        }
+    }
+
+    static MonetIntVector intVector(MonetColumn column, int size) throws SQLException {
+        int type = column.getMonetdbeType();
+        if (type >= 0 && type <= 3) {
+            return new IntVector(column, size);
+        }
+        throw notConvertible(column, "int");
+    }
+
+    static MonetLongVector longVector(MonetColumn column, int size) throws SQLException {
+        int type = column.getMonetdbeType();
+        if (type >= 0 && type <= 4) {
+            return new LongVector(column, size);
+        }
+        else if (type >= 11 && type <= 13) {
+            return new TemporalVector(column, size);
+        }
+        throw notConvertible(column, "long");
+    }
+
+    static MonetHugeIntVector hugeIntVector(MonetColumn column, int size) throws SQLException {
+        int type = column.getMonetdbeType();
+        if (type >= 0 && type <= 5) {
+            return new HugeIntVector(column, size);
+        }
+        throw notConvertible(column, "HUGEINT");
+    }
+
+    static MonetDoubleVector doubleVector(MonetColumn column, int size) throws SQLException {
+        int type = column.getMonetdbeType();
+        if ((type >= 0 && type <= 4) || type == 7 || type == 8) {
+            return new DoubleVector(column, size);
+        }
+        throw notConvertible(column, "double");
+    }
+
+    static MonetStringVector stringVector(MonetColumn column, int size) throws SQLException {
+        if (column instanceof MonetColumn.DictionaryStringColumn) {
+            return new DictionaryVector((MonetColumn.DictionaryStringColumn) column, size);
+        }
+        if (column.getMonetdbeType() == 9) {
+            return new StringVector(column, size);
+        }
+        throw notConvertible(column, "string");
+    }
+
+    static MonetTemporalVector temporalVector(MonetColumn column, int size) throws SQLException {
+        int type = column.getMonetdbeType();
+        if (type >= 11 && type <= 13) {
+            return new TemporalVector(column, size);
+        }
+        throw notConvertible(column, "temporal");
+    }
+
+    private static SQLException notConvertible(MonetColumn column, String vectorType) {
+        return new SQLException("Column " + column.getName() + " of type " + column.getTypeName() + " can't be read as a " + vectorType + " vector", "M1M05");
+    }
+
+    @Override
+    public String getName() {
+        return column.getName();
+    }
+
+    @Override
+    public int getMonetdbeType() {
+        return column.getMonetdbeType();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getScale() {
+        return column.getScaleJDBC();
+    }
+
+    @Override
+    public boolean isNull(int row) {
+        return column.isNull(row);
+    }
+
+    @Override
+    public Object getObject(int row) {
+        return column.getObject(row);
+    }
+
+    @Override
+    public ByteBuffer getValidity() {
+        ByteBuffer validity = column.getValidity();
+        return validity != null ? validity.asReadOnlyBuffer() : null;
+    }
+
+    @Override
+    public ByteBuffer getFixedData() {
+        ByteBuffer data = column.getConstData();
+        return data != null ? data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN) : null;
+    }
+
+    void checkRange(int fromRow, int length) {
+        if (fromRow < 0 || length < 0 || fromRow + length > size) {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + (fromRow + length) + " are out of bounds, the vector has " + size + " rows");
+        }
+    }
+
+    //BOOLEAN, TINYINT, SMALLINT, INTEGER and DATE (epoch days) columns, only INTEGER and DATE can be bulk copied
+    static class IntVector extends MonetColumnVector implements MonetIntVector {
+        private final ByteBuffer bytes;
+        private final ShortBuffer shorts;
+        private final IntBuffer ints;
+
+        IntVector(MonetColumn column, int size) {
+            super(column, size);
+            ByteBuffer data = column.getConstData();
+            int type = column.getMonetdbeType();
+            this.bytes = data;
+            this.shorts = type == 2 ? data.asShortBuffer() : null;
+            this.ints = type == 3 || type == 11 ? data.asIntBuffer() : null;
+        }
+
+        @Override
+        public int getInt(int row) {
+            if (ints != null) {
+                return ints.get(row);
+            }
+            else if (shorts != null) {
+                return shorts.get(row);
+            }
+            return bytes.get(row);
+        }
+
+        @Override
+        public void copyTo(int fromRow, int[] dst, int dstOffset, int length) {
+            checkRange(fromRow, length);
+            if (ints != null) {
+                IntBuffer src = ints.duplicate();
+                src.position(fromRow);
+                src.get(dst, dstOffset, length);
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] = getInt(fromRow + i);
+                }
+            }
+        }
+
+        @Override
+        public void copyTo(int fromRow, IntBuffer dst, int length) {
+            checkRange(fromRow, length);
+            if (ints != null) {
+                IntBuffer src = ints.duplicate();
+                src.limit(fromRow + length);
+                src.position(fromRow);
+                dst.put(src);
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    dst.put(getInt(fromRow + i));
+                }
+            }
+        }
+
+        @Override
+        public int[] toIntArray() {
+            int[] values = new int[size];
+            copyTo(0, values, 0, size);
+            return values;
+        }
+    }
+
+    //Integer columns up to BIGINT and temporal columns, only BIGINT, TIME and TIMESTAMP can be bulk copied
+    static class LongVector extends MonetColumnVector implements MonetLongVector {
+        private final LongBuffer longs;
+        private final IntVector narrow;
+
+        LongVector(MonetColumn column, int size) {
+            super(column, size);
+            int type = column.getMonetdbeType();
+            boolean wide = type == 4 || type == 12 || type == 13;
+            this.longs = wide ? column.getConstData().asLongBuffer() : null;
+            this.narrow = wide ? null : new IntVector(column, size);
+        }
+
+        @Override
+        public long getLong(int row) {
+            if (longs != null) {
+                return longs.get(row);
+            }
+            return narrow.getInt(row);
+        }
+
+        @Override
+        public void copyTo(int fromRow, long[] dst, int dstOffset, int length) {
+            checkRange(fromRow, length);
+            if (longs != null) {
+                LongBuffer src = longs.duplicate();
+                src.position(fromRow);
+                src.get(dst, dstOffset, length);
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] = narrow.getInt(fromRow + i);
+                }
+            }
+        }
+
+        @Override
+        public void copyTo(int fromRow, LongBuffer dst, int length) {
+            checkRange(fromRow, length);
+            if (longs != null) {
+                LongBuffer src = longs.duplicate();
+                src.limit(fromRow + length);
+                src.position(fromRow);
+                dst.put(src);
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    dst.put(narrow.getInt(fromRow + i));
+                }
+            }
+        }
+
+        @Override
+        public long[] toLongArray() {
+            long[] values = new long[size];
+            copyTo(0, values, 0, size);
+            return values;
+        }
+    }
+
+    //Integer columns up to HUGEINT, read through the column's hi/lo accessors so no BigInteger is created
+    static class HugeIntVector extends MonetColumnVector implements MonetHugeIntVector {
+        HugeIntVector(MonetColumn column, int size) {
+            super(column, size);
+        }
+
+        @Override
+        public long getHigh(int row) {
+            return column.isNull(row) ? 0 : column.getHugeIntHigh(row);
+        }
+
+        @Override
+        public long getLow(int row) {
+            return column.isNull(row) ? 0 : column.getHugeIntLow(row);
+        }
+
+        @Override
+        public boolean fitsInLong(int row) {
+            return getHigh(row) == getLow(row) >> 63;
+        }
+    }
+
+    //REAL, DOUBLE and integer columns up to BIGINT, only DOUBLE can be bulk copied
+    static class DoubleVector extends MonetColumnVector implements MonetDoubleVector {
+        private final DoubleBuffer doubles;
+        private final FloatBuffer floats;
+        private final LongVector integers;
+
+        DoubleVector(MonetColumn column, int size) {
+            super(column, size);
+            int type = column.getMonetdbeType();
+            this.doubles = type == 8 ? column.getConstData().asDoubleBuffer() : null;
+            this.floats = type == 7 ? column.getConstData().asFloatBuffer() : null;
+            this.integers = type != 7 && type != 8 ? new LongVector(column, size) : null;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            if (doubles != null) {
+                return doubles.get(row);
+            }
+            else if (floats != null) {
+                return floats.get(row);
+            }
+            return integers.getLong(row);
+        }
+
+        @Override
+        public void copyTo(int fromRow, double[] dst, int dstOffset, int length) {
+            checkRange(fromRow, length);
+            if (doubles != null) {
+                DoubleBuffer src = doubles.duplicate();
+                src.position(fromRow);
+                src.get(dst, dstOffset, length);
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    dst[dstOffset + i] = getDouble(fromRow + i);
+                }
+            }
+        }
+
+        @Override
+        public void copyTo(int fromRow, DoubleBuffer dst, int length) {
+            checkRange(fromRow, length);
+            if (doubles != null) {
+                DoubleBuffer src = doubles.duplicate();
+                src.limit(fromRow + length);
+                src.position(fromRow);
+                dst.put(src);
+            }
+            else {
+                for (int i = 0; i < length; i++) {
+                    dst.put(getDouble(fromRow + i));
+                }
+            }
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            double[] values = new double[size];
+            copyTo(0, values, 0, size);
+            return values;
+        }
+    }
+
+    static class StringVector extends MonetColumnVector implements MonetStringVector {
+        StringVector(MonetColumn column, int size) {
+            super(column, size);
+        }
+
+        @Override
+        public ByteBuffer getUTF8Data() {
+            return column.getStringData().asReadOnlyBuffer();
+        }
+
+        @Override
+        public IntBuffer getUTF8Offsets() {
+            return column.getStringOffsets().asReadOnlyBuffer();
+        }
+
+        @Override
+        public String getString(int row) {
+            return column.getString(row);
+        }
+
+        @Override
+        public ByteBuffer getUTF8(int row) {
+            return column.getUTF8(row);
+        }
+
+        @Override
+        public int getUTF8Length(int row) {
+            return column.getUTF8Length(row);
+        }
+
+        @Override
+        public int copyUTF8(int row, byte[] dst, int dstOffset) {
+            return column.copyUTF8(row, dst, dstOffset);
+        }
+
+        @Override
+        public int compareUTF8(int row, byte[] utf8) {
+            return column.compareUTF8(row, utf8);
+        }
+
+        @Override
+        public int hashUTF8(int row) {
+            return column.hashUTF8(row);
+        }
+    }
+
+    static class DictionaryVector extends StringVector implements MonetDictionaryVector {
+        private final MonetColumn.DictionaryStringColumn dictionary;
+
+        DictionaryVector(MonetColumn.DictionaryStringColumn column, int size) {
+            super(column, size);
+            this.dictionary = column;
+        }
+
+        @Override
+        public int getDictionarySize() {
+            return dictionary.getDictionarySize();
+        }
+
+        @Override
+        public int getCode(int row) {
+            return dictionary.getCode(row);
+        }
+
+        @Override
+        public void copyCodesTo(int fromRow, int[] dst, int dstOffset, int length) {
+            checkRange(fromRow, length);
+            for (int i = 0; i < length; i++) {
+                dst[dstOffset + i] = dictionary.getCode(fromRow + i);
+            }
+        }
+
+        @Override
+        public String getDictionaryValue(int code) {
+            return dictionary.getDictionaryValue(code);
+        }
+
+        @Override
+        public ByteBuffer getDictionaryUTF8(int code) {
+            return dictionary.getDictionaryUTF8(code);
+        }
+    }
+
+    static class TemporalVector extends LongVector implements MonetTemporalVector {
+        TemporalVector(MonetColumn column, int size) {
+            super(column, size);
+        }
+
+        @Override
+        public long getEpochDay(int row) {
+            return column.getEpochDay(row);
+        }
+
+        @Override
+        public long getEpochMicros(int row) {
+            return column.getEpochMicros(row);
+        }
+
+        @Override
+        public LocalDate getLocalDate(int row) {
+            return column.getLocalDate(row);
+        }
+
+        @Override
+        public LocalTime getLocalTime(int row) {
+            return column.getLocalTime(row);
+        }
+
+        @Override
+        public LocalDateTime getLocalDateTime(int row) {
+            return column.getLocalDateTime(row);
+        }
+    }
+}
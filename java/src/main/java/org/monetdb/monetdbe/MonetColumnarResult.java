@@ -0,0 +1,70 @@
+package org.monetdb.monetdbe;
+
+import java.sql.SQLException;
+
+/**
+ * Column-at-a-time access to a result set, obtained through
+ * <code>resultSet.unwrap(MonetColumnarResult.class)</code>.
+ *
+ * Each vector holds all rows of the result set (row 0 is the first row),
+ * independent of the cursor position, except for the vectors of a window
+ * of rows fetched with {@link #getVectors(int, int)}. The typed getters widen narrower
+ * column types (e.g. a SMALLINT column can be read as an int vector) and
+ * throw an SQLException if the column can't be read as the requested type.
+ * Decimal columns are exposed as their unscaled integer values.
+ */
+public interface MonetColumnarResult {
+    /** @return the number of columns */
+    int getColumnCount();
+
+    /** @return the number of rows in every vector */
+    int getRowCount();
+
+    /**
+     * Fetches all columns at once, large results are converted in parallel
+     * (see the conversion_threads connection property).
+     *
+     * @return the vectors for the columns' own types, the first column at index 0
+     */
+    MonetVector[] getVectors() throws SQLException;
+
+    /**
+     * Fetches rows [fromRow, fromRow + rowCount) of all columns, the other rows are not converted,
+     * so a large result can be read a window at a time.
+     *
+     * @param fromRow the first row is 0
+     * @return vectors of rowCount rows, row 0 of them is row fromRow of the result set
+     */
+    MonetVector[] getVectors(int fromRow, int rowCount) throws SQLException;
+
+    /**
+     * @param columnIndex the first column is 1
+     * @return the vector for the column's own type
+     */
+    MonetVector getVector(int columnIndex) throws SQLException;
+
+    /** BOOLEAN, TINYINT, SMALLINT and INTEGER columns */
+    MonetIntVector getIntVector(int columnIndex) throws SQLException;
+
+    /** Integer columns up to BIGINT and temporal columns (as epoch days or microseconds) */
+    MonetLongVector getLongVector(int columnIndex) throws SQLException;
+
+    /** Integer columns up to HUGEINT, as the high and low 64 bits of the values */
+    MonetHugeIntVector getHugeIntVector(int columnIndex) throws SQLException;
+
+    /** REAL, DOUBLE and integer columns up to BIGINT */
+    MonetDoubleVector getDoubleVector(int columnIndex) throws SQLException;
+
+    /** Character columns, a {@link MonetDictionaryVector} for columns with few distinct values */
+    MonetStringVector getStringVector(int columnIndex) throws SQLException;
+
+    /** DATE, TIME and TIMESTAMP columns */
+    MonetTemporalVector getTemporalVector(int columnIndex) throws SQLException;
+
+    /**
+     * Fetches all columns at once, like {@link #getVectors()}, and exposes them row by row.
+     *
+     * @return the rows of the result set, which can be streamed and split for parallel streams
+     */
+    MonetRows getRows() throws SQLException;
+}
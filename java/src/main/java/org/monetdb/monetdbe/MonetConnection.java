@@ -1,9 +1,19 @@
 package org.monetdb.monetdbe;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 public class MonetConnection extends MonetWrapper implements Connection {
     protected ByteBuffer dbNative;
@@ -14,6 +24,30 @@ public class MonetConnection extends MonetWrapper implements Connection {
     private int nr_threads;
     private boolean autoCommit;
 
+    //Columns of large results are converted in parallel on this pool (created on first use, conversion_threads=1 disables it)
+    private int conversion_threads;
+    private int parallel_conversion_rows;
+    private int parallel_conversion_columns;
+    private ForkJoinPool conversionPool;
+    //monetdbe handles are not thread safe, every native call on the database or its results holds this lock.
+    //It is reentrant because result sets are created and fetched from within the query callbacks
+    private final ReentrantLock nativeLock = new ReentrantLock();
+    //Default for the statements of this connection (keep_native, copy_and_release or spill_to_disk)
+    private MonetResultMaterialization result_materialization;
+    //Directory of the temporary files of spilled results
+    private Path spill_directory;
+
+    //Result cache (result_cache_size bytes, 0 disables it), shared by the connections to the same database
+    private MonetResultCache resultCache;
+    //Identifies the database of the shared result cache, null for in-memory databases
+    private String databaseId;
+    //Schema set with SET SCHEMA, part of the result cache key
+    private String cacheSchema;
+    //Set by START TRANSACTION, results are neither cached nor read from the cache within transactions
+    private boolean inTransaction;
+    //Set if data was changed in the current transaction, the cache is invalidated again when it ends
+    private boolean uncommittedChanges;
+
     private String jdbcURL;
 
     private MonetDatabaseMetaData metaData;
@@ -27,6 +61,11 @@ public class MonetConnection extends MonetWrapper implements Connection {
         this.querytimeout = Integer.parseInt(props.getProperty("querytimeout", "0"));
         this.memorylimit = Integer.parseInt(props.getProperty("memorylimit", "0"));
         this.nr_threads = Integer.parseInt(props.getProperty("nr_threads", "0"));
+        this.conversion_threads = Integer.parseInt(props.getProperty("conversion_threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.parallel_conversion_rows = Integer.parseInt(props.getProperty("parallel_conversion_rows", "65536"));
+        this.parallel_conversion_columns = Integer.parseInt(props.getProperty("parallel_conversion_columns", "2"));
+        this.result_materialization = MonetResultMaterialization.fromProperty(props.getProperty("result_materialization", "keep_native"));
+        this.spill_directory = Paths.get(props.getProperty("spill_directory", System.getProperty("java.io.tmpdir")));
         this.jdbcURL = props.getProperty("jdbc-url");
 
         String error_msg;
@@ -42,12 +81,14 @@ public class MonetConnection extends MonetWrapper implements Connection {
 
             //Remote connections pass a null argument for URL
             error_msg = MonetNative.monetdbe_open(null, this, sessiontimeout, querytimeout, memorylimit, nr_threads, host, port, database, user, password);
+            this.databaseId = host + ":" + port + "/" + database;
         }
         //Local directory and in-memory databases
         else {
             //Directory for local, null for in-memory
             String path = props.getProperty("path", null);
             error_msg = MonetNative.monetdbe_open(path, this, sessiontimeout, querytimeout, memorylimit, nr_threads);
+            this.databaseId = path != null ? Paths.get(path).toAbsolutePath().normalize().toString() : null;
         }
 
         //Error when opening db
@@ -57,6 +98,10 @@ public class MonetConnection extends MonetWrapper implements Connection {
 
         this.metaData = new MonetDatabaseMetaData(this);
         this.properties = props;
+        long resultCacheSize = Long.parseLong(props.getProperty("result_cache_size", "0"));
+        if (resultCacheSize > 0) {
+            this.resultCache = MonetResultCache.acquire(databaseId, resultCacheSize);
+        }
         this.statements = new ArrayList<>();
 
         //Auto-commit defaults to true. If the passed property is different, change it
@@ -69,6 +114,212 @@ public class MonetConnection extends MonetWrapper implements Connection {
         return dbNative;
     }
 
+    synchronized ForkJoinPool getConversionPool() {
+        if (conversion_threads <= 1 || dbNative == null) {
+            return null;
+        }
+        if (conversionPool == null) {
+            conversionPool = new ForkJoinPool(conversion_threads, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("monetdbe-conversion-" + t.getPoolIndex());
+                return t;
+            }, null, false);
+        }
+        return conversionPool;
+    }
+
+    ReentrantLock getNativeLock() {
+        return nativeLock;
+    }
+
+    //Runs a native call on the database, one at a time per connection
+    <T> T callNative(Supplier<T> call) {
+        nativeLock.lock();
+        try {
+            return call.get();
+        } finally {
+            nativeLock.unlock();
+        }
+    }
+
+    int getParallelConversionRows() {
+        return parallel_conversion_rows;
+    }
+
+    int getParallelConversionColumns() {
+        return parallel_conversion_columns;
+    }
+
+    public MonetResultMaterialization getResultMaterialization() {
+        return result_materialization;
+    }
+
+    //Only applies to statements which didn't set their own materialization
+    public void setResultMaterialization(MonetResultMaterialization materialization) throws SQLException {
+        if (materialization == null)
+            throw new SQLException("Result materialization can't be null", "M1M05");
+        this.result_materialization = materialization;
+    }
+
+    /** @return the result cache used by this connection, or null if result_cache_size is 0 */
+    public MonetResultCache getResultCache() {
+        return resultCache;
+    }
+
+    //Cache to look query results up in, only in auto-commit mode outside of transactions
+    MonetResultCache getReadableResultCache() {
+        return resultCache != null && autoCommit && !inTransaction ? resultCache : null;
+    }
+
+    //Cache which must see the changes of this connection, also when this connection doesn't cache results itself
+    MonetResultCache getInvalidatedResultCache() {
+        return resultCache != null ? resultCache : MonetResultCache.find(databaseId);
+    }
+
+    String getCacheSchema() {
+        return cacheSchema;
+    }
+
+    //Invalidates the cached results of the tables a statement may have changed, after it ran
+    void afterStatement(MonetResultCache cache, List<String> words) {
+        if (words.isEmpty()) {
+            return;
+        }
+        String first = words.get(0);
+        if (first.equals("set") && words.size() > 2 && words.get(1).equals("schema")) {
+            cacheSchema = words.get(2);
+        }
+        else if (first.equals("start") || first.equals("begin")) {
+            inTransaction = true;
+        }
+        else if (first.equals("commit") || first.equals("rollback")) {
+            //Other connections may have cached results before the changes were committed
+            if (uncommittedChanges) {
+                cache.invalidate();
+            }
+            //ROLLBACK TO SAVEPOINT keeps the transaction going
+            if (!words.contains("savepoint")) {
+                uncommittedChanges = false;
+                inTransaction = false;
+            }
+        }
+        else if (MonetResultCache.changesData(words)) {
+            dataChanged(cache);
+        }
+    }
+
+    private void dataChanged(MonetResultCache cache) {
+        cache.invalidate();
+        if (inTransaction || !autoCommit) {
+            uncommittedChanges = true;
+        }
+    }
+
+    /**
+     * Appends rows to a table through monetdbe_append, which takes the values of all columns in one native
+     * call instead of binding and executing an INSERT per row. There must be a column for every column of
+     * the table, in the order of the table's columns and with their types (see {@link MonetAppendColumn}).
+     *
+     * @param schema the schema of the table, null for the current schema
+     */
+    public void append(String schema, String table, MonetAppendColumn... columns) throws SQLException {
+        checkNotClosed();
+        if (table == null || columns == null || columns.length == 0)
+            throw new SQLException("Missing table name or columns", "M1M05");
+        int rows = columns[0].rows;
+        int[] types = new int[columns.length];
+        ByteBuffer[] data = new ByteBuffer[columns.length];
+        ByteBuffer[] offsets = new ByteBuffer[columns.length];
+        ByteBuffer[] nulls = new ByteBuffer[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].rows != rows)
+                throw new SQLException("Column " + (i + 1) + " has " + columns[i].rows + " rows, column 1 has " + rows, "M1M05");
+            types[i] = columns[i].monetdbeType;
+            data[i] = columns[i].data;
+            offsets[i] = columns[i].offsets;
+            nulls[i] = columns[i].nulls;
+        }
+        if (rows == 0) {
+            return;
+        }
+        if (schema == null) {
+            schema = getSchema();
+        }
+
+        final String appendSchema = schema;
+        String error_msg = callNative(() -> MonetNative.monetdbe_append(dbNative, appendSchema, table, types, data, offsets, nulls, rows));
+        if (error_msg != null) {
+            throw new SQLException(error_msg);
+        }
+        MonetResultCache cache = getInvalidatedResultCache();
+        if (cache != null) {
+            dataChanged(cache);
+        }
+    }
+
+    /**
+     * Runs a COPY INTO statement reading FROM STDIN, with the bytes of the input as its data, for example
+     * {@code COPY INTO t FROM STDIN USING DELIMITERS ',','\n','"'}. The input is passed to the engine a
+     * chunk at a time through a named pipe, so it is neither held in memory nor written to a file first.
+     * The input is read up to its end but not closed.
+     *
+     * In auto-commit mode the COPY runs in its own transaction, which is rolled back if reading the input
+     * fails. Otherwise the rows loaded before such a failure are part of the open transaction.
+     *
+     * @return the number of rows copied
+     */
+    public long copyIn(String sql, InputStream input) throws SQLException {
+        checkNotClosed();
+        return MonetCopyIn.copyIn(this, sql, MonetCopyIn.of(Channels.newChannel(input)));
+    }
+
+    /** As {@link #copyIn(String, InputStream)}, the characters are passed to the engine as UTF-8 */
+    public long copyIn(String sql, Reader input) throws SQLException {
+        checkNotClosed();
+        return MonetCopyIn.copyIn(this, sql, MonetCopyIn.of(input));
+    }
+
+    /** As {@link #copyIn(String, InputStream)} */
+    public long copyIn(String sql, ReadableByteChannel input) throws SQLException {
+        checkNotClosed();
+        return MonetCopyIn.copyIn(this, sql, MonetCopyIn.of(input));
+    }
+
+    //Work which loads rows, for runInTransaction
+    interface TransactionWork<T> {
+        T run() throws SQLException;
+    }
+
+    //In auto-commit mode the work runs in its own transaction, which is rolled back if the work fails, so a failed
+    //load leaves no rows behind. Otherwise the work is part of the open transaction
+    <T> T runInTransaction(TransactionWork<T> work) throws SQLException {
+        if (!getAutoCommit()) {
+            return work.run();
+        }
+        setAutoCommit(false);
+        try {
+            T result;
+            try {
+                result = work.run();
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            }
+            commit();
+            return result;
+        } finally {
+            setAutoCommit(true);
+        }
+    }
+
+    Path getSpillDirectory() {
+        return spill_directory;
+    }
+
     private void addWarning(final String reason, final String sqlstate) {
         final SQLWarning warn = new SQLWarning(reason, sqlstate);
         if (warnings == null) {
@@ -125,7 +376,17 @@ public class MonetConnection extends MonetWrapper implements Connection {
             }
         }
         statements = null;
-        String error_msg = MonetNative.monetdbe_close(dbNative);
+        if (resultCache != null) {
+            resultCache.release();
+            resultCache = null;
+        }
+        synchronized (this) {
+            if (conversionPool != null) {
+                conversionPool.shutdown();
+                conversionPool = null;
+            }
+        }
+        String error_msg = callNative(() -> MonetNative.monetdbe_close(dbNative));
         if (error_msg != null) {
             throw new SQLException(error_msg);
         }
@@ -179,10 +440,15 @@ public class MonetConnection extends MonetWrapper implements Connection {
         checkNotClosed();
         if (autoCommit != this.autoCommit) {
             this.autoCommit = autoCommit;
-            String error_msg = MonetNative.monetdbe_set_autocommit(dbNative, autoCommit ? 1 : 0);
+            String error_msg = callNative(() -> MonetNative.monetdbe_set_autocommit(dbNative, autoCommit ? 1 : 0));
             if (error_msg != null) {
                 throw new SQLException(error_msg);
             }
+            //Turning auto-commit on commits the open transaction
+            MonetResultCache cache = getInvalidatedResultCache();
+            if (autoCommit && cache != null) {
+                afterStatement(cache, Collections.singletonList("commit"));
+            }
         }
     }
 
@@ -190,7 +456,7 @@ public class MonetConnection extends MonetWrapper implements Connection {
     public boolean getAutoCommit() throws SQLException {
         checkNotClosed();
         //Calling the server instead of returning the Java variable because the value may have changed
-        return MonetNative.monetdbe_get_autocommit(dbNative);
+        return callNative(() -> MonetNative.monetdbe_get_autocommit(dbNative));
     }
 
     @Override
@@ -431,7 +697,7 @@ public class MonetConnection extends MonetWrapper implements Connection {
     public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
         checkNotClosed();
         try {
-            MonetStatement s = new MonetStatement(this);
+            MonetStatement s = new MonetStatement(this, resultSetType, resultSetConcurrency, resultSetHoldability);
             statements.add(s);
             return s;
         } catch (IllegalArgumentException e) {
@@ -475,7 +741,7 @@ public class MonetConnection extends MonetWrapper implements Connection {
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
         checkNotClosed();
         try {
-            MonetPreparedStatement s = new MonetPreparedStatement(this, sql);
+            MonetPreparedStatement s = new MonetPreparedStatement(this, sql, resultSetType, resultSetConcurrency, resultSetHoldability);
             statements.add(s);
             return s;
         } catch (IllegalArgumentException e) {
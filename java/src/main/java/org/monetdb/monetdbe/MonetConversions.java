@@ -0,0 +1,119 @@
+package org.monetdb.monetdbe;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Conversions of column values to the Java classes requested through getObject(int, Class).
+ *
+ * The converters of a target class are resolved once, into a table indexed by the monetdbe type of the
+ * column, so a conversion is a class lookup, an array load and a call of the column's typed getter.
+ * A null entry means the column type can't be converted into the class. Converters are only called
+ * for rows which are not null.
+ */
+final class MonetConversions {
+    //Monetdbe types 0 up to 14 (unknown)
+    private static final int TYPES = 15;
+
+    private static final ClassValue<Converter[]> tables = new ClassValue<Converter[]>() {
+        @Override
+        protected Converter[] computeValue(Class<?> type) {
+            Converter[] table = new Converter[TYPES];
+            for (int monetdbeType = 0; monetdbeType < TYPES; monetdbeType++) {
+                table[monetdbeType] = converter(type, monetdbeType);
+            }
+            return table;
+        }
+    };
+
+    interface Converter {
+        Object convert(MonetColumn column, int row);
+    }
+
+    private MonetConversions() {
+    }
+
+    //Converter from a column type into the class, or null if the conversion is not supported
+    static Converter find(Class<?> type, int monetdbeType) {
+        return monetdbeType >= 0 && monetdbeType < TYPES ? tables.get(type)[monetdbeType] : null;
+    }
+
+    private static Converter converter(Class<?> type, int monetdbeType) {
+        boolean numeric = monetdbeType >= 0 && monetdbeType <= 9 && monetdbeType != 6;
+        boolean string = monetdbeType == 9;
+        boolean date = string || monetdbeType == 11 || monetdbeType == 13;
+        boolean time = string || monetdbeType == 12 || monetdbeType == 13;
+        boolean timestamp = string || monetdbeType == 11 || monetdbeType == 13;
+
+        if (type == Object.class) {
+            return MonetColumn::getObject;
+        }
+        else if (type == String.class) {
+            return monetdbeType != 10 && monetdbeType < 14 ? MonetColumn::getString : null;
+        }
+        else if (type == Boolean.class) {
+            return numeric ? MonetColumn::getBoolean : null;
+        }
+        else if (type == Byte.class) {
+            return numeric ? MonetColumn::getByte : null;
+        }
+        else if (type == Short.class) {
+            return numeric ? MonetColumn::getShort : null;
+        }
+        else if (type == Integer.class) {
+            return numeric ? MonetColumn::getInt : null;
+        }
+        else if (type == Long.class) {
+            return numeric ? MonetColumn::getLong : null;
+        }
+        else if (type == Float.class) {
+            return numeric ? MonetColumn::getFloat : null;
+        }
+        else if (type == Double.class) {
+            return numeric ? MonetColumn::getDouble : null;
+        }
+        else if (type == BigDecimal.class) {
+            return numeric ? MonetColumn::getBigDecimal : null;
+        }
+        else if (type == BigInteger.class) {
+            return numeric ? MonetColumn::getBigInteger : null;
+        }
+        else if (type == LocalDate.class) {
+            return date ? MonetColumn::getLocalDate : null;
+        }
+        else if (type == LocalTime.class) {
+            return time ? MonetColumn::getLocalTime : null;
+        }
+        else if (type == LocalDateTime.class) {
+            return timestamp ? MonetColumn::getLocalDateTime : null;
+        }
+        else if (type == Date.class) {
+            return date ? (column, row) -> Date.valueOf(column.getLocalDate(row)) : null;
+        }
+        else if (type == Time.class) {
+            return time ? (column, row) -> Time.valueOf(column.getLocalTime(row)) : null;
+        }
+        else if (type == Timestamp.class || type == java.util.Date.class) {
+            return timestamp ? (column, row) -> Timestamp.valueOf(column.getLocalDateTime(row)) : null;
+        }
+        else if (type == byte[].class) {
+            return monetdbeType == 10 ? MonetColumn::getBytes : null;
+        }
+        else if (type == Blob.class || type == MonetBlob.class) {
+            return monetdbeType == 10 ? MonetColumn::getBlob : null;
+        }
+        else if (type == Clob.class || type == MonetClob.class) {
+            //The Clob decodes the UTF-8 bytes only when the characters are needed
+            return string ? (column, row) -> new MonetClob(column.getUTF8(row)) : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,209 @@
+package org.monetdb.monetdbe;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a COPY INTO ... FROM STDIN statement for {@link MonetConnection#copyIn(String, java.io.InputStream)}.
+ *
+ * monetdbe only copies from files, so STDIN is replaced by a named pipe in a temporary directory. A pump
+ * thread writes the input into the pipe a chunk at a time while the engine reads it, so the input is never
+ * held in memory or written to disk as a whole.
+ */
+final class MonetCopyIn {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final long STOP_TIMEOUT_MS = 5000;
+    private static final Pattern FROM_STDIN = Pattern.compile("\\bfrom\\s+stdin\\b", Pattern.CASE_INSENSITIVE);
+
+    //Fills a buffer with the next bytes of the input, returns false when the input is exhausted
+    interface Chunks {
+        boolean next(ByteBuffer buffer) throws IOException;
+    }
+
+    private final Chunks input;
+    private final Path pipe;
+    private final CountDownLatch opened = new CountDownLatch(1);
+    private volatile boolean stopped;
+    private volatile IOException inputFailure;
+
+    private MonetCopyIn(Chunks input, Path pipe) {
+        this.input = input;
+        this.pipe = pipe;
+    }
+
+    static long copyIn(MonetConnection conn, String sql, Chunks input) throws SQLException {
+        Matcher matcher = FROM_STDIN.matcher(sql);
+        if (!matcher.find()) {
+            throw new SQLException("The COPY INTO statement must read FROM STDIN", "M1M05");
+        }
+
+        Path directory = null;
+        Path pipe = null;
+        try {
+            directory = Files.createTempDirectory("monetdbe-copy");
+            pipe = directory.resolve("stdin.csv");
+            String error_msg = MonetNative.monetdbe_mkfifo(pipe.toString());
+            if (error_msg != null) {
+                throw new SQLException("Named pipe for the COPY INTO input could not be created: " + error_msg, "HY000");
+            }
+            String copy = sql.substring(0, matcher.start()) + "FROM '" + pipe.toString().replace("'", "''") + "'" + sql.substring(matcher.end());
+            return new MonetCopyIn(input, pipe).run(conn, copy);
+        } catch (IOException e) {
+            throw new SQLException("Named pipe for the COPY INTO input could not be created: " + e.getMessage(), "HY000");
+        } finally {
+            try {
+                if (pipe != null) {
+                    Files.deleteIfExists(pipe);
+                }
+                if (directory != null) {
+                    Files.deleteIfExists(directory);
+                }
+            } catch (IOException e) {
+                //Left in the temporary directory
+            }
+        }
+    }
+
+    //In auto-commit mode the COPY runs in a transaction, which is rolled back when reading the input fails, as the
+    //engine has then loaded the rows up to the failure. Otherwise the caller must roll back the transaction
+    private long run(MonetConnection conn, String copy) throws SQLException {
+        Thread pump = new Thread(this::pump, "monetdbe-copy-in");
+        pump.setDaemon(true);
+        pump.start();
+
+        return conn.runInTransaction(() -> {
+            long rows;
+            try (MonetStatement statement = (MonetStatement) conn.createStatement()) {
+                rows = statement.executeLargeUpdate(copy);
+            } finally {
+                stop(pump);
+            }
+            if (inputFailure != null) {
+                throw new SQLException("Reading the COPY INTO input failed: " + inputFailure.getMessage(), "M1M25", inputFailure);
+            }
+            return rows;
+        });
+    }
+
+    //The engine no longer reads the pipe. If it never opened it, the pump may still be blocked opening its end, so a
+    //read end is held open until the pump got past that, then closing it makes the pump fail writing. A pump blocked
+    //reading the input is interrupted, and left behind if the input doesn't respond to that
+    private void stop(Thread pump) {
+        stopped = true;
+        int fd = MonetNative.monetdbe_open_fifo(pipe.toString());
+        try {
+            opened.await(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            MonetNative.monetdbe_close_fifo(fd);
+        }
+        try {
+            pump.join(STOP_TIMEOUT_MS);
+            if (pump.isAlive()) {
+                pump.interrupt();
+                pump.join(STOP_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            pump.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //A failure writing the pipe means the engine stopped reading (COPY n RECORDS or an error), which the statement reports
+    private void pump() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        FileChannel out;
+        try {
+            out = FileChannel.open(pipe, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            return;
+        } finally {
+            opened.countDown();
+        }
+        try (FileChannel channel = out) {
+            boolean more = true;
+            while (more) {
+                buffer.clear();
+                try {
+                    more = input.next(buffer);
+                } catch (IOException e) {
+                    //Once stopped, a failure comes from the interrupt and not from the input
+                    if (!stopped) {
+                        inputFailure = e;
+                    }
+                    return;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            //The engine closed the pipe
+        }
+    }
+
+    static Chunks of(ReadableByteChannel channel) {
+        return buffer -> {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    //Encodes the characters as UTF-8, which COPY INTO expects
+    static Chunks of(Reader reader) {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE / 4);
+        chars.flip();
+        return new Chunks() {
+            private boolean end;
+            private boolean encoded;
+            private boolean flushed;
+
+            @Override
+            public boolean next(ByteBuffer buffer) throws IOException {
+                while (buffer.hasRemaining() && !encoded) {
+                    CoderResult result = encoder.encode(chars, buffer, end);
+                    if (result.isOverflow()) {
+                        return true;
+                    }
+                    if (end) {
+                        encoded = true;
+                        break;
+                    }
+                    //Underflow, a trailing high surrogate stays in the buffer for the next read
+                    chars.compact();
+                    end = reader.read(chars) < 0;
+                    chars.flip();
+                }
+                if (encoded && !flushed) {
+                    flushed = !encoder.flush(buffer).isOverflow();
+                }
+                return !flushed;
+            }
+        };
+    }
+}
@@ -0,0 +1,998 @@
+package org.monetdb.monetdbe;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads CSV or TSV data into a table, parsing it on several threads into the column layout of the table and
+ * appending the columns with {@link MonetConnection#append(String, String, MonetAppendColumn...)}.
+ *
+ * A reader thread decompresses the input and splits it into chunks of whole records, the chunks are parsed by a
+ * pool of parser threads and the caller's thread appends the parsed chunks in the order of the input. Only a few
+ * chunks per parser thread are in flight at a time, so memory use doesn't depend on the size of the input.
+ * gzip and zstd input is recognized by its first bytes, zstd needs com.github.luben:zstd-jni on the class path.
+ * <pre>
+ * MonetCsvLoader loader = new MonetCsvLoader(connection, null, "logs");
+ * loader.setSkipLines(1);
+ * loader.setRejectLog(Paths.get("logs.rejected"));
+ * loader.setMaxRejectedRows(1000);
+ * MonetCsvLoader.Progress loaded = loader.load(Paths.get("logs.csv.gz"));
+ * </pre>
+ *
+ * Every field of a record is a column of the table, in the order of the table's columns. Fields are separated by
+ * the delimiter and may be enclosed in quotes, with doubled quotes inside them. A field equal to the null string
+ * (by default the empty field) is null, except for quoted fields of character columns. Records which can't be
+ * parsed are rejected: they are written to the reject log and the load fails when there are more than
+ * {@link #setMaxRejectedRows(long)} of them.
+ *
+ * In auto-commit mode the load is one transaction, which is rolled back when the load fails.
+ */
+public final class MonetCsvLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final MonetConnection conn;
+    private final String schema;
+    private final String table;
+    private byte delimiter = ',';
+    private boolean quoted = true;
+    private byte quote = '"';
+    private byte[] nullBytes = new byte[0];
+    private int skipLines;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = 4 << 20;
+    private long maxRejectedRows;
+    private Path rejectLog;
+    private Consumer<Progress> progressListener;
+
+    /**
+     * @param schema the schema of the table, null for the current schema
+     */
+    public MonetCsvLoader(MonetConnection conn, String schema, String table) {
+        this.conn = conn;
+        this.schema = schema;
+        this.table = table;
+    }
+
+    /** The field delimiter, ',' by default and '\t' for TSV */
+    public void setDelimiter(char delimiter) {
+        if (delimiter > 127 || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("The delimiter must be an ASCII character other than a line break");
+        }
+        this.delimiter = (byte) delimiter;
+    }
+
+    /** The quote character, '"' by default and '\0' if fields are never quoted */
+    public void setQuote(char quote) {
+        if (quote > 127) {
+            throw new IllegalArgumentException("The quote must be an ASCII character");
+        }
+        this.quoted = quote != '\0';
+        this.quote = (byte) quote;
+    }
+
+    /** The unquoted field value of null fields, the empty string by default */
+    public void setNullString(String nullString) {
+        this.nullBytes = nullString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Records to skip at the start of the input, such as a header line */
+    public void setSkipLines(int skipLines) {
+        this.skipLines = skipLines;
+    }
+
+    /** Parser threads, the number of processors by default */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /** Bytes of input per chunk, 4 MB by default. Each chunk is appended with one native call */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize);
+    }
+
+    /** Rejected records the load tolerates, 0 by default */
+    public void setMaxRejectedRows(long maxRejectedRows) {
+        this.maxRejectedRows = maxRejectedRows;
+    }
+
+    /** File the rejected records are written to, with their record number and the reason */
+    public void setRejectLog(Path rejectLog) {
+        this.rejectLog = rejectLog;
+    }
+
+    /** Called on the loading thread after each appended chunk */
+    public void setProgressListener(Consumer<Progress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public Progress load(Path file) throws SQLException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return load(input);
+        } catch (IOException e) {
+            throw new SQLException("Could not read " + file + ": " + e.getMessage(), "M1M25", e);
+        }
+    }
+
+    /** Loads the input up to its end, the input is not closed */
+    public Progress load(InputStream input) throws SQLException {
+        if (conn.isClosed())
+            throw new SQLException("Connection is closed", "M1M20");
+        String schemaName = schema != null ? schema : conn.getSchema();
+        Column[] columns = tableColumns(schemaName);
+        long start = System.nanoTime();
+        CountingInputStream counted = new CountingInputStream(input);
+        InputStream data;
+        try {
+            data = decompress(counted);
+        } catch (IOException e) {
+            throw new SQLException("Could not read the CSV input: " + e.getMessage(), "M1M25", e);
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread t = new Thread(runnable, "monetdbe-csv-parser-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Splitter splitter = new Splitter(data, columns, parsers, new ArrayBlockingQueue<>(2 * threads));
+        Thread reader = new Thread(splitter, "monetdbe-csv-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try (Writer log = rejectLog != null ? Files.newBufferedWriter(rejectLog, StandardCharsets.UTF_8) : null) {
+            Progress loaded = conn.runInTransaction(() -> append(schemaName, splitter, counted, log, start));
+            if (log != null) {
+                log.flush();
+            }
+            return loaded;
+        } catch (IOException e) {
+            throw new SQLException("Could not write the reject log " + rejectLog + ": " + e.getMessage(), "M1M25", e);
+        } finally {
+            splitter.cancelled = true;
+            parsers.shutdownNow();
+        }
+    }
+
+    //Appends the parsed chunks in the order of the input
+    private Progress append(String schemaName, Splitter splitter, CountingInputStream counted, Writer log, long start) throws SQLException {
+        long rows = 0;
+        long rejected = 0;
+        String firstReject = null;
+        while (true) {
+            Chunk chunk = splitter.take();
+            if (chunk == null) {
+                return new Progress(counted.count, splitter.bytes, rows, rejected, System.nanoTime() - start);
+            }
+            if (!chunk.rejects.isEmpty()) {
+                rejected += chunk.rejects.size();
+                if (firstReject == null) {
+                    firstReject = chunk.rejects.get(0);
+                }
+                if (log != null) {
+                    try {
+                        for (String reject : chunk.rejects) {
+                            log.write(reject);
+                            log.write('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new SQLException("Could not write the reject log " + rejectLog + ": " + e.getMessage(), "22018", e);
+                    }
+                }
+                if (rejected > maxRejectedRows) {
+                    throw new SQLException(rejected + " rejected records, more than the " + maxRejectedRows + " allowed. First " + firstReject, "22018");
+                }
+            }
+            if (chunk.rows > 0) {
+                conn.append(schemaName, table, chunk.columns);
+                rows += chunk.rows;
+            }
+            if (progressListener != null) {
+                progressListener.accept(new Progress(counted.count, splitter.bytes, rows, rejected, System.nanoTime() - start));
+            }
+        }
+    }
+
+    //Types and scales of the table's columns, from an empty result
+    private Column[] tableColumns(String schemaName) throws SQLException {
+        try (MonetStatement statement = (MonetStatement) conn.createStatement()) {
+            MonetResultSet rs = (MonetResultSet) statement.executeQuery("SELECT * FROM " + quoteIdentifier(schemaName) + "." + quoteIdentifier(table) + " LIMIT 0");
+            MonetColumn[] resultColumns = rs.getCurrentColumns();
+            Column[] columns = new Column[resultColumns.length];
+            for (int i = 0; i < columns.length; i++) {
+                int type = resultColumns[i].getMonetdbeType();
+                if (type == 6 || type == 14) {
+                    throw new SQLException("Column " + resultColumns[i].getName() + " has a type which can't be loaded", "M1M05");
+                }
+                columns[i] = new Column(resultColumns[i].getName(), type, Math.max(0, resultColumns[i].getScaleJDBC()));
+            }
+            return columns;
+        }
+    }
+
+    private static String quoteIdentifier(String name) {
+        return '"' + name.replace("\"", "\"\"") + '"';
+    }
+
+    private static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, 1 << 16);
+        buffered.mark(4);
+        byte[] magic = new byte[4];
+        int length = 0;
+        for (int n; length < 4 && (n = buffered.read(magic, length, 4 - length)) > 0; ) {
+            length += n;
+        }
+        buffered.reset();
+        if (length >= 2 && magic[0] == 0x1f && magic[1] == (byte) 0x8b) {
+            return new GZIPInputStream(buffered, 1 << 16);
+        }
+        if (length == 4 && magic[0] == 0x28 && magic[1] == (byte) 0xb5 && magic[2] == 0x2f && magic[3] == (byte) 0xfd) {
+            try {
+                return (InputStream) Class.forName("com.github.luben.zstd.ZstdInputStream").getConstructor(InputStream.class).newInstance(buffered);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                throw new IOException("zstd input needs com.github.luben:zstd-jni on the class path");
+            }
+        }
+        return buffered;
+    }
+
+    /** Progress of a load, passed to the progress listener and returned when the load is done */
+    public static final class Progress {
+        private final long inputBytes;
+        private final long bytes;
+        private final long rows;
+        private final long rejectedRows;
+        private final long elapsedNanos;
+
+        Progress(long inputBytes, long bytes, long rows, long rejectedRows, long elapsedNanos) {
+            this.inputBytes = inputBytes;
+            this.bytes = bytes;
+            this.rows = rows;
+            this.rejectedRows = rejectedRows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /** Bytes read from the input, compressed if the input is */
+        public long getInputBytes() {
+            return inputBytes;
+        }
+
+        /** Bytes of CSV read from the input so far, which is ahead of the appended rows */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Rows appended to the table */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getRejectedRows() {
+            return rejectedRows;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? rows * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows (" + rejectedRows + " rejected) from " + inputBytes + " input bytes in " + (elapsedNanos / 1000000) + " ms";
+        }
+    }
+
+    private static final class Column {
+        final String name;
+        final int type;
+        //Decimal digits of DECIMAL columns, which are appended unscaled
+        final int scale;
+
+        Column(String name, int type, int scale) {
+            this.name = name;
+            this.type = type;
+            this.scale = scale;
+        }
+    }
+
+    //Parsed columns of a chunk and its rejected records
+    private static final class Chunk {
+        final MonetAppendColumn[] columns;
+        final int rows;
+        final List<String> rejects;
+
+        Chunk(MonetAppendColumn[] columns, int rows, List<String> rejects) {
+            this.columns = columns;
+            this.rows = rows;
+            this.rejects = rejects;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    //Splits the input into chunks of whole records on the reader thread and hands them to the parsers. The record
+    //boundaries are the line breaks outside quotes
+    private final class Splitter implements Runnable {
+        private final InputStream input;
+        private final Column[] columns;
+        private final ExecutorService parsers;
+        private final BlockingQueue<Future<Chunk>> parsed;
+        volatile boolean cancelled;
+        volatile long bytes;
+
+        Splitter(InputStream input, Column[] columns, ExecutorService parsers, BlockingQueue<Future<Chunk>> parsed) {
+            this.input = input;
+            this.columns = columns;
+            this.parsers = parsers;
+            this.parsed = parsed;
+        }
+
+        @Override
+        public void run() {
+            CompletableFuture<Chunk> end = new CompletableFuture<>();
+            try {
+                split();
+                end.complete(null);
+            } catch (IOException | RuntimeException e) {
+                end.completeExceptionally(e);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                put(end);
+            } catch (InterruptedException e) {
+                //Cancelled
+            }
+        }
+
+        private void split() throws IOException, InterruptedException {
+            byte[] pending = new byte[0];
+            int pendingLength = 0;
+            boolean inQuotes = false;
+            int linesToSkip = skipLines;
+            long records = 0;
+            boolean eof = false;
+            while (!eof && !cancelled) {
+                byte[] block = new byte[pendingLength + chunkSize];
+                System.arraycopy(pending, 0, block, 0, pendingLength);
+                int length = pendingLength;
+                while (length < block.length) {
+                    int n = input.read(block, length, block.length - length);
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    length += n;
+                    bytes += n;
+                }
+
+                int start = 0;
+                int boundary = 0;
+                int count = 0;
+                for (int i = pendingLength; i < length; i++) {
+                    byte b = block[i];
+                    if (quoted && b == quote) {
+                        inQuotes = !inQuotes;
+                    }
+                    else if (b == '\n' && !inQuotes) {
+                        boundary = i + 1;
+                        if (linesToSkip > 0) {
+                            linesToSkip--;
+                            start = boundary;
+                        }
+                        else {
+                            count++;
+                        }
+                    }
+                }
+                //The last record doesn't need a line break, one which is still quoted is rejected by the parser
+                if (eof && boundary < length) {
+                    if (linesToSkip > 0) {
+                        start = length;
+                    }
+                    else {
+                        count++;
+                    }
+                    boundary = length;
+                }
+
+                if (boundary > start) {
+                    long firstRecord = records + 1;
+                    int chunkStart = start;
+                    int chunkEnd = boundary;
+                    int chunkRecords = count;
+                    if (!put(parsers.submit(() -> new Parser(columns, block, chunkStart, chunkEnd, chunkRecords, firstRecord).parse()))) {
+                        return;
+                    }
+                    records += count;
+                }
+                //A record longer than the chunk is carried over as a whole, which grows the next block
+                pendingLength = length - Math.max(boundary, start);
+                pending = new byte[pendingLength];
+                System.arraycopy(block, length - pendingLength, pending, 0, pendingLength);
+            }
+        }
+
+        //Waits for room in the queue, returns false when the load was cancelled
+        private boolean put(Future<Chunk> chunk) throws InterruptedException {
+            while (!cancelled) {
+                if (parsed.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //The next chunk in the order of the input, null at the end of the input
+        Chunk take() throws SQLException {
+            try {
+                return parsed.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while loading", "HY008");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw new SQLException("Could not read the CSV input: " + cause.getMessage(), "M1M25", cause);
+                }
+                throw new SQLException("Could not parse the CSV input: " + cause, "HY000", cause);
+            }
+        }
+    }
+
+    //Rejects the current record
+    private static final class RejectException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RejectException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    //Parses the records of a chunk into columns
+    private final class Parser {
+        private final Column[] columns;
+        private final byte[] buffer;
+        private final int start;
+        private final int end;
+        private final long firstRecord;
+        private final ColumnBuilder[] builders;
+        private final List<String> rejects = new ArrayList<>();
+        //The current field, which points into the chunk unless it had doubled quotes
+        private byte[] field;
+        private int fieldStart;
+        private int fieldEnd;
+        private boolean fieldQuoted;
+        private byte[] unquoted = new byte[256];
+
+        Parser(Column[] columns, byte[] buffer, int start, int end, int records, long firstRecord) {
+            this.columns = columns;
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.firstRecord = firstRecord;
+            this.builders = new ColumnBuilder[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                builders[i] = new ColumnBuilder(columns[i], records, (end - start) / columns.length);
+            }
+        }
+
+        Chunk parse() {
+            long record = firstRecord;
+            int rows = 0;
+            int position = start;
+            while (position < end) {
+                int recordEnd = recordEnd(position);
+                int lineEnd = recordEnd > position && buffer[recordEnd - 1] == '\r' ? recordEnd - 1 : recordEnd;
+                if (lineEnd > position) {
+                    try {
+                        parseRecord(position, lineEnd);
+                        rows++;
+                    } catch (RejectException e) {
+                        for (ColumnBuilder builder : builders) {
+                            builder.truncate(rows);
+                        }
+                        rejects.add("record " + record + ": " + e.getMessage() + ": " + new String(buffer, position, lineEnd - position, StandardCharsets.UTF_8));
+                    }
+                }
+                record++;
+                position = recordEnd + 1;
+            }
+
+            MonetAppendColumn[] appendColumns = new MonetAppendColumn[builders.length];
+            for (int i = 0; i < builders.length; i++) {
+                appendColumns[i] = builders[i].build(rows);
+            }
+            return new Chunk(appendColumns, rows, rejects);
+        }
+
+        //Position of the line break ending the record, or the end of the chunk
+        private int recordEnd(int position) {
+            boolean inQuotes = false;
+            for (int i = position; i < end; i++) {
+                byte b = buffer[i];
+                if (quoted && b == quote) {
+                    inQuotes = !inQuotes;
+                }
+                else if (b == '\n' && !inQuotes) {
+                    return i;
+                }
+            }
+            return end;
+        }
+
+        private void parseRecord(int position, int lineEnd) throws RejectException {
+            int p = position;
+            for (int i = 0; i < columns.length; i++) {
+                p = readField(p, lineEnd);
+                boolean isNull = (!fieldQuoted || columns[i].type != 9) && equalsNull();
+                builders[i].add(field, fieldStart, fieldEnd, isNull);
+                if (i < columns.length - 1) {
+                    if (p >= lineEnd) {
+                        throw new RejectException((i + 1) + " fields, the table has " + columns.length + " columns");
+                    }
+                    p++;
+                }
+            }
+            if (p < lineEnd) {
+                throw new RejectException("more fields than the " + columns.length + " columns of the table");
+            }
+        }
+
+        //Sets the current field and returns the position after it, which is the delimiter or the end of the line
+        private int readField(int p, int lineEnd) throws RejectException {
+            fieldQuoted = quoted && p < lineEnd && buffer[p] == quote;
+            if (!fieldQuoted) {
+                int q = p;
+                while (q < lineEnd && buffer[q] != delimiter) {
+                    q++;
+                }
+                field = buffer;
+                fieldStart = p;
+                fieldEnd = q;
+                return q;
+            }
+
+            int q = p + 1;
+            int length = 0;
+            boolean doubled = false;
+            while (true) {
+                int closing = q;
+                while (closing < lineEnd && buffer[closing] != quote) {
+                    closing++;
+                }
+                if (closing >= lineEnd) {
+                    throw new RejectException("unterminated quoted field");
+                }
+                if (closing + 1 < lineEnd && buffer[closing + 1] == quote) {
+                    //A doubled quote is one quote in the value, which is copied without the second one
+                    length = copyUnquoted(q, closing + 1, length);
+                    doubled = true;
+                    q = closing + 2;
+                    continue;
+                }
+                if (doubled) {
+                    length = copyUnquoted(q, closing, length);
+                    field = unquoted;
+                    fieldStart = 0;
+                    fieldEnd = length;
+                }
+                else {
+                    field = buffer;
+                    fieldStart = p + 1;
+                    fieldEnd = closing;
+                }
+                q = closing + 1;
+                if (q < lineEnd && buffer[q] != delimiter) {
+                    throw new RejectException("unexpected characters after a quoted field");
+                }
+                return q;
+            }
+        }
+
+        private int copyUnquoted(int from, int to, int length) {
+            int newLength = length + to - from;
+            if (newLength > unquoted.length) {
+                byte[] grown = new byte[Math.max(newLength, 2 * unquoted.length)];
+                System.arraycopy(unquoted, 0, grown, 0, length);
+                unquoted = grown;
+            }
+            System.arraycopy(buffer, from, unquoted, length, to - from);
+            return newLength;
+        }
+
+        private boolean equalsNull() {
+            if (fieldEnd - fieldStart != nullBytes.length) {
+                return false;
+            }
+            for (int i = 0; i < nullBytes.length; i++) {
+                if (field[fieldStart + i] != nullBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    //Values of one column in the layout of MonetAppendColumn, the capacity of the rows is known up front
+    private static final class ColumnBuilder {
+        private final Column column;
+        private final int capacity;
+        private final int width;
+        private ByteBuffer data;
+        private ByteBuffer offsets;
+        private ByteBuffer nulls;
+        private int rows;
+        private int heapSize;
+
+        ColumnBuilder(Column column, int capacity, int heapEstimate) {
+            this.column = column;
+            this.capacity = capacity;
+            switch (column.type) {
+                case 9:
+                case 10:
+                    this.width = 0;
+                    this.data = allocate(heapEstimate + capacity + 16);
+                    this.offsets = allocate(4 * (capacity + 1));
+                    break;
+                case 11:
+                    this.width = 4;
+                    break;
+                case 12:
+                case 13:
+                    this.width = 8;
+                    break;
+                default:
+                    this.width = MonetTypes.getMonetSize(column.type);
+            }
+            if (width > 0) {
+                this.data = allocate(width * capacity);
+            }
+        }
+
+        void add(byte[] b, int s, int e, boolean isNull) throws RejectException {
+            if (isNull) {
+                if (nulls == null) {
+                    nulls = allocate(capacity);
+                }
+                nulls.put(rows, (byte) 1);
+                if (width == 0) {
+                    offsets.putInt(4 * rows, heapSize);
+                    offsets.putInt(4 * (rows + 1), heapSize);
+                }
+                rows++;
+                return;
+            }
+            if (nulls != null) {
+                nulls.put(rows, (byte) 0);
+            }
+
+            switch (column.type) {
+                case 0:
+                    data.put(rows, parseBoolean(b, s, e) ? (byte) 1 : 0);
+                    break;
+                case 1:
+                    data.put(rows, (byte) checkRange(parseInteger(b, s, e), Byte.MIN_VALUE, Byte.MAX_VALUE));
+                    break;
+                case 2:
+                    data.putShort(2 * rows, (short) checkRange(parseInteger(b, s, e), Short.MIN_VALUE, Short.MAX_VALUE));
+                    break;
+                case 3:
+                    data.putInt(4 * rows, (int) checkRange(parseInteger(b, s, e), Integer.MIN_VALUE, Integer.MAX_VALUE));
+                    break;
+                case 4:
+                    data.putLong(8 * rows, parseInteger(b, s, e));
+                    break;
+                case 5: {
+                    BigInteger value = parseHugeInteger(b, s, e);
+                    boolean little = data.order() == ByteOrder.LITTLE_ENDIAN;
+                    data.putLong(16 * rows + (little ? 0 : 8), value.longValue());
+                    data.putLong(16 * rows + (little ? 8 : 0), value.shiftRight(64).longValue());
+                    break;
+                }
+                case 7:
+                    data.putFloat(4 * rows, (float) parseDouble(b, s, e));
+                    break;
+                case 8:
+                    data.putDouble(8 * rows, parseDouble(b, s, e));
+                    break;
+                case 9:
+                    putHeap(b, s, e - s, true);
+                    break;
+                case 10:
+                    putBlob(b, s, e);
+                    break;
+                case 11:
+                    data.putInt(4 * rows, (int) parseDate(b, s, e).toEpochDay());
+                    break;
+                case 12:
+                    data.putLong(8 * rows, parseTime(b, s, e).toNanoOfDay() / 1000);
+                    break;
+                case 13: {
+                    LocalDateTime value = parseTimestamp(b, s, e);
+                    data.putLong(8 * rows, value.toEpochSecond(ZoneOffset.UTC) * 1000000L + value.getNano() / 1000);
+                    break;
+                }
+                default:
+                    throw new RejectException("column " + column.name + " has an unsupported type");
+            }
+            rows++;
+        }
+
+        //Drops the rows from the given one on, the values of a rejected record
+        void truncate(int rows) {
+            if (this.rows > rows) {
+                if (width == 0) {
+                    heapSize = offsets.getInt(4 * rows);
+                }
+                this.rows = rows;
+            }
+        }
+
+        MonetAppendColumn build(int rows) {
+            ByteBuffer rowNulls = null;
+            if (nulls != null) {
+                for (int i = 0; i < rows && rowNulls == null; i++) {
+                    if (nulls.get(i) != 0) {
+                        rowNulls = nulls;
+                    }
+                }
+            }
+            return new MonetAppendColumn(column.type, rows, data, offsets, rowNulls);
+        }
+
+        private void putHeap(byte[] b, int s, int length, boolean terminate) {
+            int needed = heapSize + length + (terminate ? 1 : 0);
+            if (needed > data.capacity()) {
+                ByteBuffer grown = allocate(Math.max(needed, 2 * data.capacity()));
+                ByteBuffer used = data.duplicate();
+                used.clear().limit(heapSize);
+                grown.put(used).clear();
+                data = grown;
+            }
+            ByteBuffer heap = data.duplicate();
+            heap.position(heapSize);
+            heap.put(b, s, length);
+            if (terminate) {
+                heap.put((byte) 0);
+            }
+            offsets.putInt(4 * rows, heapSize);
+            heapSize = needed;
+            offsets.putInt(4 * (rows + 1), heapSize);
+        }
+
+        //BLOB values are written as hexadecimal digits
+        private void putBlob(byte[] b, int s, int e) throws RejectException {
+            if ((e - s) % 2 != 0) {
+                throw new RejectException("an odd number of hexadecimal digits for column " + column.name);
+            }
+            byte[] bytes = new byte[(e - s) / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                int high = Character.digit(b[s + 2 * i], 16);
+                int low = Character.digit(b[s + 2 * i + 1], 16);
+                if (high < 0 || low < 0) {
+                    throw new RejectException("invalid hexadecimal digits for column " + column.name);
+                }
+                bytes[i] = (byte) (high << 4 | low);
+            }
+            putHeap(bytes, 0, bytes.length, false);
+        }
+
+        private boolean parseBoolean(byte[] b, int s, int e) throws RejectException {
+            String value = ascii(b, s, e).trim();
+            if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("t") || value.equals("1")) {
+                return true;
+            }
+            if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("f") || value.equals("0")) {
+                return false;
+            }
+            throw invalid(b, s, e);
+        }
+
+        //Integers and the unscaled value of DECIMAL columns, a value with more decimals than the column is rejected
+        private long parseInteger(byte[] b, int s, int e) throws RejectException {
+            //Surrounding whitespace is ignored, as String.trim() does for the other types
+            int end = e;
+            while (end > s && (b[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+            int p = s;
+            while (p < end && (b[p] & 0xFF) <= ' ') {
+                p++;
+            }
+            boolean negative = false;
+            if (p < end && (b[p] == '-' || b[p] == '+')) {
+                negative = b[p] == '-';
+                p++;
+            }
+            long value = 0;
+            int digits = 0;
+            int decimals = -1;
+            try {
+                for (; p < end; p++) {
+                    byte c = b[p];
+                    if (c >= '0' && c <= '9') {
+                        if (decimals >= 0 && ++decimals > column.scale) {
+                            if (c != '0') {
+                                throw new RejectException("too many decimals for column " + column.name + ": " + ascii(b, s, e));
+                            }
+                            continue;
+                        }
+                        value = Math.addExact(Math.multiplyExact(value, 10), negative ? '0' - c : c - '0');
+                        digits++;
+                    }
+                    else if (c == '.' && decimals < 0 && column.scale > 0) {
+                        decimals = 0;
+                    }
+                    else {
+                        throw invalid(b, s, e);
+                    }
+                }
+                if (digits == 0) {
+                    throw invalid(b, s, e);
+                }
+                for (int i = Math.max(decimals, 0); i < column.scale; i++) {
+                    value = Math.multiplyExact(value, 10);
+                }
+            } catch (ArithmeticException ex) {
+                throw outOfRange(b, s, e);
+            }
+            return value;
+        }
+
+        private long checkRange(long value, long min, long max) throws RejectException {
+            if (value < min || value > max) {
+                throw new RejectException("value out of range for column " + column.name + ": " + value);
+            }
+            return value;
+        }
+
+        private BigInteger parseHugeInteger(byte[] b, int s, int e) throws RejectException {
+            try {
+                BigInteger value = new BigDecimal(ascii(b, s, e).trim()).movePointRight(column.scale).toBigIntegerExact();
+                if (value.bitLength() > 127) {
+                    throw outOfRange(b, s, e);
+                }
+                return value;
+            } catch (NumberFormatException ex) {
+                throw invalid(b, s, e);
+            } catch (ArithmeticException ex) {
+                throw new RejectException("too many decimals for column " + column.name + ": " + ascii(b, s, e));
+            }
+        }
+
+        private double parseDouble(byte[] b, int s, int e) throws RejectException {
+            try {
+                return Double.parseDouble(ascii(b, s, e));
+            } catch (NumberFormatException ex) {
+                throw invalid(b, s, e);
+            }
+        }
+
+        //yyyy-mm-dd is parsed directly, other ISO dates through LocalDate
+        private LocalDate parseDate(byte[] b, int s, int e) throws RejectException {
+            try {
+                if (e - s == 10 && b[s + 4] == '-' && b[s + 7] == '-') {
+                    return LocalDate.of(digits(b, s, 4), digits(b, s + 5, 2), digits(b, s + 8, 2));
+                }
+                return LocalDate.parse(ascii(b, s, e).trim());
+            } catch (DateTimeException ex) {
+                throw invalid(b, s, e);
+            }
+        }
+
+        //hh:mm:ss with up to 9 fraction digits is parsed directly, other ISO times through LocalTime
+        private LocalTime parseTime(byte[] b, int s, int e) throws RejectException {
+            try {
+                if (e - s >= 8 && b[s + 2] == ':' && b[s + 5] == ':' && (e - s == 8 || b[s + 8] == '.' && e - s > 9 && e - s <= 18)) {
+                    int nanos = 0;
+                    for (int i = s + 9; i < s + 18; i++) {
+                        nanos = nanos * 10 + (i < e ? digits(b, i, 1) : 0);
+                    }
+                    return LocalTime.of(digits(b, s, 2), digits(b, s + 3, 2), digits(b, s + 6, 2), nanos);
+                }
+                return LocalTime.parse(ascii(b, s, e).trim());
+            } catch (DateTimeException ex) {
+                throw invalid(b, s, e);
+            }
+        }
+
+        //A date and a time separated by a space or a T, or only a date
+        private LocalDateTime parseTimestamp(byte[] b, int s, int e) throws RejectException {
+            if (e - s == 10) {
+                return parseDate(b, s, e).atStartOfDay();
+            }
+            if (e - s > 11 && (b[s + 10] == ' ' || b[s + 10] == 'T')) {
+                return LocalDateTime.of(parseDate(b, s, s + 10), parseTime(b, s + 11, e));
+            }
+            try {
+                return LocalDateTime.parse(ascii(b, s, e).trim().replace(' ', 'T'));
+            } catch (DateTimeException ex) {
+                throw invalid(b, s, e);
+            }
+        }
+
+        private static int digits(byte[] b, int s, int count) {
+            int value = 0;
+            for (int i = s; i < s + count; i++) {
+                int digit = b[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new DateTimeException("not a digit");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private RejectException invalid(byte[] b, int s, int e) {
+            return new RejectException("invalid value for column " + column.name + ": " + ascii(b, s, e));
+        }
+
+        private RejectException outOfRange(byte[] b, int s, int e) {
+            return new RejectException("value out of range for column " + column.name + ": " + ascii(b, s, e));
+        }
+
+        private static String ascii(byte[] b, int s, int e) {
+            return new String(b, s, e - s, StandardCharsets.ISO_8859_1);
+        }
+
+        private static ByteBuffer allocate(int size) {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.monetdb.monetdbe;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A character column with few distinct values, which the driver stores as a dictionary of those values
+ * and a code per row. {@link MonetColumnarResult#getStringVector(int)} returns this type for such columns.
+ * Equal codes mean equal values, so rows can be grouped, counted or filtered on their codes,
+ * and getString returns the same String instance for every row with the same value.
+ */
+public interface MonetDictionaryVector extends MonetStringVector {
+    /** @return the number of distinct values, codes range from 0 up to this size */
+    int getDictionarySize();
+
+    /** @return the code of the row's value, null rows have code 0 and are told apart by isNull */
+    int getCode(int row);
+
+    /** Copies the codes of length rows, starting at fromRow */
+    void copyCodesTo(int fromRow, int[] dst, int dstOffset, int length);
+
+    /** @return the value of a code, decoded once and shared by all rows holding it */
+    String getDictionaryValue(int code);
+
+    /** @return a read-only view of the UTF-8 bytes of a code's value */
+    ByteBuffer getDictionaryUTF8(int code);
+}
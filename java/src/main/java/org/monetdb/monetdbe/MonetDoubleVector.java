@@ -0,0 +1,18 @@
+package org.monetdb.monetdbe;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A column read as double values, null rows are 0.
+ */
+public interface MonetDoubleVector extends MonetVector {
+    double getDouble(int row);
+
+    /** Copies rows [fromRow, fromRow + length) into dst, starting at dstOffset */
+    void copyTo(int fromRow, double[] dst, int dstOffset, int length);
+
+    /** Copies rows [fromRow, fromRow + length) into dst, starting at its position */
+    void copyTo(int fromRow, DoubleBuffer dst, int length);
+
+    double[] toDoubleArray();
+}
@@ -0,0 +1,14 @@
+package org.monetdb.monetdbe;
+
+/**
+ * A HUGEINT (or narrower integer) column read as the high and low 64 bits of its 128 bit two's
+ * complement values, null rows are 0. The values are unscaled for decimal columns.
+ */
+public interface MonetHugeIntVector extends MonetVector {
+    long getHigh(int row);
+
+    long getLow(int row);
+
+    /** @return true if the value of the row fits in a long, which is then getLow(row) */
+    boolean fitsInLong(int row);
+}
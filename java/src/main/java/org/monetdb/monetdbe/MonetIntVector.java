@@ -0,0 +1,18 @@
+package org.monetdb.monetdbe;
+
+import java.nio.IntBuffer;
+
+/**
+ * A column read as int values, null rows are 0.
+ */
+public interface MonetIntVector extends MonetVector {
+    int getInt(int row);
+
+    /** Copies rows [fromRow, fromRow + length) into dst, starting at dstOffset */
+    void copyTo(int fromRow, int[] dst, int dstOffset, int length);
+
+    /** Copies rows [fromRow, fromRow + length) into dst, starting at its position */
+    void copyTo(int fromRow, IntBuffer dst, int length);
+
+    int[] toIntArray();
+}
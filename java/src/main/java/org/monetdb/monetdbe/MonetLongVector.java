@@ -0,0 +1,18 @@
+package org.monetdb.monetdbe;
+
+import java.nio.LongBuffer;
+
+/**
+ * A column read as long values, null rows are 0.
+ */
+public interface MonetLongVector extends MonetVector {
+    long getLong(int row);
+
+    /** Copies rows [fromRow, fromRow + length) into dst, starting at dstOffset */
+    void copyTo(int fromRow, long[] dst, int dstOffset, int length);
+
+    /** Copies rows [fromRow, fromRow + length) into dst, starting at its position */
+    void copyTo(int fromRow, LongBuffer dst, int length);
+
+    long[] toLongArray();
+}
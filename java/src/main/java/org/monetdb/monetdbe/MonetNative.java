@@ -83,7 +83,29 @@ public class MonetNative {
 
     protected static native String monetdbe_query(ByteBuffer db, String sql, MonetStatement statement, boolean largeUpdate, int maxrows);
 
-    protected static native MonetColumn[] monetdbe_result_fetch_all(ByteBuffer nativeResult, int nrows, int ncols);
+    //Runs the statements of a script in order, calling statement.queueScriptResult() after each one. Stops at the first error
+    protected static native String monetdbe_query_script(ByteBuffer db, String[] statements, MonetStatement statement, int maxrows);
+
+    //Appends rows to a table, the columns are the buffers of MonetAppendColumn
+    protected static native String monetdbe_append(ByteBuffer db, String schema, String table, int[] types, ByteBuffer[] data, ByteBuffer[] offsets, ByteBuffer[] nulls, int rows);
+
+    //Creates the named pipe a COPY INTO ... FROM STDIN reads from
+    protected static native String monetdbe_mkfifo(String path);
+
+    //Opens the read end of a named pipe without blocking, which releases a writer blocked opening it. Returns -1 on failure
+    protected static native int monetdbe_open_fifo(String path);
+
+    //Closes a read end opened by monetdbe_open_fifo, a writer of the pipe then fails writing
+    protected static native void monetdbe_close_fifo(int fd);
+
+    //Describes a column as an unfetched MonetColumn, null if the column can't be fetched
+    protected static native MonetColumn monetdbe_result_fetch_meta(ByteBuffer nativeResult, int column);
+
+    //Handle to a column fetched into the engine, null if it can't be fetched (called with the connection's native lock held)
+    protected static native ByteBuffer monetdbe_result_fetch(ByteBuffer nativeResult, int column);
+
+    //Converts rows [offset, offset + count) of a fetched column, a negative count converts all rows from offset
+    protected static native MonetColumn monetdbe_result_convert(ByteBuffer nativeColumn, int offset, int count);
 
     protected static native String monetdbe_result_cleanup(ByteBuffer db, ByteBuffer nativeResult);
 
@@ -97,6 +119,12 @@ public class MonetNative {
 
     protected static native String monetdbe_execute(ByteBuffer stmt, MonetPreparedStatement statement, boolean largeUpdate, int maxrows);
 
+    //Binds the first row of a MonetParameterBatch and executes the statement
+    protected static native String monetdbe_execute_row(ByteBuffer db, ByteBuffer stmt, int[] types, ByteBuffer[] data, ByteBuffer[] offsets, ByteBuffer[] nulls, MonetPreparedStatement statement, boolean largeUpdate, int maxrows);
+
+    //Binds and executes every row of a MonetParameterBatch, writing the update count of each executed row into counts. Stops at the first error
+    protected static native String monetdbe_execute_batch(ByteBuffer db, ByteBuffer stmt, int[] types, ByteBuffer[] data, ByteBuffer[] offsets, ByteBuffer[] nulls, int rows, long[] counts);
+
     protected static native String monetdbe_cleanup_statement(ByteBuffer db, ByteBuffer stmt);
 
     protected static native String monetdbe_bind_bool(ByteBuffer stmt, int param, boolean data);
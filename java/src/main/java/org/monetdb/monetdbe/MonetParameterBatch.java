@@ -0,0 +1,387 @@
+package org.monetdb.monetdbe;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+/**
+ * Parameter rows of a prepared statement, stored per parameter in direct buffers laid out for its monetdbe type.
+ * The native side binds the parameters of a row straight from these buffers, so executing a row or a whole
+ * batch is a single JNI call.
+ *
+ * Fixed width parameters are a flat array in native byte order, strings and BLOBs a heap of bytes with the
+ * start of row i at offset i and its end at offset i + 1 (strings are NUL terminated), DATE parameters epoch days,
+ * TIME parameters microseconds of the day and TIMESTAMP parameters epoch microseconds. Null rows have a 1 in
+ * the null buffer of the parameter, which is only allocated once a parameter has a null row.
+ */
+final class MonetParameterBatch {
+    private static final int INITIAL_ROWS = 16;
+
+    final int[] types;
+    final ByteBuffer[] data;
+    final ByteBuffer[] offsets;
+    final ByteBuffer[] nulls;
+    private final int[] heapSizes;
+    private int rows;
+    private int capacity;
+
+    MonetParameterBatch(int[] types) {
+        this.types = types;
+        this.data = new ByteBuffer[types.length];
+        this.offsets = new ByteBuffer[types.length];
+        this.nulls = new ByteBuffer[types.length];
+        this.heapSizes = new int[types.length];
+    }
+
+    int getRowCount() {
+        return rows;
+    }
+
+    //Keeps the buffers, so a statement executing one row at a time doesn't allocate them again
+    void clear() {
+        rows = 0;
+        java.util.Arrays.fill(heapSizes, 0);
+    }
+
+    //Adds the parameter values as the next row, a value which doesn't fit its parameter's type leaves the batch as it was
+    void add(Object[] values) throws SQLException {
+        ensureCapacity(rows + 1);
+        int parameter = 0;
+        try {
+            for (; parameter < types.length; parameter++) {
+                put(parameter, values[parameter]);
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (int i = 0; i < parameter; i++) {
+                if (isHeapType(types[i])) {
+                    heapSizes[i] = offsets[i].getInt(4 * rows);
+                }
+            }
+            if (e instanceof SQLException) {
+                throw (SQLException) e;
+            }
+            throw new SQLException("Parameter " + (parameter + 1) + " can't be set to " + values[parameter] + ": " + e.getMessage(), "22018");
+        }
+        rows++;
+    }
+
+    private void put(int parameter, Object value) throws SQLException {
+        int type = types[parameter];
+        if (value == null) {
+            if (nulls[parameter] == null) {
+                nulls[parameter] = allocate(capacity);
+            }
+            nulls[parameter].put(rows, (byte) 1);
+            if (isHeapType(type)) {
+                offsets[parameter].putInt(4 * rows, heapSizes[parameter]);
+                offsets[parameter].putInt(4 * (rows + 1), heapSizes[parameter]);
+            }
+            return;
+        }
+        if (nulls[parameter] != null) {
+            nulls[parameter].put(rows, (byte) 0);
+        }
+
+        ByteBuffer buffer = data[parameter];
+        switch (type) {
+            case 0:
+                buffer.put(rows, toBoolean(value) ? (byte) 1 : 0);
+                break;
+            case 1:
+                buffer.put(rows, (byte) toLong(parameter, value, Byte.MIN_VALUE, Byte.MAX_VALUE));
+                break;
+            case 2:
+                buffer.putShort(2 * rows, (short) toLong(parameter, value, Short.MIN_VALUE, Short.MAX_VALUE));
+                break;
+            case 3:
+                buffer.putInt(4 * rows, (int) toLong(parameter, value, Integer.MIN_VALUE, Integer.MAX_VALUE));
+                break;
+            case 4:
+                buffer.putLong(8 * rows, toLong(parameter, value, Long.MIN_VALUE, Long.MAX_VALUE));
+                break;
+            case 5: {
+                BigInteger big = toBigInteger(parameter, value);
+                boolean little = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+                buffer.putLong(16 * rows + (little ? 0 : 8), big.longValue());
+                buffer.putLong(16 * rows + (little ? 8 : 0), big.shiftRight(64).longValue());
+                break;
+            }
+            case 7:
+                buffer.putFloat(4 * rows, (float) toDouble(parameter, value));
+                break;
+            case 8:
+                buffer.putDouble(8 * rows, toDouble(parameter, value));
+                break;
+            case 9:
+                putHeap(parameter, toString(value).getBytes(StandardCharsets.UTF_8), true);
+                break;
+            case 10:
+                putHeap(parameter, toBytes(parameter, value), false);
+                break;
+            case 11:
+                buffer.putInt(4 * rows, Math.toIntExact(toLocalDate(parameter, value).toEpochDay()));
+                break;
+            case 12:
+                buffer.putLong(8 * rows, toLocalTime(parameter, value).toNanoOfDay() / 1000);
+                break;
+            case 13: {
+                LocalDateTime dateTime = toLocalDateTime(parameter, value);
+                buffer.putLong(8 * rows, Math.addExact(Math.multiplyExact(dateTime.toEpochSecond(ZoneOffset.UTC), 1000000L), dateTime.getNano() / 1000));
+                break;
+            }
+            default:
+                throw new SQLException("Parameter " + (parameter + 1) + " has an unsupported type", "M1M05");
+        }
+    }
+
+    private void putHeap(int parameter, byte[] bytes, boolean terminate) {
+        int start = heapSizes[parameter];
+        int end = start + bytes.length + (terminate ? 1 : 0);
+        if (end > data[parameter].capacity()) {
+            data[parameter] = grow(data[parameter], start, Math.max(end, 2 * data[parameter].capacity()));
+        }
+        ByteBuffer heap = data[parameter].duplicate();
+        heap.position(start);
+        heap.put(bytes);
+        if (terminate) {
+            heap.put((byte) 0);
+        }
+        heapSizes[parameter] = end;
+        offsets[parameter].putInt(4 * rows, start);
+        offsets[parameter].putInt(4 * (rows + 1), end);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(required, capacity == 0 ? INITIAL_ROWS : 2 * capacity);
+        for (int i = 0; i < types.length; i++) {
+            if (isHeapType(types[i])) {
+                if (data[i] == null) {
+                    data[i] = allocate(32 * newCapacity);
+                }
+                offsets[i] = grow(offsets[i], 4 * (rows + 1), 4 * (newCapacity + 1));
+            }
+            else {
+                int width = types[i] == 11 ? 4 : types[i] == 12 || types[i] == 13 ? 8 : MonetTypes.getMonetSize(types[i]);
+                data[i] = grow(data[i], width * rows, width * newCapacity);
+            }
+            if (nulls[i] != null) {
+                nulls[i] = grow(nulls[i], rows, newCapacity);
+            }
+        }
+        capacity = newCapacity;
+    }
+
+    private static boolean isHeapType(int type) {
+        return type == 9 || type == 10;
+    }
+
+    //Copies the used bytes of a buffer into a larger one
+    private static ByteBuffer grow(ByteBuffer buffer, int used, int size) {
+        ByteBuffer grown = allocate(size);
+        if (buffer != null && used > 0) {
+            ByteBuffer old = buffer.duplicate();
+            old.clear().limit(used);
+            grown.put(old).clear();
+        }
+        return grown;
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        else if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        }
+        return Boolean.parseBoolean(value.toString());
+    }
+
+    //Integer parameters only take values they hold exactly. DECIMAL parameters are bound as their unscaled integer,
+    //but monetdbe_statement doesn't tell their scale (nor that they are decimals), so a BigDecimal can't be scaled
+    private static long toLong(int parameter, Object value, long min, long max) throws SQLException {
+        long result;
+        if (value instanceof BigDecimal) {
+            throw decimalNotSupported(parameter);
+        }
+        else if (value instanceof BigInteger) {
+            BigInteger big = (BigInteger) value;
+            if (big.bitLength() > 63) {
+                throw outOfRange(parameter, value);
+            }
+            result = big.longValue();
+        }
+        else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            //Also rejects NaN, which is not equal to itself
+            if (d != Math.rint(d) || d < -0x1p63 || d >= 0x1p63) {
+                throw outOfRange(parameter, value);
+            }
+            result = (long) d;
+        }
+        else if (value instanceof Number) {
+            result = ((Number) value).longValue();
+        }
+        else if (value instanceof Boolean) {
+            result = (Boolean) value ? 1 : 0;
+        }
+        else if (value instanceof String) {
+            result = Long.parseLong(((String) value).trim());
+        }
+        else {
+            throw notConvertible(parameter, value);
+        }
+        if (result < min || result > max) {
+            throw outOfRange(parameter, value);
+        }
+        return result;
+    }
+
+    private static BigInteger toBigInteger(int parameter, Object value) throws SQLException {
+        BigInteger result;
+        if (value instanceof BigInteger) {
+            result = (BigInteger) value;
+        }
+        else if (value instanceof BigDecimal) {
+            throw decimalNotSupported(parameter);
+        }
+        else if (value instanceof String) {
+            result = new BigInteger(((String) value).trim());
+        }
+        else {
+            return BigInteger.valueOf(toLong(parameter, value, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        if (result.bitLength() > 127) {
+            throw outOfRange(parameter, value);
+        }
+        return result;
+    }
+
+    private static double toDouble(int parameter, Object value) throws SQLException {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        else if (value instanceof String) {
+            return Double.parseDouble(((String) value).trim());
+        }
+        throw notConvertible(parameter, value);
+    }
+
+    private static String toString(Object value) throws SQLException {
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            return clob.getSubString(1, Math.toIntExact(clob.length()));
+        }
+        return value.toString();
+    }
+
+    private static byte[] toBytes(int parameter, Object value) throws SQLException {
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        else if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            return blob.getBytes(1, Math.toIntExact(blob.length()));
+        }
+        throw notConvertible(parameter, value);
+    }
+
+    private static LocalDate toLocalDate(int parameter, Object value) throws SQLException {
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        }
+        else if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toLocalDate();
+        }
+        else if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        else if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate();
+        }
+        else if (value instanceof String) {
+            return parse(parameter, value, LocalDate::parse);
+        }
+        throw notConvertible(parameter, value);
+    }
+
+    private static LocalTime toLocalTime(int parameter, Object value) throws SQLException {
+        if (value instanceof Time) {
+            return ((Time) value).toLocalTime();
+        }
+        else if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toLocalTime();
+        }
+        else if (value instanceof LocalTime) {
+            return (LocalTime) value;
+        }
+        else if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalTime();
+        }
+        else if (value instanceof String) {
+            return parse(parameter, value, LocalTime::parse);
+        }
+        throw notConvertible(parameter, value);
+    }
+
+    private static LocalDateTime toLocalDateTime(int parameter, Object value) throws SQLException {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        else if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().atStartOfDay();
+        }
+        else if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        else if (value instanceof LocalDate) {
+            return ((LocalDate) value).atStartOfDay();
+        }
+        else if (value instanceof String) {
+            return parse(parameter, value, s -> LocalDateTime.parse(s.replace(' ', 'T')));
+        }
+        throw notConvertible(parameter, value);
+    }
+
+    private static <T> T parse(int parameter, Object value, java.util.function.Function<String, T> parser) throws SQLException {
+        try {
+            return parser.apply(((String) value).trim());
+        } catch (DateTimeException e) {
+            throw new SQLException("Parameter " + (parameter + 1) + " can't be parsed from " + value, "22007");
+        }
+    }
+
+    private static SQLException outOfRange(int parameter, Object value) {
+        return new SQLException("Parameter " + (parameter + 1) + " can't hold " + value + " exactly", "22003");
+    }
+
+    private static SQLException decimalNotSupported(int parameter) {
+        return new SQLFeatureNotSupportedException("Parameter " + (parameter + 1) + " is an integer or DECIMAL parameter, whose scale is not known, so a BigDecimal can't be bound to it", "0A000");
+    }
+
+    private static SQLException notConvertible(int parameter, Object value) {
+        return new SQLException("Parameter " + (parameter + 1) + " can't be set to a " + value.getClass().getName(), "M1M05");
+    }
+}
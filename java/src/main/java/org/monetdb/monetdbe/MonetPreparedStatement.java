@@ -12,27 +12,37 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.List;
 
 public class MonetPreparedStatement extends MonetStatement implements PreparedStatement {
     //Native pointer to C statement
     protected ByteBuffer statementNative;
+    //Part of the result cache key, with the parameters
+    private final String sql;
     private MonetParameterMetaData parameterMetaData;
 
     protected int nParams;
     protected int[] monetdbeTypes;
 
-    //For executeBatch functions
+    //Values of the parameters, which are bound when the statement is executed
     private Object[] parameters;
-    private List<Object[]> parametersBatch = null;
+    private boolean[] parametersSet;
+    //Rows added with addBatch, executeBatch binds and executes all of them in one native call
+    private MonetParameterBatch parametersBatch;
+    //The current parameter values laid out for binding, reused by every execute
+    private MonetParameterBatch boundRow;
 
     public MonetPreparedStatement(MonetConnection conn, String sql) {
-        super(conn);
+        this(conn, sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT);
+    }
+
+    public MonetPreparedStatement(MonetConnection conn, String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+        super(conn, resultSetType, resultSetConcurrency, resultSetHoldability);
+        this.sql = sql;
 
         //nParams, monetdbeTypes and statement Native are set within monetdbe_prepare
-        String error_msg = MonetNative.monetdbe_prepare(conn.getDbNative(),sql, this);
+        String error_msg = conn.callNative(() -> MonetNative.monetdbe_prepare(conn.getDbNative(),sql, this));
 
         //Failed prepare, destroy statement
         if (this.statementNative == null || error_msg != null) {
@@ -47,6 +57,7 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
         if (nParams >= 0) {
             this.parameterMetaData = new MonetParameterMetaData(nParams,monetdbeTypes);
             this.parameters = new Object[nParams];
+            this.parametersSet = new boolean[nParams];
         }
     }
 
@@ -60,8 +71,10 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
         this.resultSet = null;
         this.updateCount = -1;
 
-        //ResultSet and UpdateCount is set within monetdbe_execute
-        String error_msg = MonetNative.monetdbe_execute(statementNative,this, false, getMaxRows());
+        //ResultSet and UpdateCount is set within monetdbe_execute_row
+        MonetParameterBatch row = bindParameters();
+        int maxRows = getMaxRows();
+        String error_msg = executeWithResultCache(sql, parameters, false, () -> conn.callNative(() -> MonetNative.monetdbe_execute_row(conn.getDbNative(), statementNative, row.types, row.data, row.offsets, row.nulls, this, false, maxRows)));
         if (error_msg != null) {
             this.updateCount = lastUpdateCount;
             this.resultSet = lastResultSet;
@@ -113,12 +126,12 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
     @Override
     public void addBatch() throws SQLException {
         checkNotClosed();
+        checkParametersSet();
         //This allows us to add multiple "versions" of the same query, using different parameters
         if (parametersBatch == null) {
-            parametersBatch = new ArrayList<>();
+            parametersBatch = new MonetParameterBatch(parameterTypes());
         }
         parametersBatch.add(parameters);
-        parameters = new Object[nParams];
     }
 
     /** override the addBatch from the Statement to throw an SQLException */
@@ -130,79 +143,70 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
     //Overrides Statement's implementation, which batches different queries instead of different parameters for same query
     @Override
     public int[] executeBatch() throws SQLException {
-        if (parametersBatch == null || parametersBatch.isEmpty()) {
-            return new int[0];
-        }
-        int[] counts = new int[parametersBatch.size()];
-        int count = -1;
-        Object[] cur_batch;
-
-        for (int i = 0; i < parametersBatch.size(); i++) {
-            //Get batch of parameters
-            cur_batch = parametersBatch.get(i);
-
-            for (int j = 0; j < nParams; j++) {
-                //Set each parameter in current batch
-                setObject(j+1,cur_batch[j]);
-            }
-
-            try {
-                count = executeUpdate();
-            } catch (SQLException e) {
-                //Query returned a resultSet, throw BatchUpdateException
-                throw new BatchUpdateException();
-            }
-            if (count >= 0) {
-                counts[i] = count;
-            }
-            else {
-                counts[i] = Statement.SUCCESS_NO_INFO;
-            }
+        long[] counts;
+        try {
+            counts = executeParameterBatch();
+        } catch (BatchUpdateException e) {
+            throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), toIntCounts(e.getLargeUpdateCounts()), null);
         }
-        clearBatch();
-        return counts;
+        return toIntCounts(counts);
     }
 
     //Overrides Statement's implementation, which batches different queries instead of different parameters for same query
     public long[] executeLargeBatch() throws SQLException {
-        if (parametersBatch == null || parametersBatch.isEmpty()) {
+        return executeParameterBatch();
+    }
+
+    //All rows are bound and executed by a single native call, which stops at the first failing row. The exception
+    //holds the counts of the rows executed before it. In auto-commit mode the batch is one transaction, so those
+    //rows are rolled back as well and the exception holds no counts
+    private long[] executeParameterBatch() throws SQLException {
+        checkNotClosed();
+        if (parametersBatch == null || parametersBatch.getRowCount() == 0) {
             return new long[0];
         }
-        long[] counts = new long[parametersBatch.size()];
-        long count = -1;
-        Object[] cur_batch;
-
-        for (int i = 0; i < parametersBatch.size(); i++) {
-            //Get batch of parameters
-            cur_batch = parametersBatch.get(i);
-
-            for (int j = 0; j < nParams; j++) {
-                //Set each parameter in current batch
-                setObject(j+1,cur_batch[j]);
-            }
+        int rows = parametersBatch.getRowCount();
+        long[] counts = new long[rows];
+        Arrays.fill(counts, Statement.EXECUTE_FAILED);
+        String error_msg;
+        try {
+            error_msg = conn.callNative(() -> MonetNative.monetdbe_execute_batch(conn.getDbNative(), statementNative, parametersBatch.types, parametersBatch.data, parametersBatch.offsets, parametersBatch.nulls, rows, counts));
+        } finally {
+            parametersBatch.clear();
+        }
 
-            try {
-                count = executeLargeUpdate();
-            } catch (SQLException e) {
-                //Query returned a resultSet, throw BatchUpdateException
-                throw new BatchUpdateException();
-            }
-            if (count >= 0) {
-                counts[i] = count;
-            }
-            else {
-                counts[i] = Statement.SUCCESS_NO_INFO;
+        int executed = 0;
+        while (executed < rows && counts[executed] != Statement.EXECUTE_FAILED) {
+            if (counts[executed] < 0) {
+                counts[executed] = Statement.SUCCESS_NO_INFO;
             }
+            executed++;
+        }
+        MonetResultCache cache = conn.getInvalidatedResultCache();
+        if (cache != null && executed > 0) {
+            conn.afterStatement(cache, MonetScript.words(sql));
+        }
+        if (error_msg != null) {
+            throw new BatchUpdateException(error_msg, "HY000", 0, Arrays.copyOf(counts, executed), null);
         }
-        clearBatch();
         return counts;
     }
 
+    private static int[] toIntCounts(long[] counts) {
+        int[] intCounts = new int[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            intCounts[i] = (int) Math.min(counts[i], Integer.MAX_VALUE);
+        }
+        return intCounts;
+    }
+
     //Overrides Statement's implementation, which batches different queries instead of different parameters for same query
     @Override
     public void clearBatch() throws SQLException {
         checkNotClosed();
-        parametersBatch = null;
+        if (parametersBatch != null) {
+            parametersBatch.clear();
+        }
     }
 
     @Override
@@ -214,8 +218,10 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
         this.resultSet = null;
         this.largeUpdateCount = -1;
 
-        //ResultSet and UpdateCount is set within monetdbe_execute
-        String error_msg = MonetNative.monetdbe_execute(statementNative,this, true,getMaxRows());
+        //ResultSet and UpdateCount is set within monetdbe_execute_row
+        MonetParameterBatch row = bindParameters();
+        int maxRows = getMaxRows();
+        String error_msg = executeWithResultCache(sql, parameters, true, () -> conn.callNative(() -> MonetNative.monetdbe_execute_row(conn.getDbNative(), statementNative, row.types, row.data, row.offsets, row.nulls, this, true, maxRows)));
         if (error_msg != null) {
             this.largeUpdateCount = lastUpdateCount;
             this.resultSet = lastResultSet;
@@ -245,9 +251,41 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
     @Override
     public void clearParameters() throws SQLException {
         checkNotClosed();
-        //Verify if I should use the cleanup function or if I should set every parameter to NULL
-        //This also cleans up the Prepared Statement
-        MonetNative.monetdbe_cleanup_statement(conn.getDbNative(),statementNative);
+        Arrays.fill(parameters, null);
+        Arrays.fill(parametersSet, false);
+    }
+
+    //The value is converted to the parameter's type when the statement is executed or added to the batch
+    private void setParameter(int parameterIndex, Object x) throws SQLException {
+        checkNotClosed();
+        if (parameterIndex < 1 || parameterIndex > nParams) {
+            throw new SQLException("parameterIndex is not valid");
+        }
+        parameters[parameterIndex-1] = x;
+        parametersSet[parameterIndex-1] = true;
+    }
+
+    private void checkParametersSet() throws SQLException {
+        for (int i = 0; i < nParams; i++) {
+            if (!parametersSet[i]) {
+                throw new SQLException("Parameter " + (i + 1) + " is not set", "07001");
+            }
+        }
+    }
+
+    private int[] parameterTypes() {
+        return monetdbeTypes != null ? monetdbeTypes : new int[0];
+    }
+
+    //Lays the current parameter values out for monetdbe_execute_row
+    private MonetParameterBatch bindParameters() throws SQLException {
+        checkParametersSet();
+        if (boundRow == null) {
+            boundRow = new MonetParameterBatch(parameterTypes());
+        }
+        boundRow.clear();
+        boundRow.add(parameters);
+        return boundRow;
     }
 
     //Set objects
@@ -486,171 +524,91 @@ public class MonetPreparedStatement extends MonetStatement implements PreparedSt
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
-        checkNotClosed();
-        int monettype = MonetTypes.getMonetTypeFromSQL(sqlType);
-        MonetNative.monetdbe_bind_null(conn.getDbNative(),monettype,statementNative,parameterIndex-1);
-        parameters[parameterIndex-1] = null;
+        setParameter(parameterIndex, null);
     }
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_bool(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setByte(int parameterIndex, byte x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_byte(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_short(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_int(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_long(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_float(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_double(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-        checkNotClosed();
-        Number numberBind;
-        //Check unscaled value data type
-        BigInteger unscaled = x.unscaledValue();
-        int type;
-        int bitLenght = unscaled.bitLength();
-
-        if (bitLenght <= 8) {
-            numberBind = unscaled.byteValueExact();
-            type = 1;
-        }
-        else if (bitLenght <= 16) {
-            numberBind = unscaled.shortValueExact();
-            type = 2;
-        }
-        else if (bitLenght <= 32) {
-            numberBind = unscaled.intValueExact();
-            type = 3;
-        }
-        else if (bitLenght <= 64) {
-            numberBind = unscaled.longValueExact();
-            type = 4;
-        }
-        else {
-            numberBind = unscaled;
-            type = 5;
-        }
-        //TODO Implement the C function
-        MonetNative.monetdbe_bind_decimal(statementNative,numberBind,type,x.scale(),parameterIndex-1);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
-    //TODO Implement the C function
     public void setHugeInteger(int parameterIndex, BigInteger x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_hugeint(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
-        checkNotClosed();
-        MonetNative.monetdbe_bind_string(statementNative,parameterIndex-1,x);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setDate(int parameterIndex, Date x) throws SQLException {
-        checkNotClosed();
-        LocalDate localDate = x.toLocalDate();
-        MonetNative.monetdbe_bind_date(statementNative,parameterIndex-1,(short)localDate.getYear(),(byte)localDate.getMonthValue(),(byte)localDate.getDayOfMonth());
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setTime(int parameterIndex, Time x) throws SQLException {
-        checkNotClosed();
-        LocalTime localTime = x.toLocalTime();
-        MonetNative.monetdbe_bind_time(statementNative,parameterIndex-1,localTime.getHour(),localTime.getMinute(),localTime.getSecond(),localTime.getNano()*1000);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-        checkNotClosed();
-        LocalDateTime localDateTime = x.toLocalDateTime();
-        MonetNative.monetdbe_bind_timestamp(statementNative,parameterIndex-1,localDateTime.getYear(),localDateTime.getMonthValue(),localDateTime.getDayOfMonth(),localDateTime.getHour(),localDateTime.getMinute(),localDateTime.getSecond(),localDateTime.getNano()*1000);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-        MonetNative.monetdbe_bind_blob(statementNative,parameterIndex-1,x,x.length);
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setURL(int parameterIndex, URL x) throws SQLException {
-        checkNotClosed();
-        setString(parameterIndex,x.toString());
-        parameters[parameterIndex-1] = x;
+        setParameter(parameterIndex, x != null ? x.toString() : null);
     }
 
     @Override
     public void setBlob(int parameterIndex, Blob x) throws SQLException {
-        checkNotClosed();
-        long size = x.length();
-        if (size > 0) {
-            byte[] blob_data = x.getBytes(1,(int) size);
-            MonetNative.monetdbe_bind_blob(statementNative,parameterIndex-1,blob_data,x.length());
-            parameters[parameterIndex-1] = x;
-        }
-        else {
-            setNull(parameterIndex,Types.BLOB);
-        }
+        setParameter(parameterIndex, x);
     }
 
     @Override
     public void setClob(int parameterIndex, Clob x) throws SQLException {
-        checkNotClosed();
-        long size = x.length();
-        if (size > 0) {
-            MonetNative.monetdbe_bind_string(statementNative,parameterIndex-1,x.toString());
-            parameters[parameterIndex-1] = x;
-        }
-        else {
-            setNull(parameterIndex,Types.BLOB);
-        }
+        setParameter(parameterIndex, x);
     }
 
     @Override
@@ -0,0 +1,284 @@
+package org.monetdb.monetdbe;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.time.temporal.Temporal;
+import java.util.*;
+
+/**
+ * Cache of query results, enabled with the result_cache_size connection property (the maximum
+ * number of bytes of cached column data, 0 disables the cache).
+ *
+ * Results are keyed on the SQL text, the bound parameters, maxRows and the schema set with SET SCHEMA.
+ * A hit returns a result set over the cached columns without running the query, the least recently used
+ * results are evicted when the cache is full. Connections to the same database directory or remote
+ * database share one cache, in-memory databases have a cache of their own.
+ *
+ * Every statement issued through the driver which may change data (DML, DDL, CALL and the like) invalidates
+ * the whole cache. Views, triggers and functions can read or change other tables than the ones a statement
+ * names, so the cached results which read the changed rows can't be told from the SQL text. Changes made
+ * outside of the driver are not seen. Results are only cached in auto-commit mode and outside of transactions,
+ * and only for statements starting with SELECT, WITH or VALUES. Results which are larger than the cache are
+ * not copied for it. Queries reading volatile values (such as now() or a sequence) shouldn't be run on a
+ * connection with the cache enabled.
+ */
+public final class MonetResultCache {
+    //Caches of directory and remote databases, shared by the connections to the same database
+    private static final Map<String, MonetResultCache> sharedCaches = new HashMap<>();
+
+    private final String database;
+    private final long maxBytes;
+    private int connections;
+
+    //Access ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    //Bumped for every change, results read before the change are not stored afterwards
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private MonetResultCache(String database, long maxBytes) {
+        this.database = database;
+        this.maxBytes = maxBytes;
+    }
+
+    //Cache for a new connection, database is null for in-memory databases
+    static MonetResultCache acquire(String database, long maxBytes) {
+        if (database == null) {
+            return new MonetResultCache(null, maxBytes);
+        }
+        synchronized (sharedCaches) {
+            MonetResultCache cache = sharedCaches.get(database);
+            if (cache == null) {
+                cache = new MonetResultCache(database, maxBytes);
+                sharedCaches.put(database, cache);
+            }
+            cache.connections++;
+            return cache;
+        }
+    }
+
+    //The shared cache of a database, for connections which don't cache results themselves but must invalidate them
+    static MonetResultCache find(String database) {
+        if (database == null) {
+            return null;
+        }
+        synchronized (sharedCaches) {
+            return sharedCaches.get(database);
+        }
+    }
+
+    //Called when a connection using the cache is closed, the last one drops the cached results
+    void release() {
+        if (database == null) {
+            clear();
+            return;
+        }
+        synchronized (sharedCaches) {
+            if (--connections == 0) {
+                sharedCaches.remove(database);
+                clear();
+            }
+        }
+    }
+
+    synchronized MonetResultSet get(Key key, MonetStatement statement) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new MonetResultSet(statement, entry.columns, entry.rows, entry.name);
+    }
+
+    //Version of the cached data, taken before a query runs
+    synchronized long version() {
+        return version;
+    }
+
+    //Stores the result, unless the data changed while the query ran
+    void put(Key key, long queryVersion, MonetResultSet resultSet) throws SQLException {
+        //The columns are copied outside of the lock, so other connections can use the cache meanwhile.
+        //Results larger than the cache are left as they are
+        MonetColumn[] columns = resultSet.getJavaColumns(maxBytes);
+        if (columns == null) {
+            return;
+        }
+        long size = 0;
+        for (MonetColumn column : columns) {
+            size += column.getMemorySize();
+        }
+
+        synchronized (this) {
+            if (queryVersion != version) {
+                return;
+            }
+            Entry previous = entries.put(key, new Entry(columns, resultSet.getRowCount(), resultSet.getName(), size));
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            bytes += size;
+            //The new entry is the most recently used one, so it is never evicted here
+            Iterator<Entry> it = entries.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Entry evicted = it.next();
+                it.remove();
+                bytes -= evicted.bytes;
+                evictions++;
+            }
+        }
+    }
+
+    synchronized void invalidate() {
+        version++;
+        invalidations += entries.size();
+        entries.clear();
+        bytes = 0;
+    }
+
+    /** Drops all cached results, the counters are kept */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /** @return the number of results dropped to make room for new ones */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /** @return the number of results dropped because data was changed */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /** @return the bytes of column data held by the cached results */
+    public synchronized long getSize() {
+        return bytes;
+    }
+
+    public long getMaxSize() {
+        return maxBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MonetResultCache[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", invalidations=" + invalidations + ", entries=" + entries.size() + ", bytes=" + bytes + "/" + maxBytes + "]";
+    }
+
+    //Statements whose results are cached
+    static boolean isQuery(List<String> words) {
+        if (words.isEmpty()) {
+            return false;
+        }
+        String first = words.get(0);
+        return first.equals("select") || first.equals("with") || first.equals("values");
+    }
+
+    //Queries, transaction control and session settings change no data, any other statement may
+    static boolean changesData(List<String> words) {
+        if (words.isEmpty() || isQuery(words)) {
+            return false;
+        }
+        switch (words.get(0)) {
+            case "start":
+            case "begin":
+            case "commit":
+            case "rollback":
+            case "savepoint":
+            case "release":
+            case "set":
+            case "explain":
+            case "plan":
+            case "trace":
+            case "prepare":
+            case "declare":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static final class Entry {
+        final MonetColumn[] columns;
+        final int rows;
+        final String name;
+        final long bytes;
+
+        Entry(MonetColumn[] columns, int rows, String name, long bytes) {
+            this.columns = columns;
+            this.rows = rows;
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+
+    static final class Key {
+        private final String schema;
+        private final String sql;
+        private final int maxRows;
+        private final List<Object> parameters;
+
+        private Key(String schema, String sql, int maxRows, List<Object> parameters) {
+            this.schema = schema;
+            this.sql = sql;
+            this.maxRows = maxRows;
+            this.parameters = parameters;
+        }
+
+        //Returns null if a parameter can't be compared by value (streams, Blob or Clob objects)
+        static Key of(String schema, String sql, int maxRows, Object[] parameters) {
+            List<Object> values = new ArrayList<>();
+            if (parameters != null) {
+                for (Object parameter : parameters) {
+                    if (parameter instanceof byte[]) {
+                        values.add(ByteBuffer.wrap(((byte[]) parameter).clone()));
+                    }
+                    else if (parameter == null || parameter instanceof Number || parameter instanceof String || parameter instanceof Boolean
+                            || parameter instanceof java.util.Date || parameter instanceof Temporal || parameter instanceof java.net.URL) {
+                        //Mutable dates are copied, so changing them after the query doesn't change the key
+                        values.add(parameter instanceof java.util.Date ? ((java.util.Date) parameter).clone() : parameter);
+                    }
+                    else {
+                        return null;
+                    }
+                }
+            }
+            return new Key(schema, sql, maxRows, values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return maxRows == other.maxRows && sql.equals(other.sql) && Objects.equals(schema, other.schema) && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(schema, sql, maxRows, parameters);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.monetdb.monetdbe;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fetches the columns of a native result, or a window of rows of them, into MonetColumn objects.
+ *
+ * Forward-only result sets with a fetch size use it to convert the next window of rows on a
+ * background thread while the caller reads the current one, at most one window is prefetched at a time.
+ * All access to the native result goes through this class, so the native result is only cleaned up after
+ * any running fetch has finished. Every native call holds the connection's native lock, so a prefetch
+ * never runs at the same time as a query or fetch of the caller on the same connection.
+ *
+ * Windows with at least parallel_conversion_rows rows and parallel_conversion_columns columns are
+ * converted one column per task on the connection's conversion pool. monetdbe_result_fetch uses the
+ * client state of the database, so the columns are fetched one after another under the connection's
+ * native lock and only the conversion of the fetched columns, which don't share memory, runs in parallel.
+ */
+final class MonetResultFetcher {
+    //Shared by all result sets, the threads are daemons so they don't keep the JVM alive
+    private static final ExecutorService prefetchExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "monetdbe-result-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ByteBuffer nativeResult;
+    //Descriptions of the columns, filled in when a column is described or fetched
+    private final MonetColumn[] metaColumns;
+    private final MonetColumn[] undescribedColumns;
+    private final MonetConnection conn;
+    //Fetches hold the read lock, so they can run in parallel, cleaning up the result takes the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean closed = false;
+    //Blobs handed out over the native result's memory, which are copied to the Java heap before the result is
+    //cleaned up. Weakly held, so only the blobs which are still referenced are copied
+    private final Set<MonetBlob> liveBlobs = Collections.newSetFromMap(new WeakHashMap<>());
+
+    //Window of rows being prefetched in the background (only used by the thread reading the result set)
+    private Future<MonetColumn[]> prefetch;
+    private AtomicBoolean prefetchCancelled;
+    private int prefetchStart = -1;
+
+    MonetResultFetcher(ByteBuffer nativeResult, int ncols, MonetConnection conn) {
+        this.nativeResult = nativeResult;
+        this.metaColumns = new MonetColumn[ncols];
+        this.undescribedColumns = new MonetColumn[ncols];
+        for (int i = 0; i < ncols; i++) {
+            undescribedColumns[i] = MonetColumn.undescribed(this, i);
+        }
+        this.conn = conn;
+    }
+
+    //Fetcher of rows which are already in Java memory, such as a cached result, there is no native result left to fetch from
+    static MonetResultFetcher released(MonetColumn[] columns) {
+        MonetResultFetcher fetcher = new MonetResultFetcher(null, columns.length, null);
+        for (int i = 0; i < columns.length; i++) {
+            fetcher.metaColumns[i] = MonetColumn.unfetched(columns[i].getName(), columns[i].getMonetdbeType(), columns[i].getScale());
+        }
+        fetcher.closed = true;
+        return fetcher;
+    }
+
+    //Columns which still have to be fetched, holding only the column metadata
+    MonetColumn[] unfetchedColumns() {
+        synchronized (metaColumns) {
+            MonetColumn[] unfetched = new MonetColumn[metaColumns.length];
+            for (int i = 0; i < metaColumns.length; i++) {
+                unfetched[i] = metaColumns[i] != null ? metaColumns[i] : undescribedColumns[i];
+            }
+            return unfetched;
+        }
+    }
+
+    //The name, type and scale of a column, fetched from the native result the first time they are needed
+    MonetColumn describe(int column) throws SQLException {
+        synchronized (metaColumns) {
+            if (metaColumns[column] != null) {
+                return metaColumns[column];
+            }
+        }
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("ResultSet is closed", "M1M20");
+            }
+            MonetColumn described = conn.callNative(() -> MonetNative.monetdbe_result_fetch_meta(nativeResult, column));
+            if (described == null) {
+                throw new SQLException("Column " + (column + 1) + " could not be fetched");
+            }
+            synchronized (metaColumns) {
+                metaColumns[column] = described;
+            }
+            return described;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Fetches rows [offset, offset + count) of a column, a negative count fetches all rows from offset
+    MonetColumn fetch(int column, int offset, int count) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("ResultSet is closed", "M1M20");
+            }
+            return convert(column, fetchNative(column), offset, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Fetches rows [offset, offset + count) of the selected columns, the other columns only hold their metadata
+    MonetColumn[] fetchColumns(boolean[] selectedColumns, int offset, int count) throws SQLException {
+        MonetColumn[] fetched = unfetchedColumns();
+        List<Integer> columns = new ArrayList<>();
+        for (int i = 0; i < selectedColumns.length; i++) {
+            if (selectedColumns[i]) {
+                columns.add(i);
+            }
+        }
+
+        ForkJoinPool pool = conn != null ? conn.getConversionPool() : null;
+        if (pool == null || count < conn.getParallelConversionRows() || columns.size() < conn.getParallelConversionColumns()) {
+            for (int column : columns) {
+                fetched[column] = fetch(column, offset, count);
+            }
+            return fetched;
+        }
+
+        //The read lock is held until all conversions are done, the tasks read the native columns without taking it
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("ResultSet is closed", "M1M20");
+            }
+            List<Callable<MonetColumn>> tasks = new ArrayList<>(columns.size());
+            for (int column : columns) {
+                ByteBuffer nativeColumn = fetchNative(column);
+                tasks.add(() -> convert(column, nativeColumn, offset, count));
+            }
+            List<Future<MonetColumn>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                fetched[columns.get(i)] = getFetched(results.get(i));
+            }
+            return fetched;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Fetches a column into the engine, which is cached there, so fetching it again for the next window is cheap
+    private ByteBuffer fetchNative(int column) throws SQLException {
+        ByteBuffer nativeColumn = conn.callNative(() -> MonetNative.monetdbe_result_fetch(nativeResult, column));
+        if (nativeColumn == null) {
+            throw new SQLException("Column " + (column + 1) + " could not be fetched");
+        }
+        return nativeColumn;
+    }
+
+    //Converts a window of a fetched column, this doesn't use the database so it runs without the native lock
+    private MonetColumn convert(int column, ByteBuffer nativeColumn, int offset, int count) throws SQLException {
+        MonetColumn fetched = MonetNative.monetdbe_result_convert(nativeColumn, offset, count);
+        if (fetched == null) {
+            throw new SQLException("Column " + (column + 1) + " could not be fetched");
+        }
+        if (fetched instanceof MonetColumn.BlobColumn) {
+            ((MonetColumn.BlobColumn) fetched).source = this;
+        }
+        synchronized (metaColumns) {
+            if (metaColumns[column] == null) {
+                metaColumns[column] = MonetColumn.unfetched(fetched.getName(), fetched.getMonetdbeType(), fetched.getScale());
+            }
+        }
+        return fetched;
+    }
+
+    private static <T> T getFetched(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the fetched rows");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Fetching rows failed: " + cause);
+        }
+    }
+
+    //Starts converting the window of rows starting at start for the selected columns on a background thread
+    void prefetch(int start, int count, boolean[] selectedColumns) {
+        cancelPrefetch();
+        final boolean[] columnsToFetch = selectedColumns.clone();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        prefetchStart = start;
+        prefetchCancelled = cancelled;
+        prefetch = prefetchExecutor.submit(() -> cancelled.get() ? null : fetchColumns(columnsToFetch, start, count));
+    }
+
+    //Returns the prefetched window starting at start, or null if that window was not prefetched
+    MonetColumn[] takePrefetched(int start) throws SQLException {
+        if (prefetch == null) {
+            return null;
+        }
+        if (prefetchStart != start) {
+            cancelPrefetch();
+            return null;
+        }
+        try {
+            return getFetched(prefetch);
+        } finally {
+            prefetch = null;
+            prefetchStart = -1;
+        }
+    }
+
+    //A prefetch which already started can't be stopped in the middle of a native call, so this waits for it to finish
+    //before another fetch or the cleanup can run. It is never called with the native lock held, as the prefetch may be
+    //waiting for that lock
+    void cancelPrefetch() {
+        if (prefetch != null) {
+            prefetchCancelled.set(true);
+            try {
+                getFetched(prefetch);
+            } catch (SQLException e) {
+                //The window is dropped anyway
+            }
+            prefetch = null;
+            prefetchCancelled = null;
+            prefetchStart = -1;
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    //A blob created after the result is closed isn't kept, its own check of isClosed() then rejects it
+    void register(MonetBlob blob) {
+        synchronized (liveBlobs) {
+            if (!closed) {
+                liveBlobs.add(blob);
+            }
+        }
+    }
+
+    //Waits for a running prefetch to finish before cleaning up the native result
+    String close(ByteBuffer db) {
+        cancelPrefetch();
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            synchronized (liveBlobs) {
+                for (MonetBlob blob : liveBlobs) {
+                    blob.detach();
+                }
+                liveBlobs.clear();
+                closed = true;
+            }
+            return conn.callNative(() -> MonetNative.monetdbe_result_cleanup(db, nativeResult));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
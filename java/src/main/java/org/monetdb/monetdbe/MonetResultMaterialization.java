@@ -0,0 +1,36 @@
+package org.monetdb.monetdbe;
+
+/**
+ * How the rows of a query result are held, set per connection with the result_materialization
+ * property (keep_native, copy_and_release or spill_to_disk) or per statement with
+ * {@link MonetStatement#setResultMaterialization(MonetResultMaterialization)}.
+ */
+public enum MonetResultMaterialization {
+    /**
+     * The native result is kept until the result set is closed and columns are only converted when they
+     * are read. Numeric columns are read straight from the engine's memory, so nothing is copied for
+     * short scans, but the engine memory stays in use as long as the result set is open.
+     */
+    KEEP_NATIVE,
+    /**
+     * All columns are converted into Java owned memory when the query returns, after which the native
+     * result is cleaned up. This suits results which are kept around, as they don't hold engine memory.
+     */
+    COPY_AND_RELEASE,
+    /**
+     * All columns are converted a chunk of rows at a time and written into a temporary file in the
+     * spill_directory connection property (the JVM's temporary directory by default), after which the
+     * native result is cleaned up. The rows are read from memory-mapped buffers over that file, so results
+     * larger than the heap can be read (and scrolled) while the OS page cache holds the pages in use.
+     */
+    SPILL_TO_DISK;
+
+    static MonetResultMaterialization fromProperty(String value) {
+        for (MonetResultMaterialization materialization : values()) {
+            if (materialization.name().equalsIgnoreCase(value)) {
+                return materialization;
+            }
+        }
+        throw new IllegalArgumentException("Invalid result_materialization: " + value + " (keep_native, copy_and_release or spill_to_disk)");
+    }
+}
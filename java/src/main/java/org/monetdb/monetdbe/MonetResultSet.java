@@ -1,12 +1,14 @@
 package org.monetdb.monetdbe;
 
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.*;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
@@ -14,11 +16,12 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Map;
 import java.util.TimeZone;
 
-public class MonetResultSet extends MonetWrapper implements ResultSet {
+public class MonetResultSet extends MonetWrapper implements ResultSet, MonetColumnarResult {
     private final MonetStatement statement;
     private ByteBuffer nativeResult;
     private MonetResultSetMetaData metaData;
@@ -30,8 +33,22 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
     private MonetColumn[] columns;
     private String name;
 
-    //Ignored
+    //Fetches the columns from the native result
+    private final MonetResultFetcher fetcher;
+    //Forward-only result sets with a fetch size convert windowSize rows at a time, starting at row windowStart
+    //A windowSize of 0 means the whole result is one window
+    private int windowSize = 0;
+    private int windowStart = 0;
+    //Columns read so far, which are prefetched for the next window
+    private boolean[] readColumns;
+    private boolean newColumnsRead = false;
+    //Class last requested for each column through getObject(int, Class), with its converter
+    private Class<?>[] conversionClasses;
+    private MonetConversions.Converter[] conversions;
+
+    //Taken from the statement, TYPE_FORWARD_ONLY result sets can be streamed
     private int resultSetType = ResultSet.TYPE_SCROLL_INSENSITIVE;
+    //Ignored
     private int concurrency = ResultSet.CONCUR_READ_ONLY;
     private int fetchDirection = ResultSet.FETCH_UNKNOWN;
     private int resultSetHoldability = ResultSet.HOLD_CURSORS_OVER_COMMIT;
@@ -46,27 +63,303 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         this.nativeResult = nativeResult;
         this.columnCount = ncols;
         this.curRow = 0;
-        this.columns = MonetNative.monetdbe_result_fetch_all(nativeResult,nrows,ncols);
+        //Nothing is fetched here, each column is described and its data fetched when it is first accessed
+        this.fetcher = new MonetResultFetcher(nativeResult,ncols,statement != null ? statement.conn : null);
+        this.columns = fetcher.unfetchedColumns();
+        this.name = name;
+        this.readColumns = new boolean[ncols];
 
-        //Failed fetch, destroy resultset
-        if (this.columns == null) {
-            System.out.println("ResultSet fetch error");
-            try {
-                this.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        if (maxRows != 0 && maxRows < nrows) {
+            this.tupleCount = maxRows;
+        }
+        else {
+            this.tupleCount = nrows;
+        }
+
+        try {
+            this.resultSetType = statement.getResultSetType();
+            this.fetchSize = statement.getFetchSize();
+        } catch (SQLException e) {
+            //Statement is closed, keep the defaults
+        }
+        //Stream forward-only result sets in windows of fetchSize rows
+        if (resultSetType == ResultSet.TYPE_FORWARD_ONLY && fetchSize > 0 && fetchSize < tupleCount) {
+            this.windowSize = fetchSize;
+        }
+
+        try {
+            MonetResultMaterialization materialization = statement != null ? statement.getResultMaterialization() : MonetResultMaterialization.KEEP_NATIVE;
+            if (materialization == MonetResultMaterialization.COPY_AND_RELEASE) {
+                copyAndRelease();
+            }
+            else if (materialization == MonetResultMaterialization.SPILL_TO_DISK) {
+                release(MonetResultSpill.spill(fetcher, fetcher.unfetchedColumns(), tupleCount, statement.conn.getSpillDirectory()));
             }
+        } catch (SQLException e) {
+            //The result stays native, the rows can still be read
+            addWarning("Result could not be copied, it keeps its native memory: " + e.getMessage(), "01000");
         }
+    }
 
-        this.metaData = new MonetResultSetMetaData(columns,ncols);
+    //Result set over columns which are already in Java memory (a result cache hit), it has no native result
+    MonetResultSet(MonetStatement statement, MonetColumn[] columns, int nrows, String name) {
+        this.statement = statement;
+        this.nativeResult = null;
+        this.columnCount = columns.length;
+        this.curRow = 0;
+        this.columns = columns.clone();
+        this.fetcher = MonetResultFetcher.released(columns);
         this.name = name;
+        this.readColumns = new boolean[columnCount];
+        Arrays.fill(readColumns, true);
+        this.tupleCount = nrows;
+        try {
+            this.resultSetType = statement.getResultSetType();
+            this.fetchSize = statement.getFetchSize();
+        } catch (SQLException e) {
+            //Statement is closed, keep the defaults
+        }
+    }
 
-        if (maxRows != 0 && maxRows < nrows) {
-            this.tupleCount = maxRows;
+    //Columns in Java memory for the result cache, or null if they take more than maxBytes. A result which still holds
+    //its native memory is copied a column at a time and released, the copy stops at the first column past maxBytes
+    MonetColumn[] getJavaColumns(long maxBytes) throws SQLException {
+        long size = 0;
+        if (fetcher.isClosed()) {
+            for (MonetColumn column : columns) {
+                size += column.getMemorySize();
+            }
+            return size <= maxBytes ? columns.clone() : null;
+        }
+        //The row count and the column widths give a lower bound of the size without copying anything
+        for (int i = 0; i < columnCount; i++) {
+            size += (long) tupleCount * MonetColumn.rowBytes(fetcher.describe(i).getMonetdbeType());
+        }
+        if (size > maxBytes) {
+            return null;
+        }
+        MonetColumn[] copied = new MonetColumn[columnCount];
+        size = 0;
+        for (int i = 0; i < columnCount; i++) {
+            MonetColumn column = windowSize == 0 && columns[i].isFetched() ? columns[i] : fetcher.fetch(i, 0, tupleCount);
+            copied[i] = column.copyToJava();
+            size += copied[i].getMemorySize();
+            if (size > maxBytes) {
+                return null;
+            }
+        }
+        release(copied);
+        return copied.clone();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    //Converts all columns into Java owned memory and cleans up the native result, which is then no longer needed
+    private void copyAndRelease() throws SQLException {
+        boolean[] all = new boolean[columnCount];
+        Arrays.fill(all, true);
+        MonetColumn[] fetched = fetcher.fetchColumns(all, 0, tupleCount);
+        for (int i = 0; i < columnCount; i++) {
+            fetched[i] = fetched[i].copyToJava();
+        }
+        release(fetched);
+    }
+
+    //Replaces the columns by ones which don't need the native result, which is cleaned up
+    private void release(MonetColumn[] fetched) {
+        this.columns = fetched;
+        this.windowSize = 0;
+        this.windowStart = 0;
+        Arrays.fill(readColumns, true);
+        String error = fetcher.close(statement.conn.getDbNative());
+        if (error != null) {
+            addWarning("Native result could not be cleaned up: " + error, "01000");
+        }
+    }
+
+    //Returns the column, fetching and converting its data from the native result if this is the first access in the current window
+    private MonetColumn getColumn(int columnIndex) throws SQLException {
+        if (columnIndex < 1 || columnIndex > columnCount)
+            throw new SQLException("columnIndex out of bounds");
+        MonetColumn column = columns[columnIndex-1];
+        if (!column.isFetched()) {
+            //Rows past maxRows are never converted
+            column = fetcher.fetch(columnIndex-1, windowStart, windowSize > 0 ? Math.min(windowSize, tupleCount - windowStart) : tupleCount - windowStart);
+            columns[columnIndex-1] = column;
+            if (!readColumns[columnIndex-1]) {
+                readColumns[columnIndex-1] = true;
+                newColumnsRead = true;
+            }
+        }
+        return column;
+    }
+
+    //Moves the window to the one containing row, releasing the current one and prefetching the one after it
+    private void moveWindow(int row) throws SQLException {
+        if (row < 1 || row > tupleCount) {
+            //Before first or after last, nothing more to read
+            fetcher.cancelPrefetch();
+            columns = fetcher.unfetchedColumns();
+            return;
+        }
+        int start = ((row - 1) / windowSize) * windowSize;
+        if (start != windowStart) {
+            MonetColumn[] window = fetcher.takePrefetched(start);
+            //Without a prefetched window, the columns read so far are fetched together (in parallel for large windows)
+            columns = window != null ? window : fetcher.fetchColumns(readColumns, start, Math.min(windowSize, tupleCount - start));
+            windowStart = start;
+            prefetchNextWindow();
+        }
+        else if (newColumnsRead) {
+            //Columns read for the first time are added to the prefetch of the next window
+            prefetchNextWindow();
+        }
+    }
+
+    private void prefetchNextWindow() {
+        newColumnsRead = false;
+        int nextStart = windowStart + windowSize;
+        if (nextStart < tupleCount) {
+            fetcher.prefetch(nextStart, Math.min(windowSize, tupleCount - nextStart), readColumns);
+        }
+    }
+
+    //Columnar access (MonetColumnarResult, through unwrap), the vectors hold all rows of the result set
+    //Forward-only result sets only hold the current window, so the whole column is fetched for them
+    private MonetColumn getWholeColumn(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (windowSize == 0)
+            return getColumn(columnIndex);
+        if (columnIndex < 1 || columnIndex > columnCount)
+            throw new SQLException("columnIndex out of bounds");
+        return fetcher.fetch(columnIndex-1, 0, tupleCount);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public int getRowCount() {
+        return tupleCount;
+    }
+
+    //All columns at once, which are converted in parallel for large results
+    private MonetColumn[] getWholeColumns() throws SQLException {
+        checkNotClosed();
+        boolean[] selected = new boolean[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            selected[i] = windowSize > 0 || !columns[i].isFetched();
+        }
+        MonetColumn[] fetched = fetcher.fetchColumns(selected, 0, tupleCount);
+        for (int i = 0; i < columnCount; i++) {
+            //Without windows the fetched columns are also used by the row getters
+            if (windowSize == 0) {
+                if (selected[i]) {
+                    columns[i] = fetched[i];
+                    readColumns[i] = true;
+                }
+                else {
+                    fetched[i] = columns[i];
+                }
+            }
+        }
+        return fetched;
+    }
+
+    @Override
+    public MonetVector[] getVectors() throws SQLException {
+        MonetColumn[] fetched = getWholeColumns();
+        MonetVector[] vectors = new MonetVector[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            vectors[i] = MonetColumnVector.of(fetched[i], tupleCount);
+        }
+        return vectors;
+    }
+
+    //Windows of a result which is already in Java memory are views of its columns
+    @Override
+    public MonetVector[] getVectors(int fromRow, int rowCount) throws SQLException {
+        checkNotClosed();
+        if (fromRow < 0 || rowCount < 0 || (long) fromRow + rowCount > tupleCount)
+            throw new SQLException("Rows " + fromRow + " to " + ((long) fromRow + rowCount) + " are out of bounds, the result has " + tupleCount + " rows", "M1M05");
+        MonetColumn[] window;
+        if (fetcher.isClosed()) {
+            window = new MonetColumn[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                window[i] = columns[i].window(fromRow, rowCount);
+            }
         }
         else {
-            this.tupleCount = nrows;
+            boolean[] all = new boolean[columnCount];
+            Arrays.fill(all, true);
+            window = fetcher.fetchColumns(all, fromRow, rowCount);
+        }
+        MonetVector[] vectors = new MonetVector[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            vectors[i] = MonetColumnVector.of(window[i], rowCount);
+        }
+        return vectors;
+    }
+
+    @Override
+    public MonetRows getRows() throws SQLException {
+        return new MonetRows(getWholeColumns(), tupleCount);
+    }
+
+    //Columns of the current window, the unread ones only hold their metadata (used by MonetRowMapper)
+    MonetColumn[] getCurrentColumns() throws SQLException {
+        checkNotClosed();
+        return columns;
+    }
+
+    //The current row, with the given columns fetched (used by MonetRowMapper)
+    MonetRow getCurrentRow(int[] columnIndexes) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        for (int columnIndex : columnIndexes) {
+            getColumn(columnIndex);
         }
+        return new MonetRow(columns, curRow-1-windowStart);
+    }
+
+    @Override
+    public MonetVector getVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.of(getWholeColumn(columnIndex), tupleCount);
+    }
+
+    @Override
+    public MonetIntVector getIntVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.intVector(getWholeColumn(columnIndex), tupleCount);
+    }
+
+    @Override
+    public MonetLongVector getLongVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.longVector(getWholeColumn(columnIndex), tupleCount);
+    }
+
+    @Override
+    public MonetHugeIntVector getHugeIntVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.hugeIntVector(getWholeColumn(columnIndex), tupleCount);
+    }
+
+    @Override
+    public MonetDoubleVector getDoubleVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.doubleVector(getWholeColumn(columnIndex), tupleCount);
+    }
+
+    @Override
+    public MonetStringVector getStringVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.stringVector(getWholeColumn(columnIndex), tupleCount);
+    }
+
+    @Override
+    public MonetTemporalVector getTemporalVector(int columnIndex) throws SQLException {
+        return MonetColumnVector.temporalVector(getWholeColumn(columnIndex), tupleCount);
     }
 
     //Default Object type for a given SQL Type
@@ -77,6 +370,11 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             throw new SQLException("columnIndex is not valid");
         }
         int type = columns[columnIndex-1].getMonetdbeType();
+        //The primitive getters return 0 for null values
+        if (curRow > 0 && curRow <= tupleCount && getColumn(columnIndex).isNull(curRow-1-windowStart)) {
+            lastReadWasNull = true;
+            return null;
+        }
         switch (type) {
             case 0:
                 return getBoolean(columnIndex);
@@ -148,8 +446,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         return getObject(columnIndex);
     }
 
-    //This object conversion probably doesn't work well. We can't simply cast from the default Java object associated with the monetdbetype.
-    //Wasn't implemented in the last version
+    //Converts through the column's typed getters, the converter of a column is resolved again only when the class changes
     @Override
     public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
         checkNotClosed();
@@ -159,14 +456,43 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         else if (columnIndex > columnCount) {
             throw new SQLException("columnIndex is not valid");
         }
+        //The default objects, which are the JDBC types rather than the column's own Java types
+        if (type == Object.class) {
+            return type.cast(getObject(columnIndex));
+        }
 
-        int monetdbeType = columns[columnIndex-1].getMonetdbeType();
-        if (MonetTypes.convertTojavaClass(monetdbeType,type)) {
-            Object defaultValue = getObject(columnIndex);
-            return type.cast(defaultValue);
+        if (conversionClasses == null) {
+            conversionClasses = new Class<?>[columnCount];
+            conversions = new MonetConversions.Converter[columnCount];
         }
-        else {
-            throw new SQLException("Conversion is not supported");
+        MonetConversions.Converter converter = conversions[columnIndex-1];
+        if (conversionClasses[columnIndex-1] != type) {
+            converter = MonetConversions.find(type, columns[columnIndex-1].getMonetdbeType());
+            if (converter == null) {
+                throw new SQLException("Conversion of column type " + columns[columnIndex-1].getTypeName() + " to " + type.getName() + " is not supported", "M1M05");
+            }
+            conversionClasses[columnIndex-1] = type;
+            conversions[columnIndex-1] = converter;
+        }
+
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        try {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
+                lastReadWasNull = true;
+                return null;
+            }
+            lastReadWasNull = false;
+            return type.cast(converter.convert(column, curRow-1-windowStart));
+        } catch (IndexOutOfBoundsException e) {
+            throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new SQLException("Value of column " + columnIndex + " can't be converted to " + type.getName() + ": " + e.getMessage(), "22018");
+        } catch (ArithmeticException e) {
+            throw new SQLException(e.getMessage(), "22003");
         }
     }
 
@@ -196,7 +522,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            String val = columns[columnIndex-1].getString(curRow-1);
+            String val = getColumn(columnIndex).getString(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -205,20 +531,70 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
+    //Byte-level access to the UTF-8 bytes of string columns, which doesn't create a String
+    //Null values behave as the empty string, use wasNull() to tell them apart
+    private MonetColumn getStringColumn(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        MonetColumn column = getColumn(columnIndex);
+        if (column.getMonetdbeType() != 9)
+            throw new SQLException("Column " + columnIndex + " is not a string column", "M1M05");
+        lastReadWasNull = column.isNull(curRow-1-windowStart);
+        return column;
+    }
+
+    public ByteBuffer getUTF8(int columnIndex) throws SQLException {
+        return getStringColumn(columnIndex).getUTF8(curRow-1-windowStart);
+    }
+
+    public int getUTF8Length(int columnIndex) throws SQLException {
+        return getStringColumn(columnIndex).getUTF8Length(curRow-1-windowStart);
+    }
+
+    public int copyUTF8(int columnIndex, byte[] dst, int dstOffset) throws SQLException {
+        MonetColumn column = getStringColumn(columnIndex);
+        if (dstOffset < 0 || dstOffset + column.getUTF8Length(curRow-1-windowStart) > dst.length)
+            throw new SQLException("Destination array is too small", "M1M05");
+        return column.copyUTF8(curRow-1-windowStart, dst, dstOffset);
+    }
+
+    public int compareUTF8(int columnIndex, byte[] utf8) throws SQLException {
+        return getStringColumn(columnIndex).compareUTF8(curRow-1-windowStart, utf8);
+    }
+
+    public boolean equalsUTF8(int columnIndex, byte[] utf8) throws SQLException {
+        MonetColumn column = getStringColumn(columnIndex);
+        return column.getUTF8Length(curRow-1-windowStart) == utf8.length && column.compareUTF8(curRow-1-windowStart, utf8) == 0;
+    }
+
+    public int hashUTF8(int columnIndex) throws SQLException {
+        return getStringColumn(columnIndex).hashUTF8(curRow-1-windowStart);
+    }
+
     @Override
     public boolean getBoolean(int columnIndex) throws SQLException {
         checkNotClosed();
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Boolean val = columns[columnIndex-1].getBoolean(curRow-1);
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
+                lastReadWasNull = true;
+                return false;
+            }
+            boolean val = column.getBoolean(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -228,15 +604,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Byte val = columns[columnIndex-1].getByte(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return 0;
             }
+            byte val = column.getByte(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -246,15 +625,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Short val = columns[columnIndex-1].getShort(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return 0;
             }
+            short val = column.getShort(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -264,15 +646,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Integer val = columns[columnIndex-1].getInt(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return 0;
             }
+            int val = column.getInt(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -282,15 +667,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Long val = columns[columnIndex-1].getLong(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return 0;
             }
+            long val = column.getLong(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -300,15 +688,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Float val = columns[columnIndex-1].getFloat(curRow-1);
-            if (val.isNaN()) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return 0;
             }
+            float val = column.getFloat(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -318,15 +709,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Double val = columns[columnIndex-1].getDouble(curRow-1);
-            if (val.isNaN()) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return 0;
             }
+            double val = column.getDouble(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -336,7 +730,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            byte[] val = columns[columnIndex-1].getBytes(curRow-1);
+            byte[] val = getColumn(columnIndex).getBytes(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -345,6 +739,8 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -354,15 +750,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            BigDecimal val = columns[columnIndex-1].getBigDecimal(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return BigDecimal.ZERO;
             }
+            BigDecimal val = column.getBigDecimal(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -371,15 +770,90 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            BigInteger val = columns[columnIndex-1].getBigInteger(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return BigInteger.ZERO;
             }
+            BigInteger val = column.getBigInteger(curRow-1-windowStart);
+            lastReadWasNull = false;
+            return val;
+        } catch (IndexOutOfBoundsException e) {
+            throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        }
+    }
+
+    /**
+     * Unscaled value of an integer or DECIMAL column, without creating a BigDecimal. The value is
+     * getBigDecimal(columnIndex).unscaledValue(), with scale getMetaData().getScale(columnIndex).
+     * HUGEINT backed values which don't fit in a long throw a SQLException with SQLState 22003.
+     */
+    public long getUnscaledLong(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        try {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
+                lastReadWasNull = true;
+                return 0;
+            }
+            long val = column.getUnscaledLong(curRow-1-windowStart);
+            lastReadWasNull = false;
+            return val;
+        } catch (IndexOutOfBoundsException e) {
+            throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        } catch (ArithmeticException e) {
+            throw new SQLException(e.getMessage(), "22003");
+        }
+    }
+
+    //High and low 64 bits of a HUGEINT (or narrower integer) value, without creating a BigInteger
+    public long getHugeIntHigh(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        try {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
+                lastReadWasNull = true;
+                return 0;
+            }
+            long val = column.getHugeIntHigh(curRow-1-windowStart);
+            lastReadWasNull = false;
+            return val;
+        } catch (IndexOutOfBoundsException e) {
+            throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        } catch (ArithmeticException e) {
+            throw new SQLException(e.getMessage(), "22003");
+        }
+    }
+
+    public long getHugeIntLow(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        try {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
+                lastReadWasNull = true;
+                return 0;
+            }
+            long val = column.getHugeIntLow(curRow-1-windowStart);
             lastReadWasNull = false;
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        } catch (ArithmeticException e) {
+            throw new SQLException(e.getMessage(), "22003");
         }
     }
 
@@ -388,7 +862,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            LocalDate val = columns[columnIndex-1].getLocalDate(curRow-1);
+            LocalDate val = getColumn(columnIndex).getLocalDate(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -397,6 +871,8 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         } catch (DateTimeParseException e) {
             throw new SQLException("DateTime string could not be parsed");
         }
@@ -420,7 +896,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            LocalTime val = columns[columnIndex-1].getLocalTime(curRow-1);
+            LocalTime val = getColumn(columnIndex).getLocalTime(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -429,6 +905,8 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         } catch (DateTimeParseException e) {
             throw new SQLException("DateTime string could not be parsed");
         }
@@ -453,7 +931,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            LocalDateTime val = columns[columnIndex-1].getLocalDateTime(curRow-1);
+            LocalDateTime val = getColumn(columnIndex).getLocalDateTime(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -462,8 +940,49 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        } catch (DateTimeParseException e) {
+            throw new SQLException("DateTime string could not be parsed");
+        }
+    }
+
+    //Primitive temporal getters, which don't create java.time objects for DATE, TIME and TIMESTAMP columns
+    //Null values are returned as 0, use wasNull() to tell them apart
+    public long getEpochDay(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        try {
+            MonetColumn column = getColumn(columnIndex);
+            lastReadWasNull = column.isNull(curRow-1-windowStart);
+            return lastReadWasNull ? 0 : column.getEpochDay(curRow-1-windowStart);
+        } catch (IndexOutOfBoundsException e) {
+            throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        } catch (DateTimeParseException e) {
+            throw new SQLException("Date string could not be parsed");
+        }
+    }
+
+    //Microseconds since 1970-01-01T00:00, or since midnight for TIME columns
+    public long getEpochMicros(int columnIndex) throws SQLException {
+        checkNotClosed();
+        if (curRow <= 0 || curRow > tupleCount)
+            throw new SQLException("Current row " + curRow + " does not support operation");
+        try {
+            MonetColumn column = getColumn(columnIndex);
+            lastReadWasNull = column.isNull(curRow-1-windowStart);
+            return lastReadWasNull ? 0 : column.getEpochMicros(curRow-1-windowStart);
+        } catch (IndexOutOfBoundsException e) {
+            throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         } catch (DateTimeParseException e) {
             throw new SQLException("DateTime string could not be parsed");
+        } catch (ArithmeticException e) {
+            throw new SQLException("DateTime is out of range");
         }
     }
 
@@ -485,7 +1004,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            MonetBlob val = columns[columnIndex-1].getBlob(curRow-1);
+            MonetBlob val = getColumn(columnIndex).getBlob(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -494,6 +1013,8 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return val;
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -503,15 +1024,21 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            String val = columns[columnIndex-1].getString(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return null;
             }
             lastReadWasNull = false;
-            return new MonetClob(val);
+            //String columns hand their UTF-8 bytes to the Clob, which only decodes them when the characters are needed
+            if (column.getMonetdbeType() == 9) {
+                return new MonetClob(column.getUTF8(curRow-1-windowStart));
+            }
+            return new MonetClob(column.getString(curRow-1-windowStart));
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -521,7 +1048,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            String val = columns[columnIndex-1].getString(curRow-1);
+            String val = getColumn(columnIndex).getString(curRow-1-windowStart);
             if (val == null) {
                 lastReadWasNull = true;
                 return null;
@@ -530,6 +1057,8 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
             return new URL(val);
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         } catch (MalformedURLException e) {
             throw new SQLException("column is not a valid URL");
         }
@@ -541,12 +1070,17 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            Blob val = columns[columnIndex-1].getBlob(curRow-1);
-            if (val == null)
+            Blob val = getColumn(columnIndex).getBlob(curRow-1-windowStart);
+            if (val == null) {
+                lastReadWasNull = true;
                 return null;
+            }
+            lastReadWasNull = false;
             return val.getBinaryStream();
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -556,15 +1090,21 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (curRow <= 0 || curRow > tupleCount)
             throw new SQLException("Current row " + curRow + " does not support operation");
         try {
-            String val = columns[columnIndex-1].getString(curRow-1);
-            if (val == null) {
+            MonetColumn column = getColumn(columnIndex);
+            if (column.isNull(curRow-1-windowStart)) {
                 lastReadWasNull = true;
                 return null;
             }
             lastReadWasNull = false;
-            return new java.io.StringReader(val);
+            //Decodes the UTF-8 bytes of string columns while reading, without creating a String
+            if (column.getMonetdbeType() == 9) {
+                return new InputStreamReader(new MonetByteBufferInputStream(column.getUTF8(curRow-1-windowStart)), StandardCharsets.UTF_8);
+            }
+            return new java.io.StringReader(column.getString(curRow-1-windowStart));
         } catch (IndexOutOfBoundsException e) {
             throw new SQLException("columnIndex out of bounds");
+        } catch (UnsupportedOperationException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
         }
     }
 
@@ -599,7 +1139,7 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (isClosed())
             return;
         this.closed = true;
-        MonetNative.monetdbe_result_cleanup(((MonetConnection)this.statement.getConnection()).getDbNative(),nativeResult);
+        fetcher.close(((MonetConnection)this.statement.getConnection()).getDbNative());
         this.columns = null;
         statement.closeIfComplete();
     }
@@ -607,6 +1147,14 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
     @Override
     public ResultSetMetaData getMetaData() throws SQLException {
         checkNotClosed();
+        //Describes every column, which is only done when the metadata is asked for
+        if (metaData == null) {
+            try {
+                metaData = new MonetResultSetMetaData(columns,columnCount);
+            } catch (UnsupportedOperationException e) {
+                throw new SQLException(e.getMessage(), "HY000");
+            }
+        }
         return metaData;
     }
 
@@ -620,7 +1168,14 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         if (row < 0) {
             row = tupleCount + row + 1;
         }
-        else if (row == 0) {
+        if (windowSize > 0) {
+            //Rows of windows the cursor has passed are released, so streaming result sets can only move forward
+            if (row < curRow) {
+                throw new SQLException("Cannot move backwards on a forward only result set", "M1M05");
+            }
+            moveWindow(row);
+        }
+        if (row == 0) {
             curRow = 0;    // before first
             return false;
         }
@@ -997,6 +1552,18 @@ public class MonetResultSet extends MonetWrapper implements ResultSet {
         return getHugeInt(findColumn(columnLabel));
     }
 
+    public long getUnscaledLong(String columnLabel) throws SQLException {
+        return getUnscaledLong(findColumn(columnLabel));
+    }
+
+    public long getHugeIntHigh(String columnLabel) throws SQLException {
+        return getHugeIntHigh(findColumn(columnLabel));
+    }
+
+    public long getHugeIntLow(String columnLabel) throws SQLException {
+        return getHugeIntLow(findColumn(columnLabel));
+    }
+
     @Override
     public Object getObject(String columnLabel) throws SQLException {
         return getObject(findColumn(columnLabel));
@@ -0,0 +1,176 @@
+package org.monetdb.monetdbe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Writes the columns of a result into a temporary file and maps them back, for the spill_to_disk
+ * result materialization. The columns are converted a chunk of rows at a time, so neither the heap nor
+ * the direct memory ever holds a whole column.
+ *
+ * Each column is stored as its validity bitmap, the offsets of string and BLOB rows and then the data:
+ * fixed width values as a flat array and strings and BLOBs as one heap of bytes. The mapped regions are
+ * wrapped in the usual column classes, so reading a spilled column works as reading a fetched one.
+ * The file is deleted when it has been mapped, its disk space is freed when the mappings are collected.
+ */
+final class MonetResultSpill {
+    //Multiple of 8, so the validity bitmap of every chunk starts at a byte boundary
+    private static final int CHUNK_ROWS = 1 << 20;
+    private static final byte[] ALL_VALID = new byte[CHUNK_ROWS / 8];
+
+    static {
+        Arrays.fill(ALL_VALID, (byte) 0xFF);
+    }
+
+    private final MonetResultFetcher fetcher;
+    private final int rows;
+    private final FileChannel channel;
+
+    private MonetResultSpill(MonetResultFetcher fetcher, int rows, FileChannel channel) {
+        this.fetcher = fetcher;
+        this.rows = rows;
+        this.channel = channel;
+    }
+
+    //Spills all rows of the columns, metaColumns are the unfetched columns holding their names and types
+    static MonetColumn[] spill(MonetResultFetcher fetcher, MonetColumn[] metaColumns, int rows, Path directory) throws SQLException {
+        try {
+            Path file = Files.createTempFile(directory, "monetdbe-result", ".columns");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                MonetResultSpill spill = new MonetResultSpill(fetcher, rows, channel);
+                MonetColumn[] columns = new MonetColumn[metaColumns.length];
+                for (int i = 0; i < metaColumns.length; i++) {
+                    columns[i] = spill.spillColumn(i, metaColumns[i]);
+                }
+                return columns;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Result could not be spilled to " + directory + ": " + e.getMessage(), "HY000");
+        }
+    }
+
+    private MonetColumn spillColumn(int index, MonetColumn meta) throws SQLException, IOException {
+        int type = meta.getMonetdbeType();
+        long validityPosition = channel.size();
+        long validitySize = (rows + 7) / 8;
+        boolean hasNulls = false;
+
+        if (type == 9 || type == 10) {
+            //The offsets are written at their place as the chunks come in, the heap grows after them
+            long offsetsPosition = validityPosition + validitySize;
+            long offsetsSize = 4L * (rows + 1);
+            long heapPosition = offsetsPosition + offsetsSize;
+            long heapSize = 0;
+            for (int start = 0; start < rows; start += CHUNK_ROWS) {
+                int count = Math.min(CHUNK_ROWS, rows - start);
+                MonetColumn chunk = fetcher.fetch(index, start, count);
+                hasNulls |= writeValidity(chunk, validityPosition, start, count);
+                ByteBuffer offsets = ByteBuffer.allocate(4 * (count + 1)).order(ByteOrder.LITTLE_ENDIAN);
+                if (type == 9) {
+                    for (int row = 0; row <= count; row++) {
+                        offsets.putInt(toOffset(heapSize + chunk.getStringOffsets().get(row)));
+                    }
+                    ByteBuffer heap = chunk.getStringData().duplicate();
+                    heap.clear();
+                    heapSize += writeFully(heap, heapPosition + heapSize);
+                }
+                else {
+                    ByteBuffer[] blobs = ((MonetColumn.BlobColumn) chunk).getBuffers();
+                    for (int row = 0; row < count; row++) {
+                        offsets.putInt(toOffset(heapSize));
+                        if (blobs[row] != null) {
+                            heapSize += writeFully(blobs[row].duplicate(), heapPosition + heapSize);
+                        }
+                    }
+                    offsets.putInt(toOffset(heapSize));
+                }
+                //The last offset of a chunk is overwritten by the first one of the next chunk, which is the same
+                offsets.flip();
+                writeFully(offsets, offsetsPosition + 4L * start);
+            }
+            if (rows == 0) {
+                writeFully(ByteBuffer.allocate(4), offsetsPosition);
+            }
+            ByteBuffer validity = hasNulls ? map(validityPosition, validitySize) : null;
+            ByteBuffer offsets = map(offsetsPosition, offsetsSize);
+            ByteBuffer heap = map(heapPosition, heapSize);
+            if (type == 9) {
+                return MonetColumn.ofStrings(meta.getName(), type, heap, offsets, validity);
+            }
+            return MonetColumn.ofBlobs(meta.getName(), type, blobRows(heap, offsets.order(ByteOrder.LITTLE_ENDIAN), validity), validity);
+        }
+
+        long dataPosition = validityPosition + validitySize;
+        long dataSize = 0;
+        for (int start = 0; start < rows; start += CHUNK_ROWS) {
+            int count = Math.min(CHUNK_ROWS, rows - start);
+            MonetColumn chunk = fetcher.fetch(index, start, count);
+            hasNulls |= writeValidity(chunk, validityPosition, start, count);
+            ByteBuffer data = chunk.getConstData().duplicate();
+            data.clear();
+            dataSize += writeFully(data, dataPosition + dataSize);
+        }
+        ByteBuffer validity = hasNulls ? map(validityPosition, validitySize) : null;
+        return MonetColumn.ofFixed(meta.getName(), type, map(dataPosition, dataSize), meta.getScale(), validity);
+    }
+
+    //Writes the bitmap of the chunk, returns true if it has null rows
+    private boolean writeValidity(MonetColumn chunk, long validityPosition, int start, int count) throws IOException {
+        ByteBuffer validity = chunk.getValidity();
+        int bytes = (count + 7) / 8;
+        if (validity == null) {
+            writeFully(ByteBuffer.wrap(ALL_VALID, 0, bytes), validityPosition + start / 8);
+            return false;
+        }
+        ByteBuffer bits = validity.duplicate();
+        bits.clear().limit(bytes);
+        writeFully(bits, validityPosition + start / 8);
+        return true;
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int written = buffer.remaining();
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+        return written;
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("a column region of " + size + " bytes is larger than 2 GB");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    //String and BLOB offsets are ints, as in the fetched columns
+    private static int toOffset(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("the data of a column is larger than 2 GB");
+        }
+        return (int) offset;
+    }
+
+    //Read-only slices of the mapped heap, a MonetBlob copies them before they are written
+    private ByteBuffer[] blobRows(ByteBuffer heap, ByteBuffer offsets, ByteBuffer validity) {
+        ByteBuffer[] blobs = new ByteBuffer[rows];
+        for (int row = 0; row < rows; row++) {
+            if (validity != null && (validity.get(row >>> 3) & (1 << (row & 7))) == 0) {
+                continue;
+            }
+            ByteBuffer blob = heap.duplicate();
+            blob.limit(offsets.getInt(4 * (row + 1))).position(offsets.getInt(4 * row));
+            blobs[row] = blob.slice();
+        }
+        return blobs;
+    }
+}
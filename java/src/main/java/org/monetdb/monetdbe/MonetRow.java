@@ -0,0 +1,135 @@
+package org.monetdb.monetdbe;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * A row of {@link MonetRows}, which reads its values straight from the column buffers of the result.
+ * A row only holds the columns and its row number, so creating one doesn't copy any values.
+ *
+ * Columns are numbered from 1, as in JDBC. The primitive getters return 0 (or false) for null values
+ * and the object getters return null, use {@link #isNull(int)} to tell them apart. Conversions a column
+ * doesn't support throw an UnsupportedOperationException, as the row is mostly read inside lambdas.
+ */
+public final class MonetRow {
+    private final MonetColumn[] columns;
+    private final int row;
+
+    MonetRow(MonetColumn[] columns, int row) {
+        this.columns = columns;
+        this.row = row;
+    }
+
+    //Columns of the result, used by MonetRowMapper to find the mapping for the result's column names
+    MonetColumn[] getColumns() {
+        return columns;
+    }
+
+    /** @return the number of the row in the result, the first row is 0 */
+    public int getRowIndex() {
+        return row;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public boolean isNull(int columnIndex) {
+        return columns[columnIndex-1].isNull(row);
+    }
+
+    public boolean getBoolean(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return !column.isNull(row) && column.getBoolean(row);
+    }
+
+    public int getInt(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getInt(row);
+    }
+
+    public long getLong(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getLong(row);
+    }
+
+    public float getFloat(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getFloat(row);
+    }
+
+    public double getDouble(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getDouble(row);
+    }
+
+    public BigDecimal getBigDecimal(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? null : column.getBigDecimal(row);
+    }
+
+    /** @return the unscaled value of integer and HUGEINT columns */
+    public BigInteger getBigInteger(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? null : column.getBigInteger(row);
+    }
+
+    /** @return the unscaled value of integer and DECIMAL columns, the scale is in the result's metadata */
+    public long getUnscaledLong(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getUnscaledLong(row);
+    }
+
+    public String getString(int columnIndex) {
+        return columns[columnIndex-1].getString(row);
+    }
+
+    /** @return the value as the column's own Java type, or null for null values */
+    public Object getObject(int columnIndex) {
+        return columns[columnIndex-1].getObject(row);
+    }
+
+    /** @return the value converted into type, as ResultSet.getObject(int, Class) does, or null for null values */
+    public <T> T getObject(int columnIndex, Class<T> type) {
+        MonetColumn column = columns[columnIndex-1];
+        MonetConversions.Converter converter = MonetConversions.find(type, column.getMonetdbeType());
+        if (converter == null) {
+            throw column.notConvertible(type.getName());
+        }
+        return column.isNull(row) ? null : type.cast(converter.convert(column, row));
+    }
+
+    //Days since 1970-01-01 and microseconds since 1970-01-01T00:00 (or since midnight for TIME columns)
+    public long getEpochDay(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getEpochDay(row);
+    }
+
+    public long getEpochMicros(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? 0 : column.getEpochMicros(row);
+    }
+
+    public LocalDate getLocalDate(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? null : column.getLocalDate(row);
+    }
+
+    public LocalTime getLocalTime(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? null : column.getLocalTime(row);
+    }
+
+    public LocalDateTime getLocalDateTime(int columnIndex) {
+        MonetColumn column = columns[columnIndex-1];
+        return column.isNull(row) ? null : column.getLocalDateTime(row);
+    }
+
+    /** @return a copy of the bytes of a BLOB value, or null for null values */
+    public byte[] getBytes(int columnIndex) {
+        return columns[columnIndex-1].getBytes(row);
+    }
+}
@@ -0,0 +1,436 @@
+package org.monetdb.monetdbe;
+
+import java.lang.invoke.*;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Maps result rows to Java objects, without reflection or column name lookups per row.
+ *
+ * The target class is inspected once by {@link #of(Class)}:
+ * <ul>
+ * <li>Classes with a public no-argument constructor are filled as beans, through their public setters
+ * (<code>setFirstName</code>) and public fields.</li>
+ * <li>Other classes are created through their public constructor with the most parameters. The parameters
+ * are matched to columns by name when the class is compiled with <code>-parameters</code> (which records always
+ * are), otherwise by position.</li>
+ * </ul>
+ * Property names match column names ignoring case and underscores, so <code>firstName</code> matches the
+ * column <code>first_name</code>. Columns without a property and properties without a column are skipped.
+ *
+ * The columns of a result shape (its column names) are resolved once and the setters are called through
+ * generated lambdas, so a mapper should be created once and reused for every execution:
+ * <pre>
+ * private static final MonetRowMapper&lt;Person&gt; PERSON = MonetRowMapper.of(Person.class);
+ * ...
+ * List&lt;Person&gt; people = PERSON.mapAll(statement.executeQuery("SELECT first_name, age FROM person"));
+ * </pre>
+ * Null values are mapped to null for object properties and to 0 (or false) for primitive properties.
+ */
+public final class MonetRowMapper<T> {
+    private static final ClassValue<MonetRowMapper<?>> mappers = new ClassValue<MonetRowMapper<?>>() {
+        @Override
+        protected MonetRowMapper<?> computeValue(Class<?> type) {
+            return new MonetRowMapper<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    //Bean mapping: no-argument constructor and the writable properties by normalized name
+    private final MethodHandle beanConstructor;
+    private final Map<String, Property> properties = new HashMap<>();
+    //Constructor mapping: the parameters, matched by position if their names were not compiled in
+    private final MethodHandle constructor;
+    private final Class<?>[] parameterTypes;
+    private final String[] parameterNames;
+
+    //Compiled mappings by the column names of the result, and the last one used
+    private final Map<List<String>, Shape> shapes = new ConcurrentHashMap<>();
+    private volatile Shape lastShape;
+
+    @SuppressWarnings("unchecked")
+    public static <T> MonetRowMapper<T> of(Class<T> type) {
+        return (MonetRowMapper<T>) mappers.get(type);
+    }
+
+    private MonetRowMapper(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<T> noArgs = null;
+            Constructor<?> widest = null;
+            for (Constructor<?> c : type.getConstructors()) {
+                if (c.getParameterCount() == 0) {
+                    noArgs = type.getConstructor();
+                }
+                else if (widest == null || c.getParameterCount() > widest.getParameterCount()) {
+                    widest = c;
+                }
+            }
+            if (noArgs != null) {
+                beanConstructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+                constructor = null;
+                parameterTypes = null;
+                parameterNames = null;
+                findProperties(lookup);
+            }
+            else if (widest != null) {
+                beanConstructor = null;
+                Parameter[] parameters = widest.getParameters();
+                parameterTypes = widest.getParameterTypes();
+                parameterNames = new String[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    parameterNames[i] = parameters[i].isNamePresent() ? normalize(parameters[i].getName()) : null;
+                }
+                constructor = lookup.unreflectConstructor(widest)
+                        .asSpreader(Object[].class, parameters.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            }
+            else {
+                throw new IllegalArgumentException(type.getName() + " has no public constructor");
+            }
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " can't be mapped: " + e.getMessage(), e);
+        }
+    }
+
+    private void findProperties(MethodHandles.Lookup lookup) throws IllegalAccessException {
+        for (Field field : type.getFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                properties.put(normalize(field.getName()), new Property(field.getType(), lookup.unreflectSetter(field), false));
+            }
+        }
+        //Setters win over fields with the same name
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+            if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                properties.put(normalize(name.substring(3)), new Property(method.getParameterTypes()[0], lookup.unreflect(method), true));
+            }
+        }
+    }
+
+    //Lower case without underscores, so firstName, FIRST_NAME and first_name are the same
+    private static String normalize(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '_') {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Maps the current row of the result set.
+     */
+    public T map(ResultSet resultSet) throws SQLException {
+        MonetResultSet rs = resultSet.unwrap(MonetResultSet.class);
+        try {
+            Shape shape = getShape(rs.getCurrentColumns());
+            return shape.map(rs.getCurrentRow(shape.columnIndexes));
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), "M1M05");
+        }
+    }
+
+    /**
+     * Maps the remaining rows of the result set, moving the cursor past the last row.
+     */
+    public List<T> mapAll(ResultSet resultSet) throws SQLException {
+        List<T> mapped = new ArrayList<>();
+        while (resultSet.next()) {
+            mapped.add(map(resultSet));
+        }
+        return mapped;
+    }
+
+    /**
+     * Maps a row of {@link MonetRows}, e.g. <code>rows.parallelStream().map(mapper::map)</code>.
+     *
+     * @throws IllegalArgumentException if the row has no column for a constructor parameter
+     */
+    public T map(MonetRow row) {
+        return getShape(row.getColumns()).map(row);
+    }
+
+    private Shape getShape(MonetColumn[] columns) {
+        Shape shape = lastShape;
+        if (shape != null && shape.matches(columns)) {
+            return shape;
+        }
+        List<String> names = new ArrayList<>(columns.length);
+        for (MonetColumn column : columns) {
+            names.add(column.getName());
+        }
+        shape = shapes.computeIfAbsent(names, this::compile);
+        lastShape = shape.forColumns(columns);
+        return shape;
+    }
+
+    private Shape compile(List<String> columnNames) {
+        Map<String, Integer> columnIndexes = new HashMap<>();
+        for (int i = columnNames.size() - 1; i >= 0; i--) {
+            columnIndexes.put(normalize(columnNames.get(i)), i + 1);
+        }
+
+        if (beanConstructor != null) {
+            List<Setter> setters = new ArrayList<>();
+            List<Integer> used = new ArrayList<>();
+            for (Map.Entry<String, Property> property : properties.entrySet()) {
+                Integer columnIndex = columnIndexes.get(property.getKey());
+                if (columnIndex != null) {
+                    setters.add(property.getValue().setter(columnIndex));
+                    used.add(columnIndex);
+                }
+            }
+            return new Shape(columnNames, toArray(used), setters.toArray(new Setter[0]), null);
+        }
+
+        Reader[] readers = new Reader[parameterTypes.length];
+        int[] used = new int[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Integer columnIndex = parameterNames[i] != null ? columnIndexes.get(parameterNames[i]) : (Integer) (i + 1);
+            if (columnIndex == null || columnIndex > columnNames.size()) {
+                throw new IllegalArgumentException("No column for parameter " + (parameterNames[i] != null ? parameterNames[i] : String.valueOf(i + 1)) + " of " + type.getName());
+            }
+            readers[i] = reader(parameterTypes[i], columnIndex);
+            used[i] = columnIndex;
+        }
+        return new Shape(columnNames, used, null, readers);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private final class Shape {
+        private final List<String> columnNames;
+        //Columns read by the mapping, which are fetched before mapping a row of a result set
+        final int[] columnIndexes;
+        private final Setter[] setters;
+        private final Reader[] readers;
+        //Columns of the result last mapped with this shape, compared by identity so the names are only compared once
+        private final WeakReference<MonetColumn[]> lastColumns;
+
+        Shape(List<String> columnNames, int[] columnIndexes, Setter[] setters, Reader[] readers) {
+            this(columnNames, columnIndexes, setters, readers, null);
+        }
+
+        private Shape(List<String> columnNames, int[] columnIndexes, Setter[] setters, Reader[] readers, MonetColumn[] columns) {
+            this.columnNames = columnNames;
+            this.columnIndexes = columnIndexes;
+            this.setters = setters;
+            this.readers = readers;
+            this.lastColumns = new WeakReference<>(columns);
+        }
+
+        Shape forColumns(MonetColumn[] columns) {
+            return new Shape(columnNames, columnIndexes, setters, readers, columns);
+        }
+
+        boolean matches(MonetColumn[] columns) {
+            if (lastColumns.get() == columns) {
+                return true;
+            }
+            if (columns.length != columnNames.size()) {
+                return false;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (!columnNames.get(i).equals(columns[i].getName())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        T map(MonetRow row) {
+            try {
+                if (setters != null) {
+                    Object target = beanConstructor.invokeExact();
+                    for (Setter setter : setters) {
+                        setter.set(target, row);
+                    }
+                    return (T) target;
+                }
+                Object[] arguments = new Object[readers.length];
+                for (int i = 0; i < readers.length; i++) {
+                    arguments[i] = readers[i].read(row);
+                }
+                return (T) constructor.invokeExact(arguments);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Creating " + type.getName() + " failed", e);
+            }
+        }
+    }
+
+    //Writes one column of a row into a bean
+    private interface Setter {
+        void set(Object target, MonetRow row) throws Throwable;
+    }
+
+    //Reads one column of a row as a constructor argument
+    private interface Reader {
+        Object read(MonetRow row);
+    }
+
+    //Writable property of a bean, with its setter method or field
+    private static final class Property {
+        private final Class<?> type;
+        private final MethodHandle handle;
+        private final boolean method;
+
+        Property(Class<?> type, MethodHandle handle, boolean method) {
+            this.type = type;
+            this.handle = handle;
+            this.method = method;
+        }
+
+        //int, long and double setters get a lambda without boxing, the other types go through a boxed reader
+        Setter setter(int columnIndex) {
+            if (type == int.class) {
+                ObjIntConsumer<Object> set = lambda(ObjIntConsumer.class, int.class);
+                return (target, row) -> set.accept(target, row.getInt(columnIndex));
+            }
+            else if (type == long.class) {
+                ObjLongConsumer<Object> set = lambda(ObjLongConsumer.class, long.class);
+                return (target, row) -> set.accept(target, row.getLong(columnIndex));
+            }
+            else if (type == double.class) {
+                ObjDoubleConsumer<Object> set = lambda(ObjDoubleConsumer.class, double.class);
+                return (target, row) -> set.accept(target, row.getDouble(columnIndex));
+            }
+            Reader reader = reader(type, columnIndex);
+            BiConsumer<Object, Object> set = lambda(BiConsumer.class, Object.class);
+            return (target, row) -> set.accept(target, reader.read(row));
+        }
+
+        //Implements the functional interface with the setter, through LambdaMetafactory for public setter methods
+        @SuppressWarnings("unchecked")
+        private <F> F lambda(Class<?> functionalInterface, Class<?> valueType) {
+            MethodType samType = MethodType.methodType(void.class, Object.class, valueType);
+            if (method) {
+                try {
+                    MethodHandles.Lookup lookup = MethodHandles.lookup();
+                    Class<?> parameterType = valueType.isPrimitive() ? valueType : MethodType.methodType(type).wrap().returnType();
+                    MethodType instantiatedType = MethodType.methodType(void.class, handle.type().parameterType(0), parameterType);
+                    CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(functionalInterface),
+                            samType, handle, instantiatedType);
+                    return (F) site.getTarget().invoke();
+                } catch (Throwable e) {
+                    //Falls back to invoking the method handle
+                }
+            }
+            MethodHandle erased = handle.asType(samType);
+            if (valueType == int.class) {
+                return (F) (ObjIntConsumer<Object>) (target, value) -> invoke(erased, target, value);
+            }
+            else if (valueType == long.class) {
+                return (F) (ObjLongConsumer<Object>) (target, value) -> invoke(erased, target, value);
+            }
+            else if (valueType == double.class) {
+                return (F) (ObjDoubleConsumer<Object>) (target, value) -> invoke(erased, target, value);
+            }
+            return (F) (BiConsumer<Object, Object>) (target, value) -> invoke(erased, target, value);
+        }
+
+        private static void invoke(MethodHandle handle, Object target, Object value) {
+            try {
+                handle.invoke(target, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    //Boxed reader of a column as the given Java type, primitives get 0 for null values
+    private static Reader reader(Class<?> type, int columnIndex) {
+        if (type == int.class || type == Integer.class) {
+            return nullable(type, row -> row.getInt(columnIndex), columnIndex);
+        }
+        else if (type == long.class || type == Long.class) {
+            return nullable(type, row -> row.getLong(columnIndex), columnIndex);
+        }
+        else if (type == double.class || type == Double.class) {
+            return nullable(type, row -> row.getDouble(columnIndex), columnIndex);
+        }
+        else if (type == float.class || type == Float.class) {
+            return nullable(type, row -> row.getFloat(columnIndex), columnIndex);
+        }
+        else if (type == short.class || type == Short.class) {
+            return nullable(type, row -> (short) row.getInt(columnIndex), columnIndex);
+        }
+        else if (type == byte.class || type == Byte.class) {
+            return nullable(type, row -> (byte) row.getInt(columnIndex), columnIndex);
+        }
+        else if (type == boolean.class || type == Boolean.class) {
+            return nullable(type, row -> row.getBoolean(columnIndex), columnIndex);
+        }
+        else if (type == String.class) {
+            return row -> row.getString(columnIndex);
+        }
+        else if (type == BigDecimal.class) {
+            return row -> row.getBigDecimal(columnIndex);
+        }
+        else if (type == BigInteger.class) {
+            return row -> row.getBigInteger(columnIndex);
+        }
+        else if (type == LocalDate.class) {
+            return row -> row.getLocalDate(columnIndex);
+        }
+        else if (type == LocalTime.class) {
+            return row -> row.getLocalTime(columnIndex);
+        }
+        else if (type == LocalDateTime.class) {
+            return row -> row.getLocalDateTime(columnIndex);
+        }
+        else if (type == java.sql.Date.class) {
+            return row -> row.isNull(columnIndex) ? null : java.sql.Date.valueOf(row.getLocalDate(columnIndex));
+        }
+        else if (type == java.sql.Time.class) {
+            return row -> row.isNull(columnIndex) ? null : java.sql.Time.valueOf(row.getLocalTime(columnIndex));
+        }
+        else if (type == java.sql.Timestamp.class) {
+            return row -> row.isNull(columnIndex) ? null : java.sql.Timestamp.valueOf(row.getLocalDateTime(columnIndex));
+        }
+        else if (type == byte[].class) {
+            return row -> row.getBytes(columnIndex);
+        }
+        return row -> row.getObject(columnIndex, type);
+    }
+
+    //Primitive targets get the getter's 0 for null values, boxed targets get null
+    private static Reader nullable(Class<?> type, Reader reader, int columnIndex) {
+        if (type.isPrimitive()) {
+            return reader;
+        }
+        return row -> row.isNull(columnIndex) ? null : reader.read(row);
+    }
+}
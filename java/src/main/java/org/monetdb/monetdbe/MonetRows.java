@@ -0,0 +1,130 @@
+package org.monetdb.monetdbe;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * All rows of a result set as a sized and splittable sequence, see {@link MonetColumnarResult#getRows()}.
+ *
+ * The columns are fetched once when the rows are created and are only read afterwards, so the rows can
+ * be split into ranges and processed by a parallel stream without any locking:
+ * <pre>
+ * MonetRows rows = rs.unwrap(MonetColumnarResult.class).getRows();
+ * double total = rows.parallelStream().mapToDouble(row -&gt; score(row.getString(1), row.getDouble(2))).sum();
+ * </pre>
+ * The rows read the buffers of the result, so they must only be used while the result set is open.
+ */
+public final class MonetRows implements Iterable<MonetRow> {
+    private final MonetColumn[] columns;
+    private final int size;
+
+    MonetRows(MonetColumn[] columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /** @param row the first row is 0 */
+    public MonetRow get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of bounds, the result has " + size + " rows");
+        }
+        return new MonetRow(columns, row);
+    }
+
+    @Override
+    public Iterator<MonetRow> iterator() {
+        return new Iterator<MonetRow>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public MonetRow next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return new MonetRow(columns, next++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<MonetRow> spliterator() {
+        return new RowSpliterator(columns, 0, size);
+    }
+
+    public Stream<MonetRow> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<MonetRow> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    //Rows [from, to), splitting hands the first half of the remaining rows to the new spliterator
+    static final class RowSpliterator implements Spliterator<MonetRow> {
+        private final MonetColumn[] columns;
+        private int from;
+        private final int to;
+
+        RowSpliterator(MonetColumn[] columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super MonetRow> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(new MonetRow(columns, from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super MonetRow> action) {
+            int end = to;
+            for (int row = from; row < end; row++) {
+                action.accept(new MonetRow(columns, row));
+            }
+            from = end;
+        }
+
+        @Override
+        public Spliterator<MonetRow> trySplit() {
+            int mid = (from + to) >>> 1;
+            if (mid <= from) {
+                return null;
+            }
+            Spliterator<MonetRow> prefix = new RowSpliterator(columns, from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.monetdb.monetdbe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a SQL script into its statements, so every statement's result can be returned by
+ * {@link MonetStatement#getMoreResults()}.
+ *
+ * Semicolons only end a statement outside of string literals, quoted identifiers, comments and
+ * BEGIN ... END bodies (of functions, procedures and triggers). Statements holding only whitespace
+ * and comments are left out. The words of a statement tell the result cache which tables it reads or changes.
+ */
+final class MonetScript {
+    private MonetScript() {
+    }
+
+    static List<String> split(String sql) {
+        List<String> statements = new ArrayList<>();
+        //Most queries are a single statement, they don't need to be scanned
+        if (sql.indexOf(';') < 0) {
+            statements.add(sql);
+            return statements;
+        }
+
+        int length = sql.length();
+        int start = 0;
+        int depth = 0;
+        boolean hasContent = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i, c);
+                hasContent = true;
+            }
+            else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            }
+            else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            }
+            else if (Character.isLetter(c) || c == '_') {
+                int end = i + 1;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+                    end++;
+                }
+                depth += blockDepthChange(sql, i, end, depth);
+                hasContent = true;
+                i = end;
+            }
+            else if (c == ';' && depth == 0) {
+                if (hasContent) {
+                    statements.add(sql.substring(start, i + 1));
+                }
+                start = i + 1;
+                hasContent = false;
+                i++;
+            }
+            else {
+                if (!Character.isWhitespace(c)) {
+                    hasContent = true;
+                }
+                i++;
+            }
+        }
+        if (hasContent) {
+            statements.add(sql.substring(start));
+        }
+        return statements;
+    }
+
+    /**
+     * Lowercased identifiers and keywords of a statement, without string literals and comments.
+     * Qualified names are a single word with their parts joined by dots, quoted identifiers lose their quotes.
+     */
+    static List<String> words(String sql) {
+        List<String> words = new ArrayList<>();
+        int length = sql.length();
+        StringBuilder word = null;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end;
+            String part = null;
+            if (c == '"') {
+                end = skipQuoted(sql, i, c);
+                part = sql.substring(i + 1, Math.max(i + 1, end - 1)).replace("\"\"", "\"");
+            }
+            else if (Character.isLetter(c) || c == '_') {
+                end = i + 1;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+                    end++;
+                }
+                part = sql.substring(i, end);
+            }
+            else if (c == '\'') {
+                end = skipQuoted(sql, i, c);
+            }
+            else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int newline = sql.indexOf('\n', i);
+                end = newline < 0 ? length : newline + 1;
+            }
+            else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int close = sql.indexOf("*/", i + 2);
+                end = close < 0 ? length : close + 2;
+            }
+            else {
+                end = i + 1;
+            }
+
+            if (part != null) {
+                //A part directly after a dot belongs to the previous word
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                word.append(part.toLowerCase());
+                if (end < length && sql.charAt(end) == '.') {
+                    word.append('.');
+                    end++;
+                }
+                else {
+                    words.add(word.toString());
+                    word = null;
+                }
+            }
+            else if (word != null) {
+                words.add(word.toString());
+                word = null;
+            }
+            i = end;
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    //Returns the index after the closing quote, a doubled quote or a backslash escape doesn't close the literal
+    private static int skipQuoted(String sql, int open, char quote) {
+        int length = sql.length();
+        int i = open + 1;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote == '\'') {
+                i += 2;
+            }
+            else if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                }
+                else {
+                    return i + 1;
+                }
+            }
+            else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    //BEGIN and CASE open a block which is closed by END, END IF, END WHILE and END LOOP close blocks which were never counted
+    private static int blockDepthChange(String sql, int start, int end, int depth) {
+        int length = end - start;
+        if (length == 5 && sql.regionMatches(true, start, "BEGIN", 0, 5)) {
+            String next = nextWord(sql, end);
+            return next.equalsIgnoreCase("TRANSACTION") || next.equalsIgnoreCase("WORK") ? 0 : 1;
+        }
+        else if (length == 4 && sql.regionMatches(true, start, "CASE", 0, 4)) {
+            return 1;
+        }
+        else if (length == 3 && depth > 0 && sql.regionMatches(true, start, "END", 0, 3)) {
+            String next = nextWord(sql, end);
+            return next.equalsIgnoreCase("IF") || next.equalsIgnoreCase("WHILE") || next.equalsIgnoreCase("LOOP") ? 0 : -1;
+        }
+        return 0;
+    }
+
+    private static String nextWord(String sql, int from) {
+        int length = sql.length();
+        int start = from;
+        while (start < length && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < length && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        return sql.substring(start, end);
+    }
+}
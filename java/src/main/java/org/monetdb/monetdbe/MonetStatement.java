@@ -1,6 +1,7 @@
 package org.monetdb.monetdbe;
 
 import java.sql.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,19 +14,27 @@ public class MonetStatement extends MonetWrapper implements Statement {
 
     protected int updateCount = -1;
     protected long largeUpdateCount = -1;
+    //Results of a multi-statement script after the current one, each a MonetResultSet or a Long update count
+    private final ArrayDeque<Object> pendingResults = new ArrayDeque<>();
+    //Result sets kept open by getMoreResults(KEEP_CURRENT_RESULT), closed by CLOSE_ALL_RESULTS
+    private final List<MonetResultSet> keptResults = new ArrayList<>();
+    //Set while old results are closed by a new execute, which must not close this statement on completion
+    private boolean discardingResults = false;
     private int queryTimeout = 0;
 
     private boolean closed = false;
     private boolean closeOnCompletion = false;
 
     //ResultSet variables
-    private int maxRows = 0;
-    //This one isn't used right now
-    private long largeMaxRows = 0;
-    //These ones are ignored
+    //Set by both setMaxRows and setLargeMaxRows, result sets only convert the first maxRows rows
+    private long maxRows = 0;
+    //Forward-only result sets are converted in windows of fetchSize rows
     private int fetchSize;
-    private int fetchDirection = ResultSet.FETCH_UNKNOWN;
     private int resultSetType = ResultSet.TYPE_SCROLL_INSENSITIVE;
+    //Null until set, then the connection's result_materialization is used
+    private MonetResultMaterialization resultMaterialization;
+    //These ones are ignored
+    private int fetchDirection = ResultSet.FETCH_UNKNOWN;
     private int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
     private int resultSetHoldability = ResultSet.HOLD_CURSORS_OVER_COMMIT;
 
@@ -42,7 +51,7 @@ public class MonetStatement extends MonetWrapper implements Statement {
         this.queryTimeout = queryTimeout;
     }
 
-    //TODO Should we delete this one? We don't user these ResultSet variables
+    //Only the resultSetType is used, a TYPE_FORWARD_ONLY statement with a fetch size streams its result sets
     public MonetStatement(MonetConnection conn, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
         this.conn = conn;
         this.resultSet = null;
@@ -74,11 +83,13 @@ public class MonetStatement extends MonetWrapper implements Statement {
         if (resultSet != null && !resultSet.isClosed()) {
             resultSet.close();
         }
+        closePendingResults();
         //If called on a PreparedStatement object, it should free the prepared statement in the database
         if (this instanceof MonetPreparedStatement) {
             //This check is here in case the Prepared Statement was not successful in the prepare stage
             if (((MonetPreparedStatement) this).statementNative != null) {
-                MonetNative.monetdbe_cleanup_statement(conn.getDbNative(),((MonetPreparedStatement) this).statementNative);
+                MonetPreparedStatement prepared = (MonetPreparedStatement) this;
+                conn.callNative(() -> MonetNative.monetdbe_cleanup_statement(conn.getDbNative(), prepared.statementNative));
             }
         }
         closed = true;
@@ -109,7 +120,7 @@ public class MonetStatement extends MonetWrapper implements Statement {
     //Called by the result set object when closed
     //Close statement if closeOnCompletion() was called
     protected void closeIfComplete () throws SQLException {
-        if (!closed && closeOnCompletion) {
+        if (!closed && closeOnCompletion && !discardingResults && pendingResults.isEmpty()) {
             close();
         }
     }
@@ -125,7 +136,7 @@ public class MonetStatement extends MonetWrapper implements Statement {
         this.updateCount = -1;
 
         //ResultSet and UpdateCount is set within monetdbe_query
-        String error_msg = MonetNative.monetdbe_query(conn.getDbNative(),sql,this,false, getMaxRows());
+        String error_msg = query(sql, false);
         if (error_msg != null) {
             this.updateCount = lastUpdateCount;
             this.resultSet = lastResultSet;
@@ -167,7 +178,7 @@ public class MonetStatement extends MonetWrapper implements Statement {
         this.largeUpdateCount = -1;
 
         //ResultSet and UpdateCount is set within monetdbe_query
-        String error_msg = MonetNative.monetdbe_query(conn.getDbNative(),sql,this, true, getMaxRows());
+        String error_msg = query(sql, true);
         if (error_msg != null) {
             this.largeUpdateCount = lastUpdateCount;
             this.resultSet = lastResultSet;
@@ -181,6 +192,125 @@ public class MonetStatement extends MonetWrapper implements Statement {
         }
     }
 
+    //Runs a single statement directly, a script of several statements is run in one native call which
+    //queues the result of every statement, the first one then becomes the current result
+    private String query(String sql, boolean largeUpdate) throws SQLException {
+        closePendingResults();
+        List<String> statements = MonetScript.split(sql);
+        int maxRows = getMaxRows();
+        if (statements.size() <= 1) {
+            return executeWithResultCache(sql, null, largeUpdate, () -> conn.callNative(() -> MonetNative.monetdbe_query(conn.getDbNative(),sql,this,largeUpdate, maxRows)));
+        }
+        String error_msg = conn.callNative(() -> MonetNative.monetdbe_query_script(conn.getDbNative(),statements.toArray(new String[0]),this, maxRows));
+        MonetResultCache cache = conn.getInvalidatedResultCache();
+        if (cache != null) {
+            //Only the statements which ran can have changed tables
+            for (int i = 0; i < pendingResults.size(); i++) {
+                conn.afterStatement(cache, MonetScript.words(statements.get(i)));
+            }
+        }
+        if (error_msg != null) {
+            //The statements before the failing one were executed, but their results are dropped
+            int failed = pendingResults.size() + 1;
+            closePendingResults();
+            return error_msg + " (statement " + failed + " of " + statements.size() + " in the script)";
+        }
+        nextResult();
+        return null;
+    }
+
+    //Native call running a single statement, which sets its result on this statement
+    interface NativeExecution {
+        String execute() throws SQLException;
+    }
+
+    //Returns a cached result for queries if the connection has a result cache, otherwise the statement is run
+    //and its result is cached. Afterwards the cached results of the tables the statement may have changed are invalidated
+    String executeWithResultCache(String sql, Object[] parameters, boolean largeUpdate, NativeExecution execution) throws SQLException {
+        MonetResultCache cache = conn.getInvalidatedResultCache();
+        if (cache == null) {
+            return execution.execute();
+        }
+        List<String> words = MonetScript.words(sql);
+        MonetResultCache readable = conn.getReadableResultCache();
+        MonetResultCache.Key key = null;
+        long version = 0;
+        if (readable != null && !largeUpdate && MonetResultCache.isQuery(words)) {
+            key = MonetResultCache.Key.of(conn.getCacheSchema(), sql, getMaxRows(), parameters);
+            if (key != null) {
+                MonetResultSet cached = readable.get(key, this);
+                if (cached != null) {
+                    resultSet = cached;
+                    return null;
+                }
+                version = readable.version();
+            }
+        }
+
+        String error_msg = execution.execute();
+        if (error_msg == null) {
+            if (key != null && resultSet != null) {
+                try {
+                    readable.put(key, version, resultSet);
+                } catch (SQLException e) {
+                    addWarning("Result could not be cached: " + e.getMessage(), "01000");
+                }
+            }
+            conn.afterStatement(cache, words);
+        }
+        return error_msg;
+    }
+
+    //Called by monetdbe_query_script after each statement of a script, returnResult set its result on this statement
+    void queueScriptResult() {
+        if (resultSet != null) {
+            pendingResults.add(resultSet);
+        }
+        else {
+            pendingResults.add(largeUpdateCount);
+        }
+        resultSet = null;
+        updateCount = -1;
+        largeUpdateCount = -1;
+    }
+
+    //Makes the next queued result current, returns true if it is a result set
+    private boolean nextResult() {
+        Object next = pendingResults.poll();
+        resultSet = null;
+        updateCount = -1;
+        largeUpdateCount = -1;
+        if (next instanceof MonetResultSet) {
+            resultSet = (MonetResultSet) next;
+            return true;
+        }
+        else if (next != null) {
+            largeUpdateCount = (Long) next;
+            updateCount = (int) Math.min(largeUpdateCount, Integer.MAX_VALUE);
+        }
+        return false;
+    }
+
+    private void closePendingResults() throws SQLException {
+        discardingResults = true;
+        try {
+            for (Object result : pendingResults) {
+                if (result instanceof MonetResultSet) {
+                    ((MonetResultSet) result).close();
+                }
+            }
+            for (MonetResultSet kept : keptResults) {
+                if (!kept.isClosed()) {
+                    kept.close();
+                }
+            }
+        } finally {
+            pendingResults.clear();
+            keptResults.clear();
+            discardingResults = false;
+        }
+    }
+
     //Batch executes
     @Override
     public int[] executeBatch() throws SQLException {
@@ -258,9 +388,29 @@ public class MonetStatement extends MonetWrapper implements Statement {
     @Override
     public boolean getMoreResults(int current) throws SQLException {
         checkNotClosed();
-        //TODO GETMORERESULTS
-        //Is it possible to have more than one ResultSet returning from a batch query in MonetDBe?
-        return false;
+        if (current != Statement.CLOSE_CURRENT_RESULT && current != Statement.KEEP_CURRENT_RESULT && current != Statement.CLOSE_ALL_RESULTS)
+            throw new SQLException("Illegal value for current: " + current, "M1M05");
+
+        if (current == Statement.CLOSE_ALL_RESULTS) {
+            for (MonetResultSet kept : keptResults) {
+                if (!kept.isClosed()) {
+                    kept.close();
+                }
+            }
+            keptResults.clear();
+        }
+        if (resultSet != null && !resultSet.isClosed()) {
+            if (current == Statement.KEEP_CURRENT_RESULT) {
+                keptResults.add(resultSet);
+            }
+            else {
+                //The result set must not close this statement while results are left
+                MonetResultSet currentResultSet = resultSet;
+                resultSet = null;
+                currentResultSet.close();
+            }
+        }
+        return nextResult();
     }
 
     @Override
@@ -408,6 +558,19 @@ public class MonetStatement extends MonetWrapper implements Statement {
         return fetchSize;
     }
 
+    //How the result sets of this statement hold their rows, defaults to the connection's result_materialization
+    public void setResultMaterialization(MonetResultMaterialization materialization) throws SQLException {
+        checkNotClosed();
+        if (materialization == null)
+            throw new SQLException("Result materialization can't be null", "M1M05");
+        this.resultMaterialization = materialization;
+    }
+
+    public MonetResultMaterialization getResultMaterialization() throws SQLException {
+        checkNotClosed();
+        return resultMaterialization != null ? resultMaterialization : conn.getResultMaterialization();
+    }
+
     @Override
     public int getResultSetConcurrency() throws SQLException {
         checkNotClosed();
@@ -452,13 +615,15 @@ public class MonetStatement extends MonetWrapper implements Statement {
     @Override
     public void setLargeMaxRows(long max) throws SQLException {
         checkNotClosed();
-        this.largeMaxRows = max;
+        if (max < 0)
+            throw new SQLException("Illegal max value: " + max, "M1M05");
+        maxRows = max;
     }
 
     @Override
     public long getLargeMaxRows() throws SQLException {
         checkNotClosed();
-        return largeMaxRows;
+        return maxRows;
     }
 
     //The old implementation returned a value which overflows the java int
@@ -482,7 +647,8 @@ public class MonetStatement extends MonetWrapper implements Statement {
     @Override
     public int getMaxRows() throws SQLException {
         checkNotClosed();
-        return maxRows;
+        //Result sets can't have more than Integer.MAX_VALUE rows, so a larger limit doesn't limit anything
+        return (int) Math.min(maxRows, Integer.MAX_VALUE);
     }
 
     //Old code
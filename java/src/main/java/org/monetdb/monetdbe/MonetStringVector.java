@@ -0,0 +1,39 @@
+package org.monetdb.monetdbe;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A character column, stored as UTF-8 bytes. Only {@link #getString(int)}
+ * decodes them, the other methods work on the bytes directly.
+ * Null rows behave as the empty string.
+ */
+public interface MonetStringVector extends MonetVector {
+    /**
+     * UTF-8 bytes of all rows, row i is stored from offset i up to offset i + 1
+     * of {@link #getUTF8Offsets()}, the offsets of the first row start at 0.
+     *
+     * @return a read-only view of the bytes
+     */
+    ByteBuffer getUTF8Data();
+
+    /** @return a read-only view of the size() + 1 offsets into {@link #getUTF8Data()} */
+    IntBuffer getUTF8Offsets();
+
+    /** @return the decoded value, or null for null rows */
+    String getString(int row);
+
+    /** @return a read-only view of the UTF-8 bytes, or null for null rows */
+    ByteBuffer getUTF8(int row);
+
+    int getUTF8Length(int row);
+
+    /** @return the number of bytes copied into dst */
+    int copyUTF8(int row, byte[] dst, int dstOffset);
+
+    /** Compares as unsigned bytes, which is the order of the code points */
+    int compareUTF8(int row, byte[] utf8);
+
+    /** @return the same value as {@link java.util.Arrays#hashCode(byte[])} on the UTF-8 bytes */
+    int hashUTF8(int row);
+}
@@ -0,0 +1,23 @@
+package org.monetdb.monetdbe;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * A DATE, TIME or TIMESTAMP column. The long values are epoch days for DATE
+ * columns, microseconds since midnight for TIME columns and microseconds
+ * since 1970-01-01T00:00 for TIMESTAMP columns.
+ */
+public interface MonetTemporalVector extends MonetLongVector {
+    long getEpochDay(int row);
+
+    long getEpochMicros(int row);
+
+    /** @return the value as a java.time object, or null for null rows */
+    LocalDate getLocalDate(int row);
+
+    LocalTime getLocalTime(int row);
+
+    LocalDateTime getLocalDateTime(int row);
+}
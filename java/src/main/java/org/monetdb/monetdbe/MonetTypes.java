@@ -1,33 +1,17 @@
 package org.monetdb.monetdbe;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.sql.*;
 
 final class MonetTypes {
     //Conversions between MonetDB and SQL
     //Monet to SQL
-    static final java.util.Map<Integer, Integer> typeMapMonetToSQL = new java.util.HashMap<Integer, Integer>();
-    static {
-        typeMapMonetToSQL.put(0, Types.BOOLEAN);
-        typeMapMonetToSQL.put(1,Types.TINYINT);
-        typeMapMonetToSQL.put(2, Types.SMALLINT);
-        typeMapMonetToSQL.put(3, Types.INTEGER);
-        typeMapMonetToSQL.put(4, Types.BIGINT);
-        typeMapMonetToSQL.put(5, Types.NUMERIC);
-        typeMapMonetToSQL.put(6, Types.INTEGER);
-        typeMapMonetToSQL.put(7, Types.REAL);
-        typeMapMonetToSQL.put(8, Types.DOUBLE);
-        typeMapMonetToSQL.put(9, Types.VARCHAR);
-        typeMapMonetToSQL.put(10, Types.BLOB);
-        typeMapMonetToSQL.put(11, Types.DATE);
-        typeMapMonetToSQL.put(12, Types.TIME);
-        typeMapMonetToSQL.put(13, Types.TIMESTAMP);
-        typeMapMonetToSQL.put(14, Types.NULL);
-    }
+    //Indexed by the monetdbe type
+    static final int[] typeMapMonetToSQL = {Types.BOOLEAN, Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.NUMERIC, Types.INTEGER,
+            Types.REAL, Types.DOUBLE, Types.VARCHAR, Types.BLOB, Types.DATE, Types.TIME, Types.TIMESTAMP, Types.NULL};
 
     static int getSQLTypeFromMonet(final int monetdbetype) {
-        return typeMapMonetToSQL.get(monetdbetype);
+        return typeMapMonetToSQL[monetdbetype];
     }
 
     static final String[] sqlDefaultTypeNames = {"BOOLEAN","TINYINT","SMALLINT","INTEGER","BIGINT","INTEGER","REAL","DOUBLE","VARCHAR","BLOB","DATE","TIME","TIMESTAMP","NULL"};
@@ -37,38 +21,51 @@ final class MonetTypes {
     }
 
     //SQL to Monet
-    static final java.util.Map<Integer, Integer> typeMapSQLToMonet = new java.util.HashMap<Integer, Integer>();
-    static {
-        typeMapSQLToMonet.put(Types.BOOLEAN,0);
-        typeMapSQLToMonet.put(Types.BIT,0);
-        typeMapSQLToMonet.put(Types.TINYINT,1);
-        typeMapSQLToMonet.put(Types.SMALLINT,2);
-        typeMapSQLToMonet.put(Types.INTEGER,3);
-        typeMapSQLToMonet.put(Types.BIGINT,4);
-        typeMapSQLToMonet.put(Types.NUMERIC,5);
-        typeMapSQLToMonet.put(Types.DECIMAL,5);
-        typeMapSQLToMonet.put(Types.REAL,7);
-        typeMapSQLToMonet.put(Types.FLOAT,7);
-        typeMapSQLToMonet.put(Types.DOUBLE,8);
-        typeMapSQLToMonet.put(Types.CHAR,9);
-        typeMapSQLToMonet.put(Types.VARCHAR,9);
-        typeMapSQLToMonet.put(Types.LONGVARCHAR,9);
-        typeMapSQLToMonet.put(Types.NCHAR,9);
-        typeMapSQLToMonet.put(Types.LONGNVARCHAR,9);
-        typeMapSQLToMonet.put(Types.CLOB,9);
-        typeMapSQLToMonet.put(Types.BLOB,10);
-        typeMapSQLToMonet.put(Types.VARBINARY,10);
-        typeMapSQLToMonet.put(Types.DATALINK,10);
-        typeMapSQLToMonet.put(Types.LONGVARBINARY,10);
-        typeMapSQLToMonet.put(Types.BINARY,10);
-        typeMapSQLToMonet.put(Types.DATE,11);
-        typeMapSQLToMonet.put(Types.TIME,12);
-        typeMapSQLToMonet.put(Types.TIMESTAMP,13);
-        typeMapSQLToMonet.put(Types.NULL,14);
-    }
-
     static int getMonetTypeFromSQL(final int sqltype) {
-        return typeMapSQLToMonet.get(sqltype);
+        switch (sqltype) {
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return 0;
+            case Types.TINYINT:
+                return 1;
+            case Types.SMALLINT:
+                return 2;
+            case Types.INTEGER:
+                return 3;
+            case Types.BIGINT:
+                return 4;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return 5;
+            case Types.REAL:
+            case Types.FLOAT:
+                return 7;
+            case Types.DOUBLE:
+                return 8;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+                return 9;
+            case Types.BLOB:
+            case Types.VARBINARY:
+            case Types.DATALINK:
+            case Types.LONGVARBINARY:
+            case Types.BINARY:
+                return 10;
+            case Types.DATE:
+                return 11;
+            case Types.TIME:
+                return 12;
+            case Types.TIMESTAMP:
+                return 13;
+            case Types.NULL:
+                return 14;
+            default:
+                throw new IllegalArgumentException("SQL type " + sqltype + " has no monetdbe type");
+        }
     }
 
     final static int getMonetTypeIntFromSQLName(final String sqlTypeName) {
@@ -175,33 +172,7 @@ final class MonetTypes {
     //Conversions between MonetDB and Java
     //Allowed conversions to Java
     static boolean convertTojavaClass (final int monetdbetype, final Class<?> javaClass) {
-        if (javaClass == String.class) {
-            return (monetdbetype != 10 && monetdbetype >= 0 && monetdbetype <= 13);
-        }
-        else if (javaClass == Boolean.class || javaClass == Short.class || javaClass == Integer.class || javaClass == Long.class || javaClass == Float.class || javaClass == Double.class || javaClass == BigDecimal.class) {
-            return (monetdbetype >= 0 && monetdbetype <= 9);
-        }
-        else if (javaClass == Date.class) {
-            return (monetdbetype == 9 || monetdbetype == 11 || monetdbetype == 13);
-        }
-        else if (javaClass == Time.class) {
-            return (monetdbetype == 9 || monetdbetype == 12 || monetdbetype == 13);
-        }
-        else if (javaClass == Timestamp.class) {
-            return (monetdbetype >= 9 && monetdbetype <= 13);
-        }
-        else if (javaClass == Blob.class || javaClass == byte[].class) {
-            return (monetdbetype == 10);
-        }
-        else if (javaClass == Clob.class) {
-            return (monetdbetype == 9);
-        }
-        else if (javaClass == BigInteger.class) {
-            return (monetdbetype == 4 || monetdbetype == 5 || monetdbetype == 9);
-        }
-        else {
-            return false;
-        }
+        return MonetConversions.find(javaClass, monetdbetype) != null;
     }
 
     //Monet to Java
@@ -217,27 +188,10 @@ final class MonetTypes {
 
     //Sizes in bytes (static size types)
     static int getMonetSize(final int monetdbetype) {
-        return sizeMapMonet.get(monetdbetype);
+        return sizeMapMonet[monetdbetype];
     }
 
-    static final java.util.Map<Integer, Integer> sizeMapMonet = new java.util.HashMap<Integer, Integer>();
-    static {
-        sizeMapMonet.put(0, 1);
-        sizeMapMonet.put(1, 1);
-        sizeMapMonet.put(2, 2);
-        sizeMapMonet.put(3, 4);
-        sizeMapMonet.put(4, 8);
-        sizeMapMonet.put(5, 16);
-        sizeMapMonet.put(6, 4);
-        sizeMapMonet.put(7, 4);
-        sizeMapMonet.put(8, 8);
-        sizeMapMonet.put(9, 0);
-        sizeMapMonet.put(10, 0);
-        sizeMapMonet.put(11, 0);
-        sizeMapMonet.put(12, 0);
-        sizeMapMonet.put(13, 0);
-        sizeMapMonet.put(14, 0);
-    }
+    static final int[] sizeMapMonet = {1, 1, 2, 4, 8, 16, 4, 4, 8, 0, 0, 0, 0, 0, 0};
 
     //SQL string name to SQL type integer
     static final java.util.Map<String, Integer> typeMapSQLNameToSQLInt = new java.util.HashMap<String, Integer>();
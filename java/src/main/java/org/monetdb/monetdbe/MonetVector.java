@@ -0,0 +1,42 @@
+package org.monetdb.monetdbe;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A column of a result set, see {@link MonetColumnarResult}.
+ * Rows are numbered from 0 to <code>size() - 1</code>.
+ */
+public interface MonetVector {
+    String getName();
+
+    /** @return the monetdbe type of the column, as in {@link MonetTypes} */
+    int getMonetdbeType();
+
+    int size();
+
+    /** @return the number of decimal digits, the values of decimal columns are unscaled */
+    int getScale();
+
+    boolean isNull(int row);
+
+    /**
+     * @return the value as a boxed object (unscaled for decimals, a BigInteger for HUGEINT), or null for null rows
+     */
+    Object getObject(int row);
+
+    /**
+     * Validity bitmap of the column: bit (row &amp; 7) of byte (row &gt;&gt; 3) is set
+     * if the row is not null.
+     *
+     * @return a read-only view of the bitmap, or null if the column has no null rows
+     */
+    ByteBuffer getValidity();
+
+    /**
+     * Values of a fixed width column as they are stored: little-endian, one value per row and 0 for null rows.
+     * BOOLEAN rows are one byte, DATE rows int epoch days and TIME and TIMESTAMP rows long microseconds.
+     *
+     * @return a read-only view of the values, or null for VARCHAR and BLOB columns
+     */
+    ByteBuffer getFixedData();
+}
@@ -2,7 +2,14 @@
 #include "org_monetdb_monetdbe_MonetNative.h"
 #include "monetdbe.h"
 #include <string.h>
+#include <stdint.h>
 #include <stdio.h>
+#include <errno.h>
+#ifndef _WIN32
+#include <fcntl.h>
+#include <sys/stat.h>
+#include <unistd.h>
+#endif
 
 void set_options_mapi (JNIEnv *env, monetdbe_options *opts, jstring j_port, jstring j_sock) {
     //MAPI server
@@ -208,302 +215,945 @@ JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1query(
     }
 }
 
-void addColumnVar(JNIEnv *env, jobjectArray j_columns, int index, int type, char *name, jobjectArray j_data)
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1query_1script(JNIEnv *env, jclass self, jobject j_db, jobjectArray j_statements, jobject j_statement, jint maxrows)
 {
-    //Create Java class for result column and set it in the column array
+    monetdbe_database db = (*env)->GetDirectBufferAddress(env, j_db);
+    jclass statementClass = (*env)->FindClass(env, "org/monetdb/monetdbe/MonetStatement");
+    jmethodID queueResult = (*env)->GetMethodID(env, statementClass, "queueScriptResult", "()V");
+    jsize count = (*env)->GetArrayLength(env, j_statements);
+
+    //Every statement's result is set on the statement by returnResult and then queued, so the whole script is a single JNI call
+    for (jsize i = 0; i < count; i++)
+    {
+        //The local references of each statement's result are released before the next one
+        if ((*env)->PushLocalFrame(env, 16) < 0)
+        {
+            return NULL;
+        }
+        monetdbe_result **result = malloc(sizeof(monetdbe_result *));
+        monetdbe_cnt *affected_rows = malloc(sizeof(monetdbe_cnt));
+        //Return value for data definition queries (should not be changed by monetdbe_query)
+        (*affected_rows) = -2;
+
+        jstring j_sql = (jstring)(*env)->GetObjectArrayElement(env, j_statements, i);
+        char *sql = (char *)(*env)->GetStringUTFChars(env, j_sql, NULL);
+        char *error_msg = monetdbe_query(db, sql, result, affected_rows);
+        (*env)->ReleaseStringUTFChars(env, j_sql, sql);
+        if (error_msg)
+        {
+            free(result);
+            free(affected_rows);
+            (*env)->PopLocalFrame(env, NULL);
+            return (*env)->NewStringUTF(env, (const char *)error_msg);
+        }
+        //Large update counts, the statement narrows them for getUpdateCount
+        returnResult(env, j_statement, 1, result, affected_rows, maxrows);
+        (*env)->CallVoidMethod(env, j_statement, queueResult);
+        (*env)->PopLocalFrame(env, NULL);
+        if ((*env)->ExceptionCheck(env))
+        {
+            return NULL;
+        }
+    }
+    return NULL;
+}
+
+jobject newColumnBlob(JNIEnv *env, int type, char *name, jobjectArray j_data, jobject j_validity)
+{
+    //Create Java class for result column
     jstring j_name = (*env)->NewStringUTF(env, (const char *)name);
     jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
-    jmethodID constructor = (*env)->GetMethodID(env, j_column, "<init>", "(Ljava/lang/String;I[Ljava/lang/Object;)V");
-    jobject j_column_object = (*env)->NewObject(env, j_column, constructor, j_name, type, j_data);
-    (*env)->SetObjectArrayElement(env, j_columns, index, j_column_object);
+    jmethodID factory = (*env)->GetStaticMethodID(env, j_column, "ofBlobs", "(Ljava/lang/String;I[Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)Lorg/monetdb/monetdbe/MonetColumn;");
+    return (*env)->CallStaticObjectMethod(env, j_column, factory, j_name, type, j_data, j_validity);
 }
 
-void parseColumnTimestamp(JNIEnv *env, jobjectArray j_columns, int index, monetdbe_column_timestamp *column)
+//Direct buffer owned by the JVM, so it stays valid after the native result is cleaned up
+jobject allocateDirect(JNIEnv *env, jint capacity)
 {
-    jclass j_timestamp_class = (*env)->FindClass(env, "Ljava/time/LocalDateTime;");
-    jmethodID timestamp_constructor = (*env)->GetStaticMethodID(env, j_timestamp_class, "of", "(IIIIIII)Ljava/time/LocalDateTime;");
+    jclass j_buffer_class = (*env)->FindClass(env, "Ljava/nio/ByteBuffer;");
+    jmethodID allocate = (*env)->GetStaticMethodID(env, j_buffer_class, "allocateDirect", "(I)Ljava/nio/ByteBuffer;");
+    return (*env)->CallStaticObjectMethod(env, j_buffer_class, allocate, capacity);
+}
 
-    jobjectArray j_data = (*env)->NewObjectArray(env, column->count, j_timestamp_class, NULL);
-    monetdbe_data_timestamp *timestamps = (monetdbe_data_timestamp *)column->data;
+//Validity bitmap of a column, bit i is set if row i is not null
+//It is only allocated when the first null row is found, so columns without nulls don't get one
+typedef struct
+{
+    jobject buffer;
+    unsigned char *bits;
+} validity_bitmap;
 
-    for (int i = 0; i < column->count; i++)
+void setNull(JNIEnv *env, validity_bitmap *validity, int row, int count)
+{
+    if (validity->bits == NULL)
     {
-        if (column->is_null(&timestamps[i]) == 1)
+        validity->buffer = allocateDirect(env, (count + 7) / 8);
+        if (validity->buffer == NULL)
         {
-            (*env)->SetObjectArrayElement(env, j_data, i, NULL);
-        }
-        else
-        {
-            monetdbe_data_time time = timestamps[i].time;
-            monetdbe_data_date date = timestamps[i].date;
-            jobject j_timestamp = (*env)->CallStaticObjectMethod(env, j_timestamp_class, timestamp_constructor, (int)date.year, (int)date.month, (int)date.day, (int)time.hours, (int)time.minutes, (int)time.seconds, ((int)time.ms)*1000000);
-            (*env)->SetObjectArrayElement(env, j_data, i, j_timestamp);
+            return;
         }
+        validity->bits = (*env)->GetDirectBufferAddress(env, validity->buffer);
+        memset(validity->bits, 0xFF, (count + 7) / 8);
     }
+    validity->bits[row >> 3] &= ~(1 << (row & 7));
+}
+
+jobject newColumnTemporal(JNIEnv *env, int type, char *name, jobject j_data, jobject j_validity)
+{
+    jstring j_name = (*env)->NewStringUTF(env, (const char *)name);
+    jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
+    jmethodID factory = (*env)->GetStaticMethodID(env, j_column, "ofFixed", "(Ljava/lang/String;ILjava/nio/ByteBuffer;DLjava/nio/ByteBuffer;)Lorg/monetdb/monetdbe/MonetColumn;");
+    return (*env)->CallStaticObjectMethod(env, j_column, factory, j_name, (jint)type, j_data, (jdouble)0, j_validity);
+}
 
-    //Inserting LocalDateTime[] in MonetColumn
-    addColumnVar(env, j_columns, index, column->type, column->name, j_data);
+//Days since 1970-01-01 in the proleptic Gregorian calendar (same as LocalDate.toEpochDay)
+jint epochDay(monetdbe_data_date date)
+{
+    int year = date.month <= 2 ? date.year - 1 : date.year;
+    int era = (year >= 0 ? year : year - 399) / 400;
+    int yearOfEra = year - era * 400;
+    int dayOfYear = (153 * (date.month > 2 ? date.month - 3 : date.month + 9) + 2) / 5 + date.day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
 }
 
-void parseColumnTime(JNIEnv *env, jobjectArray j_columns, int index, monetdbe_column_time *column)
+//The time struct holds milliseconds
+jlong microsOfDay(monetdbe_data_time time)
 {
-    jclass j_time_class = (*env)->FindClass(env, "Ljava/time/LocalTime;");
-    jmethodID time_constructor = (*env)->GetStaticMethodID(env, j_time_class, "of", "(IIII)Ljava/time/LocalTime;");
+    return ((time.hours * 60 + time.minutes) * 60 + time.seconds) * 1000000LL + time.ms * 1000LL;
+}
+
+int isNullTemporal(monetdbe_column *column, int row)
+{
+    switch (column->type)
+    {
+    case monetdbe_date:
+        return ((monetdbe_column_date *)column)->is_null(&((monetdbe_column_date *)column)->data[row]) == 1;
+    case monetdbe_time:
+        return ((monetdbe_column_time *)column)->is_null(&((monetdbe_column_time *)column)->data[row]) == 1;
+    default:
+        return ((monetdbe_column_timestamp *)column)->is_null(&((monetdbe_column_timestamp *)column)->data[row]) == 1;
+    }
+}
 
-    jobjectArray j_data = (*env)->NewObjectArray(env, column->count, j_time_class, NULL);
-    monetdbe_data_time *times = (monetdbe_data_time *)column->data;
+//Temporal columns are converted into direct buffers of epoch days (DATE), microseconds of the day (TIME)
+//or epoch microseconds (TIMESTAMP), java.time objects are only created on the Java side when requested
+jobject parseColumnTemporal(JNIEnv *env, monetdbe_column *column, int offset, int count)
+{
+    int width = column->type == monetdbe_date ? sizeof(jint) : sizeof(jlong);
+    jobject j_data = allocateDirect(env, count * width);
+    if (j_data == NULL)
+    {
+        return NULL;
+    }
+    jint *days = (*env)->GetDirectBufferAddress(env, j_data);
+    jlong *micros = (jlong *)days;
+    validity_bitmap validity = {NULL, NULL};
 
-    for (int i = 0; i < column->count; i++)
+    for (int i = 0; i < count; i++)
     {
-        if (column->is_null(&times[i]) == 1)
+        //Null rows are left at 0, allocateDirect zeroes the buffer
+        if (isNullTemporal(column, offset + i))
+        {
+            setNull(env, &validity, i, count);
+        }
+        else if (column->type == monetdbe_date)
+        {
+            days[i] = epochDay(((monetdbe_column_date *)column)->data[offset + i]);
+        }
+        else if (column->type == monetdbe_time)
         {
-            (*env)->SetObjectArrayElement(env, j_data, i, NULL);
+            micros[i] = microsOfDay(((monetdbe_column_time *)column)->data[offset + i]);
         }
         else
         {
-            jobject j_time = (*env)->CallStaticObjectMethod(env, j_time_class, time_constructor, (int)times[i].hours, (int)times[i].minutes, (int)times[i].seconds, (int)times[i].ms);
-            (*env)->SetObjectArrayElement(env, j_data, i, j_time);
+            monetdbe_data_timestamp timestamp = ((monetdbe_column_timestamp *)column)->data[offset + i];
+            micros[i] = epochDay(timestamp.date) * 86400000000LL + microsOfDay(timestamp.time);
         }
     }
+    if ((*env)->ExceptionCheck(env))
+    {
+        return NULL;
+    }
+
+    return newColumnTemporal(env, column->type, column->name, j_data, validity.buffer);
+}
 
-    //Inserting LocalTime[] in MonetColumn
-    addColumnVar(env, j_columns, index, column->type, column->name, j_data);
+jobject newColumnString(JNIEnv *env, int type, char *name, jobject j_data, jobject j_offsets, jobject j_validity)
+{
+    jstring j_name = (*env)->NewStringUTF(env, (const char *)name);
+    jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
+    jmethodID factory = (*env)->GetStaticMethodID(env, j_column, "ofStrings", "(Ljava/lang/String;ILjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)Lorg/monetdb/monetdbe/MonetColumn;");
+    return (*env)->CallStaticObjectMethod(env, j_column, factory, j_name, (jint)type, j_data, j_offsets, j_validity);
+}
+
+jobject newColumnDictionary(JNIEnv *env, int type, char *name, jobject j_data, jobject j_offsets, jobject j_codes, jobject j_validity)
+{
+    jstring j_name = (*env)->NewStringUTF(env, (const char *)name);
+    jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
+    jmethodID factory = (*env)->GetStaticMethodID(env, j_column, "ofDictionary", "(Ljava/lang/String;ILjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)Lorg/monetdb/monetdbe/MonetColumn;");
+    return (*env)->CallStaticObjectMethod(env, j_column, factory, j_name, (jint)type, j_data, j_offsets, j_codes, j_validity);
 }
 
-void parseColumnDate(JNIEnv *env, jobjectArray j_columns, int index, monetdbe_column_date *column)
+//String columns with at most one distinct value per DICTIONARY_RATIO rows are dictionary encoded
+#define DICTIONARY_RATIO 4
+#define DICTIONARY_MIN_ROWS 64
+#define DICTIONARY_MAX_SIZE 65536
+
+//Distinct values of a string column, found with an open addressing hash table over their bytes
+typedef struct
+{
+    int size;
+    int max_size;
+    int mask;
+    int *slots; //Code + 1 of the value in the slot, 0 for empty slots
+    const char **values;
+    size_t *lengths;
+    uint64_t *hashes;
+    size_t total;
+} string_dictionary;
+
+static int dictionaryInit(string_dictionary *dict, int count)
 {
-    jclass j_date_class = (*env)->FindClass(env, "Ljava/time/LocalDate;");
-    jmethodID date_constructor = (*env)->GetStaticMethodID(env, j_date_class, "of", "(III)Ljava/time/LocalDate;");
+    dict->size = 0;
+    dict->total = 0;
+    dict->max_size = count / DICTIONARY_RATIO < DICTIONARY_MAX_SIZE ? count / DICTIONARY_RATIO : DICTIONARY_MAX_SIZE;
+    int slots = 16;
+    while (slots < 2 * dict->max_size)
+    {
+        slots <<= 1;
+    }
+    dict->mask = slots - 1;
+    dict->slots = calloc(slots, sizeof(int));
+    dict->values = malloc(dict->max_size * sizeof(char *));
+    dict->lengths = malloc(dict->max_size * sizeof(size_t));
+    dict->hashes = malloc(dict->max_size * sizeof(uint64_t));
+    return dict->slots != NULL && dict->values != NULL && dict->lengths != NULL && dict->hashes != NULL;
+}
 
-    jobjectArray j_data = (*env)->NewObjectArray(env, column->count, j_date_class, NULL);
-    monetdbe_data_date *dates = (monetdbe_data_date *)column->data;
+static void dictionaryFree(string_dictionary *dict)
+{
+    free(dict->slots);
+    free(dict->values);
+    free(dict->lengths);
+    free(dict->hashes);
+}
 
-    for (int i = 0; i < column->count; i++)
+//Returns the code of the value, adding it if it is new, or -1 if the dictionary is full
+static int dictionaryCode(string_dictionary *dict, const char *value, size_t length)
+{
+    //FNV-1a
+    uint64_t hash = 14695981039346656037ULL;
+    for (size_t i = 0; i < length; i++)
     {
-        //printf("Date %d %d %d (is_null %d)\n", (int)dates[i].year, (int)dates[i].month, (int)dates[i].day, column->is_null(&dates[i]));
-        if (column->is_null(&dates[i]) == 1)
+        hash = (hash ^ (unsigned char)value[i]) * 1099511628211ULL;
+    }
+    int slot = (int)(hash & dict->mask);
+    while (dict->slots[slot] != 0)
+    {
+        int code = dict->slots[slot] - 1;
+        //Equal strings often share their storage in the string heap
+        if (dict->hashes[code] == hash && dict->lengths[code] == length && (dict->values[code] == value || memcmp(dict->values[code], value, length) == 0))
         {
-            (*env)->SetObjectArrayElement(env, j_data, i, NULL);
+            return code;
         }
-        else
+        slot = (slot + 1) & dict->mask;
+    }
+    if (dict->size == dict->max_size)
+    {
+        return -1;
+    }
+    int code = dict->size++;
+    dict->values[code] = value;
+    dict->lengths[code] = length;
+    dict->hashes[code] = hash;
+    dict->total += length;
+    dict->slots[slot] = code + 1;
+    return code;
+}
+
+//Distinct values as UTF-8 bytes with offsets, like a string column, and a code per row of 1 byte for up to 256 values and 2 bytes otherwise
+jobject newDictionaryColumn(JNIEnv *env, monetdbe_column_str *column, string_dictionary *dict, uint16_t *codes, int count, jobject j_validity)
+{
+    int width = dict->size <= 256 ? 1 : 2;
+    jobject j_data = allocateDirect(env, (jint)dict->total);
+    jobject j_offsets = allocateDirect(env, (dict->size + 1) * sizeof(jint));
+    jobject j_codes = allocateDirect(env, count * width);
+    if ((*env)->ExceptionCheck(env))
+    {
+        return NULL;
+    }
+
+    char *data = (*env)->GetDirectBufferAddress(env, j_data);
+    jint *offsets = (*env)->GetDirectBufferAddress(env, j_offsets);
+    jint position = 0;
+    offsets[0] = 0;
+    for (int code = 0; code < dict->size; code++)
+    {
+        memcpy(data + position, dict->values[code], dict->lengths[code]);
+        position += (jint)dict->lengths[code];
+        offsets[code + 1] = position;
+    }
+
+    if (width == 1)
+    {
+        uint8_t *codes8 = (*env)->GetDirectBufferAddress(env, j_codes);
+        for (int i = 0; i < count; i++)
         {
-            jobject j_date = (*env)->CallStaticObjectMethod(env, j_date_class, date_constructor, (int)dates[i].year, (int)dates[i].month, (int)dates[i].day);
-            (*env)->SetObjectArrayElement(env, j_data, i, j_date);
+            codes8[i] = (uint8_t)codes[i];
         }
     }
-
-    //Inserting LocalDate[] in MonetColumn
-    addColumnVar(env, j_columns, index, column->type, column->name, j_data);
+    else
+    {
+        memcpy((*env)->GetDirectBufferAddress(env, j_codes), codes, count * sizeof(uint16_t));
+    }
+    return newColumnDictionary(env, column->type, column->name, j_data, j_offsets, j_codes, j_validity);
 }
 
-void parseColumnString(JNIEnv *env, jobjectArray j_columns, int index, monetdbe_column_str *column)
+//Copies the UTF-8 bytes of all rows into one buffer, with an offsets buffer marking where each row starts and ends
+//No String objects are created, they are decoded on the Java side when requested
+//Columns with few distinct values get a dictionary of those values and a code per row instead
+jobject parseColumnString(JNIEnv *env, monetdbe_column_str *column, int offset, int count)
 {
-    jobjectArray j_data = (*env)->NewObjectArray(env, column->count, (*env)->FindClass(env, "Ljava/lang/String;"), NULL);
-    char **strings = (char **)column->data;
+    char **strings = (char **)column->data + offset;
+    size_t total = 0;
+    validity_bitmap validity = {NULL, NULL};
+
+    //Codes of the rows while the column may still be dictionary encoded, null rows get code 0
+    string_dictionary dict;
+    uint16_t *codes = NULL;
+    if (count >= DICTIONARY_MIN_ROWS)
+    {
+        codes = malloc(count * sizeof(uint16_t));
+        if (codes != NULL && !dictionaryInit(&dict, count))
+        {
+            dictionaryFree(&dict);
+            free(codes);
+            codes = NULL;
+        }
+    }
 
-    for (int i = 0; i < column->count; i++)
+    for (int i = 0; i < count; i++)
     {
         if (column->is_null(&strings[i]) == 1)
         {
-            (*env)->SetObjectArrayElement(env, j_data, i, NULL);
+            setNull(env, &validity, i, count);
+            if (codes != NULL)
+            {
+                codes[i] = 0;
+            }
         }
         else
         {
-            jobject j_string = (*env)->NewStringUTF(env, (const char *)(strings[i]));
-            (*env)->SetObjectArrayElement(env, j_data, i, j_string);
+            size_t length = strlen(strings[i]);
+            total += length;
+            if (codes != NULL)
+            {
+                int code = dictionaryCode(&dict, strings[i], length);
+                if (code < 0)
+                {
+                    //Too many distinct values
+                    dictionaryFree(&dict);
+                    free(codes);
+                    codes = NULL;
+                }
+                else
+                {
+                    codes[i] = (uint16_t)code;
+                }
+            }
         }
     }
 
-    //Inserting String[] in MonetColumn
-    addColumnVar(env, j_columns, index, column->type, column->name, j_data);
-}
+    if (codes != NULL)
+    {
+        jobject j_column = (*env)->ExceptionCheck(env) ? NULL : newDictionaryColumn(env, column, &dict, codes, count, validity.buffer);
+        dictionaryFree(&dict);
+        free(codes);
+        return j_column;
+    }
+    //A direct buffer can't hold more than 2GB
+    if (total > INT32_MAX)
+    {
+        return NULL;
+    }
 
-void parseColumnBlob(JNIEnv *env, jobjectArray j_columns, int index, monetdbe_column_blob *column)
-{
-    //TODO Do NULL check? Is this currently outputting an empty byte array if the row has NULL value?
-    jobjectArray j_data = (*env)->NewObjectArray(env, column->count, (*env)->FindClass(env, "[B"), NULL);
-    monetdbe_data_blob *blob_data = (monetdbe_data_blob *)column->data;
+    jobject j_data = allocateDirect(env, (jint)total);
+    jobject j_offsets = allocateDirect(env, (count + 1) * sizeof(jint));
+    if ((*env)->ExceptionCheck(env))
+    {
+        return NULL;
+    }
 
-    for (int i = 0; i < column->count; i++)
+    char *data = (*env)->GetDirectBufferAddress(env, j_data);
+    jint *offsets = (*env)->GetDirectBufferAddress(env, j_offsets);
+    jint position = 0;
+
+    //Null rows get an empty range
+    offsets[0] = 0;
+    for (int i = 0; i < count; i++)
     {
-        jbyteArray j_byte_array = (*env)->NewByteArray(env, blob_data[i].size);
-        (*env)->SetByteArrayRegion(env, j_byte_array, 0, blob_data[i].size, (jbyte *)blob_data[i].data);
-        (*env)->SetObjectArrayElement(env, j_data, i, j_byte_array);
+        if (column->is_null(&strings[i]) != 1)
+        {
+            size_t length = strlen(strings[i]);
+            memcpy(data + position, strings[i], length);
+            position += (jint)length;
+        }
+        offsets[i + 1] = position;
     }
 
-    //Inserting byte[][] in MonetColumn
-    addColumnVar(env, j_columns, index, column->type, column->name, j_data);
+    return newColumnString(env, column->type, column->name, j_data, j_offsets, validity.buffer);
 }
 
-void addColumnConst(JNIEnv *env, jobjectArray j_columns, void *data, char *name, int type, int size, int index, double scale)
+//Every row gets a direct buffer over the blob in the native result, so the bytes are not copied
+//The buffers are only valid until the result is cleaned up, null rows get a null buffer
+jobject parseColumnBlob(JNIEnv *env, monetdbe_column_blob *column, int offset, int count)
 {
-    jobject j_data = (*env)->NewDirectByteBuffer(env, data, size);
-    jstring j_name = (*env)->NewStringUTF(env, (const char *)name);
+    jobjectArray j_data = (*env)->NewObjectArray(env, count, (*env)->FindClass(env, "Ljava/nio/ByteBuffer;"), NULL);
+    if (j_data == NULL)
+    {
+        return NULL;
+    }
+    monetdbe_data_blob *blob_data = (monetdbe_data_blob *)column->data + offset;
+    validity_bitmap validity = {NULL, NULL};
 
-    jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
-    jmethodID constructor = (*env)->GetMethodID(env, j_column, "<init>", "(Ljava/lang/String;ILjava/nio/ByteBuffer;D)V");
+    for (int i = 0; i < count; i++)
+    {
+        if (column->is_null(&blob_data[i]) == 1)
+        {
+            setNull(env, &validity, i, count);
+            continue;
+        }
+        //A direct buffer can't hold more than 2GB
+        if (blob_data[i].size > INT32_MAX)
+        {
+            return NULL;
+        }
+        jobject j_buffer = blob_data[i].data != NULL ? (*env)->NewDirectByteBuffer(env, blob_data[i].data, (jlong)blob_data[i].size) : allocateDirect(env, 0);
+        if (j_buffer == NULL)
+        {
+            return NULL;
+        }
+        (*env)->SetObjectArrayElement(env, j_data, i, j_buffer);
+        (*env)->DeleteLocalRef(env, j_buffer);
+    }
+    if ((*env)->ExceptionCheck(env))
+    {
+        return NULL;
+    }
 
-    jobject j_column_object = (*env)->NewObject(env, j_column, constructor, j_name, (jint)type, j_data, (jdouble)scale);
-    (*env)->SetObjectArrayElement(env, j_columns, index, j_column_object);
+    return newColumnBlob(env, column->type, column->name, j_data, validity.buffer);
 }
 
-//TODO Change return value to string and set jobjectArray through setObjectField?
-JNIEXPORT jobjectArray JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1fetch_1all(JNIEnv *env, jclass self, jobject j_rs, jint nrows, jint ncols)
+//The column's memory belongs to the engine, which caches it for later fetches, so it is only read. Windows without
+//null rows are wrapped without copying, otherwise they are copied into a JVM owned buffer with the null rows zeroed
+jobject newColumnConst(JNIEnv *env, void *data, char *name, int type, int width, int count, double scale, validity_bitmap *validity)
 {
-    monetdbe_result *rs = (*env)->GetDirectBufferAddress(env, j_rs);
-    monetdbe_column **column = malloc(sizeof(monetdbe_column *));
-    jobjectArray j_columns = (*env)->NewObjectArray(env, ncols, (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;"), NULL);
-
-    for (int i = 0; i < ncols; i++)
+    if ((*env)->ExceptionCheck(env))
     {
-        char *error_msg = monetdbe_result_fetch(rs, column, i);
-        if (error_msg)
+        return NULL;
+    }
+    jobject j_data;
+    if (validity->bits == NULL)
+    {
+        j_data = (*env)->NewDirectByteBuffer(env, data, (jlong)count * width);
+    }
+    else
+    {
+        j_data = allocateDirect(env, count * width);
+        if (j_data == NULL)
         {
-            printf("Error in monetdbe_result_fetch: %s\n", error_msg);
             return NULL;
         }
-        else
+        char *copy = (*env)->GetDirectBufferAddress(env, j_data);
+        memcpy(copy, data, (size_t)count * width);
+        for (int i = 0; i < count; i++)
         {
-            switch ((*column)->type)
+            if ((validity->bits[i >> 3] & (1 << (i & 7))) == 0)
             {
-            case 0:
-            {
-                monetdbe_column_bool *c_bool = (monetdbe_column_bool *)(*column);
-                for (int i = 0; i < c_bool->count; i++)
-                {
-                    if (c_bool->is_null(&c_bool->data[i]) == 1)
-                    {
-                        c_bool->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_bool->data, c_bool->name, 0, 8 * c_bool->count, i, 0);
-                break;
-            }
-            case 1:
-            {
-                monetdbe_column_int8_t *c_int8_t = (monetdbe_column_int8_t *)(*column);
-                for (int i = 0; i < c_int8_t->count; i++)
-                {
-                    if (c_int8_t->is_null(&c_int8_t->data[i]) == 1)
-                    {
-                        c_int8_t->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_int8_t->data, c_int8_t->name, 1, 8 * c_int8_t->count, i, c_int8_t->scale);
-                break;
-            }
-            case 2:
-            {
-                monetdbe_column_int16_t *c_int16_t = (monetdbe_column_int16_t *)(*column);
-                for (int i = 0; i < c_int16_t->count; i++)
-                {
-                    if (c_int16_t->is_null(&c_int16_t->data[i]) == 1)
-                    {
-                        c_int16_t->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_int16_t->data, c_int16_t->name, 2, 16 * c_int16_t->count, i, c_int16_t->scale);
-                break;
+                memset(copy + (size_t)i * width, 0, width);
             }
-            case 3:
+        }
+    }
+    jstring j_name = (*env)->NewStringUTF(env, (const char *)name);
+
+    jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
+    jmethodID factory = (*env)->GetStaticMethodID(env, j_column, "ofFixed", "(Ljava/lang/String;ILjava/nio/ByteBuffer;DLjava/nio/ByteBuffer;)Lorg/monetdb/monetdbe/MonetColumn;");
+
+    return (*env)->CallStaticObjectMethod(env, j_column, factory, j_name, (jint)type, j_data, (jdouble)scale, validity->buffer);
+}
+
+//Scale is only set for the integer types which can hold decimals
+double columnScale(monetdbe_column *column)
+{
+    switch (column->type)
+    {
+    case 1:
+        return ((monetdbe_column_int8_t *)column)->scale;
+    case 2:
+        return ((monetdbe_column_int16_t *)column)->scale;
+    case 3:
+        return ((monetdbe_column_int32_t *)column)->scale;
+    case 4:
+        return ((monetdbe_column_int64_t *)column)->scale;
+    case 5:
+        return ((monetdbe_column_int128_t *)column)->scale;
+    default:
+        return 0;
+    }
+}
+
+//Converts rows [offset, offset + count) of a fetched column into a MonetColumn object
+jobject parseColumn(JNIEnv *env, monetdbe_column *column, int offset, int count)
+{
+    switch (column->type)
+    {
+    case 0:
+    {
+        monetdbe_column_bool *c_bool = (monetdbe_column_bool *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_bool->is_null(&c_bool->data[i]) == 1)
             {
-                monetdbe_column_int32_t *c_int32_t = (monetdbe_column_int32_t *)(*column);
-                for (int i = 0; i < c_int32_t->count; i++)
-                {
-                    if (c_int32_t->is_null(&c_int32_t->data[i]) == 1)
-                    {
-                        c_int32_t->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_int32_t->data, c_int32_t->name, 3, 32 * c_int32_t->count, i, c_int32_t->scale);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 4:
+        }
+        return newColumnConst(env, c_bool->data + offset, c_bool->name, 0, sizeof(*c_bool->data), count, 0, &validity);
+    }
+    case 1:
+    {
+        monetdbe_column_int8_t *c_int8_t = (monetdbe_column_int8_t *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_int8_t->is_null(&c_int8_t->data[i]) == 1)
             {
-                monetdbe_column_int64_t *c_int64_t = (monetdbe_column_int64_t *)(*column);
-                for (int i = 0; i < c_int64_t->count; i++)
-                {
-                    if (c_int64_t->is_null(&c_int64_t->data[i]) == 1)
-                    {
-                        c_int64_t->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_int64_t->data, c_int64_t->name, 4, 64 * c_int64_t->count, i, c_int64_t->scale);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 5:
+        }
+        return newColumnConst(env, c_int8_t->data + offset, c_int8_t->name, 1, sizeof(*c_int8_t->data), count, c_int8_t->scale, &validity);
+    }
+    case 2:
+    {
+        monetdbe_column_int16_t *c_int16_t = (monetdbe_column_int16_t *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_int16_t->is_null(&c_int16_t->data[i]) == 1)
             {
-                monetdbe_column_int128_t *c_int128_t = (monetdbe_column_int128_t *)(*column);
-                for (int i = 0; i < c_int128_t->count; i++)
-                {
-                    if (c_int128_t->is_null(&c_int128_t->data[i]) == 1)
-                    {
-                        c_int128_t->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_int128_t->data, c_int128_t->name, 5, 128 * c_int128_t->count, i, c_int128_t->scale);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 6:
-                //size_t should not be returned to the Java layer
-                break;
-            case 7:
+        }
+        return newColumnConst(env, c_int16_t->data + offset, c_int16_t->name, 2, sizeof(*c_int16_t->data), count, c_int16_t->scale, &validity);
+    }
+    case 3:
+    {
+        monetdbe_column_int32_t *c_int32_t = (monetdbe_column_int32_t *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_int32_t->is_null(&c_int32_t->data[i]) == 1)
             {
-                monetdbe_column_float *c_float = (monetdbe_column_float *)(*column);
-                for (int i = 0; i < c_float->count; i++)
-                {
-                    if (c_float->is_null(&c_float->data[i]) == 1)
-                    {
-                        c_float->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_float->data, c_float->name, 7, 32 * c_float->count, i, 0);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 8:
+        }
+        return newColumnConst(env, c_int32_t->data + offset, c_int32_t->name, 3, sizeof(*c_int32_t->data), count, c_int32_t->scale, &validity);
+    }
+    case 4:
+    {
+        monetdbe_column_int64_t *c_int64_t = (monetdbe_column_int64_t *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_int64_t->is_null(&c_int64_t->data[i]) == 1)
             {
-                monetdbe_column_double *c_double = (monetdbe_column_double *)(*column);
-                for (int i = 0; i < c_double->count; i++)
-                {
-                    if (c_double->is_null(&c_double->data[i]) == 1)
-                    {
-                        c_double->data[i] = 0;
-                    }
-                }
-                addColumnConst(env, j_columns, c_double->data, c_double->name, 8, 64 * c_double->count, i, 0);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 9:
+        }
+        return newColumnConst(env, c_int64_t->data + offset, c_int64_t->name, 4, sizeof(*c_int64_t->data), count, c_int64_t->scale, &validity);
+    }
+    case 5:
+    {
+        monetdbe_column_int128_t *c_int128_t = (monetdbe_column_int128_t *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_int128_t->is_null(&c_int128_t->data[i]) == 1)
             {
-                parseColumnString(env, j_columns, i, (monetdbe_column_str *)*column);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 10:
+        }
+        return newColumnConst(env, c_int128_t->data + offset, c_int128_t->name, 5, sizeof(*c_int128_t->data), count, c_int128_t->scale, &validity);
+    }
+    case 7:
+    {
+        monetdbe_column_float *c_float = (monetdbe_column_float *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_float->is_null(&c_float->data[i]) == 1)
             {
-                parseColumnBlob(env, j_columns, i, (monetdbe_column_blob *)*column);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 11:
+        }
+        return newColumnConst(env, c_float->data + offset, c_float->name, 7, sizeof(*c_float->data), count, 0, &validity);
+    }
+    case 8:
+    {
+        monetdbe_column_double *c_double = (monetdbe_column_double *)column;
+        validity_bitmap validity = {NULL, NULL};
+        for (int i = offset; i < offset + count; i++)
+        {
+            if (c_double->is_null(&c_double->data[i]) == 1)
             {
-                parseColumnDate(env, j_columns, i, (monetdbe_column_date *)*column);
-                break;
+                setNull(env, &validity, i - offset, count);
             }
-            case 12:
+        }
+        return newColumnConst(env, c_double->data + offset, c_double->name, 8, sizeof(*c_double->data), count, 0, &validity);
+    }
+    case 9:
+        return parseColumnString(env, (monetdbe_column_str *)column, offset, count);
+    case 10:
+        return parseColumnBlob(env, (monetdbe_column_blob *)column, offset, count);
+    case 11:
+    case 12:
+    case 13:
+        return parseColumnTemporal(env, column, offset, count);
+    default:
+        //size_t should not be returned to the Java layer
+        return NULL;
+    }
+}
+
+//Inverse of epochDay
+monetdbe_data_date dateOfEpochDay(jlong day)
+{
+    jlong z = day + 719468;
+    jlong era = (z >= 0 ? z : z - 146096) / 146097;
+    jlong dayOfEra = z - era * 146097;
+    jlong yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    jlong dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    jlong monthIndex = (5 * dayOfYear + 2) / 153;
+    monetdbe_data_date date;
+    date.day = (unsigned char)(dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    date.month = (unsigned char)(monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+    date.year = (short)(yearOfEra + era * 400 + (date.month <= 2 ? 1 : 0));
+    return date;
+}
+
+//Inverse of microsOfDay, the time struct holds milliseconds
+monetdbe_data_time timeOfMicros(jlong micros)
+{
+    monetdbe_data_time time;
+    time.ms = (unsigned int)(micros / 1000 % 1000);
+    time.seconds = (unsigned char)(micros / 1000000 % 60);
+    time.minutes = (unsigned char)(micros / 60000000 % 60);
+    time.hours = (unsigned char)(micros / 3600000000LL);
+    return time;
+}
+
+//Width of the fixed width types as they are laid out by Java, 0 for the other types
+static int fixedWidth(int type)
+{
+    switch (type)
+    {
+    case monetdbe_bool:
+    case monetdbe_int8_t:
+        return 1;
+    case monetdbe_int16_t:
+        return 2;
+    case monetdbe_int32_t:
+    case monetdbe_float:
+        return 4;
+    case monetdbe_int64_t:
+    case monetdbe_double:
+        return 8;
+    case monetdbe_int128_t:
+        return 16;
+    default:
+        return 0;
+    }
+}
+
+//Inverse of the epoch microseconds of a timestamp
+monetdbe_data_timestamp timestampOfEpochMicros(jlong micros)
+{
+    jlong day = micros >= 0 ? micros / 86400000000LL : -((-micros + 86400000000LL - 1) / 86400000000LL);
+    monetdbe_data_timestamp timestamp;
+    timestamp.date = dateOfEpochDay(day);
+    timestamp.time = timeOfMicros(micros - day * 86400000000LL);
+    return timestamp;
+}
+
+//Null temporal values as monetdbe reports them in the null_value of fetched columns, the engine's nil truncated into every field
+static const monetdbe_data_date nullDate = {.day = 0, .month = 0, .year = 0};
+static const monetdbe_data_time nullTime = {.ms = 0x80000000u, .seconds = 0, .minutes = 0, .hours = 0};
+
+//Points the column at the values in the engine's layout. Values which need converting or null values are copied into
+//*copy, which the caller frees after the append. Fixed width values without nulls are handed over without copying
+const char *appendColumnData(monetdbe_database db, monetdbe_column *column, void **copy, char *data, jint *offsets, unsigned char *nulls, int rows)
+{
+    int width;
+    switch (column->type)
+    {
+    case monetdbe_str:
+    {
+        char **strings = malloc(rows * sizeof(char *));
+        if (strings == NULL)
+        {
+            return "Not enough memory to append the strings";
+        }
+        char *null_str = (char *)monetdbe_null(db, monetdbe_str);
+        for (int i = 0; i < rows; i++)
+        {
+            strings[i] = nulls != NULL && nulls[i] ? null_str : data + offsets[i];
+        }
+        *copy = strings;
+        column->data = strings;
+        return NULL;
+    }
+    case monetdbe_blob:
+    {
+        monetdbe_data_blob *blobs = malloc(rows * sizeof(monetdbe_data_blob));
+        if (blobs == NULL)
+        {
+            return "Not enough memory to append the blobs";
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            int is_null = nulls != NULL && nulls[i];
+            blobs[i].size = is_null ? 0 : (size_t)(offsets[i + 1] - offsets[i]);
+            blobs[i].data = is_null ? NULL : data + offsets[i];
+        }
+        *copy = blobs;
+        column->data = blobs;
+        return NULL;
+    }
+    case monetdbe_date:
+    {
+        monetdbe_data_date *dates = malloc(rows * sizeof(monetdbe_data_date));
+        if (dates == NULL)
+        {
+            return "Not enough memory to append the dates";
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            dates[i] = nulls != NULL && nulls[i] ? nullDate : dateOfEpochDay(((jint *)data)[i]);
+        }
+        *copy = dates;
+        column->data = dates;
+        return NULL;
+    }
+    case monetdbe_time:
+    {
+        monetdbe_data_time *times = malloc(rows * sizeof(monetdbe_data_time));
+        if (times == NULL)
+        {
+            return "Not enough memory to append the times";
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            times[i] = nulls != NULL && nulls[i] ? nullTime : timeOfMicros(((jlong *)data)[i]);
+        }
+        *copy = times;
+        column->data = times;
+        return NULL;
+    }
+    case monetdbe_timestamp:
+    {
+        monetdbe_data_timestamp *timestamps = malloc(rows * sizeof(monetdbe_data_timestamp));
+        if (timestamps == NULL)
+        {
+            return "Not enough memory to append the timestamps";
+        }
+        for (int i = 0; i < rows; i++)
+        {
+            if (nulls != NULL && nulls[i])
             {
-                parseColumnTime(env, j_columns, i, (monetdbe_column_time *)*column);
-                break;
+                timestamps[i].date = nullDate;
+                timestamps[i].time = nullTime;
             }
-            case 13:
+            else
             {
-                parseColumnTimestamp(env, j_columns, i, (monetdbe_column_timestamp *)*column);
-                break;
-            }
-            default:
-                return NULL;
+                timestamps[i] = timestampOfEpochMicros(((jlong *)data)[i]);
             }
         }
+        *copy = timestamps;
+        column->data = timestamps;
+        return NULL;
+    }
+    default:
+        width = fixedWidth(column->type);
+        if (width == 0)
+        {
+            return "Unsupported column type for append";
+        }
+    }
+
+    if (nulls == NULL)
+    {
+        column->data = data;
+        return NULL;
+    }
+    char *values = malloc((size_t)rows * width);
+    if (values == NULL)
+    {
+        return "Not enough memory to append the values";
+    }
+    memcpy(values, data, (size_t)rows * width);
+    const void *null_value = monetdbe_null(db, column->type);
+    for (int i = 0; i < rows; i++)
+    {
+        if (nulls[i])
+        {
+            memcpy(values + (size_t)i * width, null_value, width);
+        }
+    }
+    *copy = values;
+    column->data = values;
+    return NULL;
+}
+
+//All columns are handed to monetdbe_append at once
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1append(JNIEnv *env, jclass self, jobject j_db, jstring j_schema, jstring j_table, jintArray j_types, jobjectArray j_data, jobjectArray j_offsets, jobjectArray j_nulls, jint rows)
+{
+    monetdbe_database db = (*env)->GetDirectBufferAddress(env, j_db);
+    jsize ncols = (*env)->GetArrayLength(env, j_types);
+    jint *types = (*env)->GetIntArrayElements(env, j_types, NULL);
+    monetdbe_column *columns = calloc(ncols, sizeof(monetdbe_column));
+    monetdbe_column **input = calloc(ncols, sizeof(monetdbe_column *));
+    void **copies = calloc(ncols, sizeof(void *));
+    const char *error_msg = NULL;
+
+    if (columns == NULL || input == NULL || copies == NULL)
+    {
+        error_msg = "Not enough memory to append the columns";
+    }
+    for (jsize i = 0; i < ncols && error_msg == NULL; i++)
+    {
+        jobject j_column_data = (*env)->GetObjectArrayElement(env, j_data, i);
+        jobject j_column_offsets = (*env)->GetObjectArrayElement(env, j_offsets, i);
+        jobject j_column_nulls = (*env)->GetObjectArrayElement(env, j_nulls, i);
+        char *data = (*env)->GetDirectBufferAddress(env, j_column_data);
+        jint *offsets = j_column_offsets != NULL ? (*env)->GetDirectBufferAddress(env, j_column_offsets) : NULL;
+        unsigned char *nulls = j_column_nulls != NULL ? (*env)->GetDirectBufferAddress(env, j_column_nulls) : NULL;
+
+        columns[i].type = (monetdbe_types)types[i];
+        columns[i].count = (size_t)rows;
+        columns[i].name = NULL;
+        input[i] = &columns[i];
+        error_msg = appendColumnData(db, &columns[i], &copies[i], data, offsets, nulls, rows);
+
+        (*env)->DeleteLocalRef(env, j_column_data);
+        (*env)->DeleteLocalRef(env, j_column_offsets);
+        (*env)->DeleteLocalRef(env, j_column_nulls);
+    }
+
+    if (error_msg == NULL)
+    {
+        const char *schema = (*env)->GetStringUTFChars(env, j_schema, NULL);
+        const char *table = (*env)->GetStringUTFChars(env, j_table, NULL);
+        error_msg = monetdbe_append(db, schema, table, input, (size_t)ncols);
+        (*env)->ReleaseStringUTFChars(env, j_schema, schema);
+        (*env)->ReleaseStringUTFChars(env, j_table, table);
+    }
+
+    for (jsize i = 0; copies != NULL && i < ncols; i++)
+    {
+        free(copies[i]);
+    }
+    free(copies);
+    free(input);
+    free(columns);
+    (*env)->ReleaseIntArrayElements(env, j_types, types, JNI_ABORT);
+    return error_msg != NULL ? (*env)->NewStringUTF(env, error_msg) : NULL;
+}
+
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1mkfifo(JNIEnv *env, jclass self, jstring j_path)
+{
+#ifdef _WIN32
+    return (*env)->NewStringUTF(env, "Named pipes are not supported on Windows");
+#else
+    const char *path = (*env)->GetStringUTFChars(env, j_path, NULL);
+    int failed = mkfifo(path, S_IRUSR | S_IWUSR);
+    int error = errno;
+    (*env)->ReleaseStringUTFChars(env, j_path, path);
+    return failed ? (*env)->NewStringUTF(env, strerror(error)) : NULL;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1open_1fifo(JNIEnv *env, jclass self, jstring j_path)
+{
+#ifdef _WIN32
+    return -1;
+#else
+    const char *path = (*env)->GetStringUTFChars(env, j_path, NULL);
+    int fd = open(path, O_RDONLY | O_NONBLOCK);
+    (*env)->ReleaseStringUTFChars(env, j_path, path);
+    return fd;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1close_1fifo(JNIEnv *env, jclass self, jint fd)
+{
+#ifndef _WIN32
+    if (fd >= 0)
+    {
+        close(fd);
+    }
+#endif
+}
+
+//Describes one column by its name, type and scale. monetdbe only describes a column by fetching it, which the
+//engine caches, so this is only called when a column's description is needed before its data
+JNIEXPORT jobject JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1fetch_1meta(JNIEnv *env, jclass self, jobject j_rs, jint column_index)
+{
+    monetdbe_result *rs = (*env)->GetDirectBufferAddress(env, j_rs);
+    monetdbe_column *column = NULL;
+
+    char *error_msg = monetdbe_result_fetch(rs, &column, column_index);
+    if (error_msg)
+    {
+        return NULL;
     }
-    return j_columns;
+    jclass j_column = (*env)->FindClass(env, "Lorg/monetdb/monetdbe/MonetColumn;");
+    jmethodID factory = (*env)->GetStaticMethodID(env, j_column, "unfetched", "(Ljava/lang/String;ID)Lorg/monetdb/monetdbe/MonetColumn;");
+    jstring j_name = (*env)->NewStringUTF(env, (const char *)column->name);
+    return (*env)->CallStaticObjectMethod(env, j_column, factory, j_name, (jint)column->type, (jdouble)columnScale(column));
+}
+
+//Fetches a column into the engine's cache and returns a handle to it. This uses the client state of the database,
+//so the caller holds the connection's native lock
+JNIEXPORT jobject JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1fetch(JNIEnv *env, jclass self, jobject j_rs, jint column_index)
+{
+    monetdbe_result *rs = (*env)->GetDirectBufferAddress(env, j_rs);
+    monetdbe_column *column = NULL;
+
+    char *error_msg = monetdbe_result_fetch(rs, &column, column_index);
+    if (error_msg)
+    {
+        return NULL;
+    }
+    return (*env)->NewDirectByteBuffer(env, column, sizeof(monetdbe_column));
+}
+
+//Converts a window of rows of a fetched column. Only the column's memory is read, so columns of the same result
+//can be converted on different threads
+JNIEXPORT jobject JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1convert(JNIEnv *env, jclass self, jobject j_column, jint offset, jint count)
+{
+    monetdbe_column *column = (*env)->GetDirectBufferAddress(env, j_column);
+
+    //Only convert the requested window of rows
+    if (offset < 0 || offset > column->count)
+    {
+        return NULL;
+    }
+    if (count < 0 || offset + count > column->count)
+    {
+        count = column->count - offset;
+    }
+    return parseColumn(env, column, offset, count);
 }
 
 JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1cleanup(JNIEnv *env, jclass self, jobject j_db, jobject j_rs)
@@ -720,6 +1370,253 @@ JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1execut
     }
 }
 
+//Rows of parameter values laid out by MonetParameterBatch
+typedef struct
+{
+    jsize nparams;
+    jint *types;
+    char **data;
+    jint **offsets;
+    unsigned char **nulls;
+} parameter_batch;
+
+//Room for the parameter values which are bound as structs
+typedef union
+{
+    monetdbe_data_blob blob;
+    monetdbe_data_date date;
+    monetdbe_data_time time;
+    monetdbe_data_timestamp timestamp;
+} bound_value;
+
+static const char *readParameterBatch(JNIEnv *env, jintArray j_types, jobjectArray j_data, jobjectArray j_offsets, jobjectArray j_nulls, parameter_batch *batch)
+{
+    batch->nparams = (*env)->GetArrayLength(env, j_types);
+    batch->types = (*env)->GetIntArrayElements(env, j_types, NULL);
+    batch->data = calloc(batch->nparams + 1, sizeof(char *));
+    batch->offsets = calloc(batch->nparams + 1, sizeof(jint *));
+    batch->nulls = calloc(batch->nparams + 1, sizeof(unsigned char *));
+    if (batch->data == NULL || batch->offsets == NULL || batch->nulls == NULL)
+    {
+        return "Not enough memory to bind the parameters";
+    }
+    for (jsize i = 0; i < batch->nparams; i++)
+    {
+        jobject j_param_data = (*env)->GetObjectArrayElement(env, j_data, i);
+        jobject j_param_offsets = (*env)->GetObjectArrayElement(env, j_offsets, i);
+        jobject j_param_nulls = (*env)->GetObjectArrayElement(env, j_nulls, i);
+        batch->data[i] = (*env)->GetDirectBufferAddress(env, j_param_data);
+        batch->offsets[i] = j_param_offsets != NULL ? (*env)->GetDirectBufferAddress(env, j_param_offsets) : NULL;
+        batch->nulls[i] = j_param_nulls != NULL ? (*env)->GetDirectBufferAddress(env, j_param_nulls) : NULL;
+        (*env)->DeleteLocalRef(env, j_param_data);
+        (*env)->DeleteLocalRef(env, j_param_offsets);
+        (*env)->DeleteLocalRef(env, j_param_nulls);
+    }
+    return NULL;
+}
+
+static void releaseParameterBatch(JNIEnv *env, jintArray j_types, parameter_batch *batch)
+{
+    free(batch->data);
+    free(batch->offsets);
+    free(batch->nulls);
+    (*env)->ReleaseIntArrayElements(env, j_types, batch->types, JNI_ABORT);
+}
+
+//Binds the parameters of a row, pointing monetdbe at the values in the batch. The structs are built in scratch, so the
+//values must be executed before the next row is bound
+static const char *bindRow(monetdbe_database db, monetdbe_statement *stmt, parameter_batch *batch, int row, bound_value *scratch)
+{
+    for (jsize i = 0; i < batch->nparams; i++)
+    {
+        int type = batch->types[i];
+        char *data = batch->data[i];
+        void *value;
+        if (batch->nulls[i] != NULL && batch->nulls[i][row])
+        {
+            value = (void *)monetdbe_null(db, (monetdbe_types)type);
+        }
+        else
+        {
+            switch (type)
+            {
+            case monetdbe_str:
+                value = data + batch->offsets[i][row];
+                break;
+            case monetdbe_blob:
+                scratch[i].blob.size = (size_t)(batch->offsets[i][row + 1] - batch->offsets[i][row]);
+                scratch[i].blob.data = data + batch->offsets[i][row];
+                value = &scratch[i].blob;
+                break;
+            case monetdbe_date:
+                scratch[i].date = dateOfEpochDay(((jint *)data)[row]);
+                value = &scratch[i].date;
+                break;
+            case monetdbe_time:
+                scratch[i].time = timeOfMicros(((jlong *)data)[row]);
+                value = &scratch[i].time;
+                break;
+            case monetdbe_timestamp:
+                scratch[i].timestamp = timestampOfEpochMicros(((jlong *)data)[row]);
+                value = &scratch[i].timestamp;
+                break;
+            default:
+            {
+                int width = fixedWidth(type);
+                if (width == 0)
+                {
+                    return "Unsupported parameter type";
+                }
+                value = data + (size_t)row * width;
+            }
+            }
+        }
+        char *error_msg = monetdbe_bind(stmt, value, (size_t)i);
+        if (error_msg)
+        {
+            return error_msg;
+        }
+    }
+    return NULL;
+}
+
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1execute_1row(JNIEnv *env, jclass self, jobject j_db, jobject j_stmt, jintArray j_types, jobjectArray j_data, jobjectArray j_offsets, jobjectArray j_nulls, jobject j_statement, jboolean largeUpdate, jint maxrows)
+{
+    monetdbe_database db = (*env)->GetDirectBufferAddress(env, j_db);
+    monetdbe_statement *stmt = (*env)->GetDirectBufferAddress(env, j_stmt);
+    parameter_batch batch;
+    const char *error_msg = readParameterBatch(env, j_types, j_data, j_offsets, j_nulls, &batch);
+    bound_value *scratch = error_msg == NULL ? calloc(batch.nparams + 1, sizeof(bound_value)) : NULL;
+    if (error_msg == NULL && scratch == NULL)
+    {
+        error_msg = "Not enough memory to bind the parameters";
+    }
+    if (error_msg == NULL)
+    {
+        error_msg = bindRow(db, stmt, &batch, 0, scratch);
+    }
+    if (error_msg == NULL)
+    {
+        monetdbe_result **result = malloc(sizeof(monetdbe_result *));
+        monetdbe_cnt *affected_rows = malloc(sizeof(monetdbe_cnt));
+        (*affected_rows) = -2;
+        error_msg = monetdbe_execute(stmt, result, affected_rows);
+        if (error_msg)
+        {
+            free(result);
+            free(affected_rows);
+        }
+        else
+        {
+            returnResult(env, j_statement, largeUpdate, result, affected_rows, maxrows);
+        }
+    }
+    free(scratch);
+    releaseParameterBatch(env, j_types, &batch);
+    return error_msg != NULL ? (*env)->NewStringUTF(env, error_msg) : NULL;
+}
+
+//Executes all rows in one transaction when the connection is in auto-commit mode, which is rolled back if a row fails.
+//Otherwise the rows are part of the connection's transaction
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1execute_1batch(JNIEnv *env, jclass self, jobject j_db, jobject j_stmt, jintArray j_types, jobjectArray j_data, jobjectArray j_offsets, jobjectArray j_nulls, jint rows, jlongArray j_counts)
+{
+    monetdbe_database db = (*env)->GetDirectBufferAddress(env, j_db);
+    monetdbe_statement *stmt = (*env)->GetDirectBufferAddress(env, j_stmt);
+    parameter_batch batch;
+    const char *error_msg = readParameterBatch(env, j_types, j_data, j_offsets, j_nulls, &batch);
+    bound_value *scratch = error_msg == NULL ? calloc(batch.nparams + 1, sizeof(bound_value)) : NULL;
+    jlong *counts = error_msg == NULL ? malloc(((size_t)rows + 1) * sizeof(jlong)) : NULL;
+    if (error_msg == NULL && (scratch == NULL || counts == NULL))
+    {
+        error_msg = "Not enough memory to execute the batch";
+    }
+
+    monetdbe_result *result = NULL;
+    monetdbe_cnt affected_rows = -2;
+    int autocommit = 0;
+    if (error_msg == NULL)
+    {
+        error_msg = monetdbe_get_autocommit(db, &autocommit);
+    }
+    if (error_msg == NULL && autocommit)
+    {
+        error_msg = monetdbe_query(db, "START TRANSACTION", &result, &affected_rows);
+    }
+
+    int executed = 0;
+    int failed_row = -1;
+    for (; error_msg == NULL && executed < rows; executed++)
+    {
+        failed_row = executed;
+        error_msg = bindRow(db, stmt, &batch, executed, scratch);
+        if (error_msg)
+        {
+            break;
+        }
+        result = NULL;
+        affected_rows = -2;
+        error_msg = monetdbe_execute(stmt, &result, &affected_rows);
+        if (error_msg)
+        {
+            break;
+        }
+        if (result)
+        {
+            int ncols = (int)result->ncols;
+            monetdbe_cleanup_result(db, result);
+            if (ncols > 0)
+            {
+                error_msg = "A statement in the batch produced a result set";
+                break;
+            }
+        }
+        counts[executed] = (jlong)affected_rows;
+        failed_row = -1;
+    }
+
+    if (autocommit)
+    {
+        result = NULL;
+        //Nothing is kept after a rollback or a failed commit, so no row counts as executed
+        if (error_msg)
+        {
+            monetdbe_query(db, "ROLLBACK", &result, &affected_rows);
+            executed = 0;
+        }
+        else if ((error_msg = monetdbe_query(db, "COMMIT", &result, &affected_rows)) != NULL)
+        {
+            executed = 0;
+        }
+    }
+    if (counts != NULL && executed > 0)
+    {
+        (*env)->SetLongArrayRegion(env, j_counts, 0, executed, counts);
+    }
+
+    free(counts);
+    free(scratch);
+    releaseParameterBatch(env, j_types, &batch);
+    if (error_msg == NULL)
+    {
+        return NULL;
+    }
+    if (failed_row < 0)
+    {
+        return (*env)->NewStringUTF(env, error_msg);
+    }
+    //The failing row can't be told from the counts, as the rows before it may have been rolled back
+    size_t length = strlen(error_msg) + 64;
+    char *message = malloc(length);
+    if (message == NULL)
+    {
+        return (*env)->NewStringUTF(env, error_msg);
+    }
+    snprintf(message, length, "%s (row %d of %d in the batch)", error_msg, failed_row + 1, (int)rows);
+    jstring j_message = (*env)->NewStringUTF(env, message);
+    free(message);
+    return j_message;
+}
+
 JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1cleanup_1statement(JNIEnv *env, jclass self, jobject j_db, jobject j_stmt)
 {
     monetdbe_database db = (*env)->GetDirectBufferAddress(env, j_db);
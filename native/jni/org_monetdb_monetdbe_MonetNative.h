@@ -49,10 +49,66 @@ JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1query
 
 /*
  * Class:     org_monetdb_monetdbe_MonetNative
- * Method:    monetdbe_result_fetch_all
- * Signature: (Ljava/nio/ByteBuffer;II)[Lorg/monetdb/monetdbe/MonetColumn;
+ * Method:    monetdbe_query_script
+ * Signature: (Ljava/nio/ByteBuffer;[Ljava/lang/String;Lorg/monetdb/monetdbe/MonetStatement;I)Ljava/lang/String;
  */
-JNIEXPORT jobjectArray JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1fetch_1all
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1query_1script
+  (JNIEnv *, jclass, jobject, jobjectArray, jobject, jint);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_append
+ * Signature: (Ljava/nio/ByteBuffer;Ljava/lang/String;Ljava/lang/String;[I[Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;I)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1append
+  (JNIEnv *, jclass, jobject, jstring, jstring, jintArray, jobjectArray, jobjectArray, jobjectArray, jint);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_mkfifo
+ * Signature: (Ljava/lang/String;)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1mkfifo
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_open_fifo
+ * Signature: (Ljava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1open_1fifo
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_close_fifo
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1close_1fifo
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_result_fetch_meta
+ * Signature: (Ljava/nio/ByteBuffer;I)Lorg/monetdb/monetdbe/MonetColumn;
+ */
+JNIEXPORT jobject JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1fetch_1meta
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_result_fetch
+ * Signature: (Ljava/nio/ByteBuffer;I)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1fetch
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_result_convert
+ * Signature: (Ljava/nio/ByteBuffer;II)Lorg/monetdb/monetdbe/MonetColumn;
+ */
+JNIEXPORT jobject JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1result_1convert
   (JNIEnv *, jclass, jobject, jint, jint);
 
 /*
@@ -103,6 +159,22 @@ JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1prepar
 JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1execute
   (JNIEnv *, jclass, jobject, jobject, jboolean, jint);
 
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_execute_row
+ * Signature: (Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;[I[Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;Lorg/monetdb/monetdbe/MonetPreparedStatement;ZI)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1execute_1row
+  (JNIEnv *, jclass, jobject, jobject, jintArray, jobjectArray, jobjectArray, jobjectArray, jobject, jboolean, jint);
+
+/*
+ * Class:     org_monetdb_monetdbe_MonetNative
+ * Method:    monetdbe_execute_batch
+ * Signature: (Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;[I[Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;[Ljava/nio/ByteBuffer;I[J)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_org_monetdb_monetdbe_MonetNative_monetdbe_1execute_1batch
+  (JNIEnv *, jclass, jobject, jobject, jintArray, jobjectArray, jobjectArray, jobjectArray, jint, jlongArray);
+
 /*
  * Class:     org_monetdb_monetdbe_MonetNative
  * Method:    monetdbe_cleanup_statement